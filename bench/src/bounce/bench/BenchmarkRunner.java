@@ -0,0 +1,33 @@
+package bounce.bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in this package. Accepts the usual JMH command line
+ * options, e.g. a regular expression selecting benchmarks, or
+ * "-p shapes=1000" to restrict a parameter:
+ *
+ * <pre>
+ *   java bounce.bench.BenchmarkRunner [jmh options] [benchmark regexp]
+ * </pre>
+ *
+ * With no regular expression, every benchmark in bounce.bench is run. Save
+ * results with "-rf json -rff file.json" to compare them between builds.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        if (commandLine.getIncludes().isEmpty()) {
+            builder.include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark");
+        }
+        Options options = builder.parent(commandLine).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,55 @@
+package bounce.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bounce.NestingShape;
+import bounce.ShapeModel;
+
+/**
+ * Measures NestingShape.move(int, int) on the root of wide and deep
+ * compositions, i.e. one recursive move of every shape. Scores are per
+ * move of the whole composition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestingShapeMoveBenchmark {
+
+    @Param({Scenes.WIDE, Scenes.DEEP})
+    public String layout;
+
+    @Param({"1000", "100000"})
+    public int shapes;
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    private NestingShape root;
+
+    @Setup
+    public void setUp() {
+        ShapeModel model = Scenes.build(layout, shapes, depth);
+        root = model.root();
+    }
+
+    @Benchmark
+    public NestingShape move() {
+        root.move(Scenes.WORLD_SIZE, Scenes.WORLD_SIZE);
+        return root;
+    }
+}
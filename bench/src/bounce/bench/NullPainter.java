@@ -0,0 +1,67 @@
+package bounce.bench;
+
+import java.awt.Color;
+import java.awt.Image;
+
+import bounce.Painter;
+
+/**
+ * Painter that draws nothing, so that benchmarks measure the cost of
+ * traversing and painting shapes rather than the cost of rasterising them.
+ * Calls are counted so the JIT cannot discard them.
+ */
+final class NullPainter implements Painter {
+
+    private Color color = Color.BLACK;
+    int calls;
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        calls++;
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        calls++;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        calls++;
+    }
+
+    @Override
+    public void drawCenteredText(String text, int x, int y) {
+        calls++;
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        calls++;
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    @Override
+    public void translate(int x, int y) {
+        calls++;
+    }
+
+    @Override
+    public void drawImage(Image img, int x, int y, int width, int height) {
+        calls++;
+    }
+
+    @Override
+    public void drawGemShape(int x, int y, int width, int height) {
+        calls++;
+    }
+}
@@ -0,0 +1,70 @@
+package bounce.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bounce.NestingShape;
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Measures Shape.paint(Painter) on the root of wide and deep compositions
+ * against a Painter that draws nothing, and painting the same compositions
+ * from a ShapeModelSnapshot. Scores are per paint of the whole composition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaintBenchmark {
+
+    @Param({Scenes.WIDE, Scenes.DEEP})
+    public String layout;
+
+    @Param({"1000", "100000"})
+    public int shapes;
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    private ShapeModel model;
+    private NestingShape root;
+    private NullPainter painter;
+
+    @Setup
+    public void setUp() {
+        model = Scenes.build(layout, shapes, depth);
+        root = model.root();
+        painter = new NullPainter();
+    }
+
+    @Benchmark
+    public int paint() {
+        root.paint(painter);
+        return painter.calls;
+    }
+
+    @Benchmark
+    public int paintSnapshot() {
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            snapshot.paint(painter);
+        } finally {
+            snapshot.release();
+        }
+        return painter.calls;
+    }
+}
@@ -0,0 +1,67 @@
+package bounce.bench;
+
+import java.awt.Dimension;
+import java.util.Random;
+
+import bounce.NestingShape;
+import bounce.RectangleShape;
+import bounce.ShapeModel;
+import bounce.bounceApp.SceneBuilder;
+
+/**
+ * Builds the compositions the benchmarks run against. A wide composition
+ * spreads its shapes over NestingShapes that each hold up to four
+ * NestingShapes (see SceneBuilder.generate). A deep composition is a single
+ * chain of NestingShapes, each holding an equal share of the shapes.
+ */
+final class Scenes {
+
+    static final String WIDE = "wide";
+    static final String DEEP = "deep";
+
+    static final int WORLD_SIZE = 1000;
+    static final long SEED = 718;
+
+    private Scenes() {
+    }
+
+    static ShapeModel build(String layout, int shapeCount, int depth) {
+        ShapeModel model = new ShapeModel(new Dimension(WORLD_SIZE, WORLD_SIZE));
+        if (WIDE.equals(layout)) {
+            SceneBuilder.generate(model, shapeCount, depth, SEED);
+        } else if (DEEP.equals(layout)) {
+            chain(model, shapeCount, depth);
+        } else {
+            throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+        return model;
+    }
+
+    private static void chain(ShapeModel model, int shapeCount, int depth) {
+        Random random = new Random(SEED);
+        NestingShape nest = model.root();
+        int leaves = shapeCount - depth;
+        for (int level = 0; level <= depth; level++) {
+            int share = leaves / (depth + 1 - level);
+            for (int i = 0; i < share; i++) {
+                int size = 1 + random.nextInt(8);
+                model.add(new RectangleShape(random.nextInt(nest.width() - size),
+                        random.nextInt(nest.height() - size), speed(random), speed(random), size, size), nest);
+            }
+            leaves -= share;
+
+            if (level < depth) {
+                // Each level is slightly smaller than its parent so that the
+                // chain stays deep however many levels are requested.
+                NestingShape child = new NestingShape(1, 1, speed(random), speed(random),
+                        Math.max(10, nest.width() - 4), Math.max(10, nest.height() - 4));
+                model.add(child, nest);
+                nest = child;
+            }
+        }
+    }
+
+    private static int speed(Random random) {
+        return random.nextInt(13) - 6;
+    }
+}
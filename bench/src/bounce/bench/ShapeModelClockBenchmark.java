@@ -0,0 +1,69 @@
+package bounce.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bounce.ShapeModel;
+import bounce.ShapeModelEvent;
+import bounce.ShapeModelListener;
+import bounce.bounceApp.HeadlessRunner;
+
+/**
+ * Measures ShapeModel.clock(), including event delivery to 0, 1 or 3
+ * listeners that consume each event, with each of the MoveEngines. Scores
+ * are per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeModelClockBenchmark {
+
+    @Param({"0", "1", "3"})
+    public int listeners;
+
+    @Param({"1000", "100000"})
+    public int shapes;
+
+    @Param({"2", "8"})
+    public int depth;
+
+    @Param({"sequential", "array"})
+    public String engine;
+
+    private ShapeModel model;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        model = Scenes.build(Scenes.WIDE, shapes, depth);
+        model.setMoveEngine(HeadlessRunner.engineFor(engine));
+        for (int i = 0; i < listeners; i++) {
+            model.addShapeModelListener(new ShapeModelListener() {
+                @Override
+                public void update(ShapeModelEvent event) {
+                    blackhole.consume(event.eventType());
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public ShapeModel clock() {
+        model.clock();
+        return model;
+    }
+}
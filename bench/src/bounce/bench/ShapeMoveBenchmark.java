@@ -0,0 +1,96 @@
+package bounce.bench;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bounce.DynamicRectangleShape;
+import bounce.GemShape;
+import bounce.ImageRectangleShape;
+import bounce.NestingShape;
+import bounce.OvalShape;
+import bounce.RectangleShape;
+import bounce.Shape;
+
+/**
+ * Measures Shape.move(int, int) for each concrete Shape class. Shapes are
+ * free standing and bounce around a small world, so a good share of moves
+ * take the bounce branches (and DynamicRectangleShape's bounced() hook).
+ * Scores are per shape moved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(ShapeMoveBenchmark.SHAPES)
+public class ShapeMoveBenchmark {
+
+    static final int SHAPES = 1024;
+    private static final int WORLD_SIZE = 200;
+
+    @Param({"RectangleShape", "OvalShape", "GemShape", "DynamicRectangleShape",
+            "ImageRectangleShape", "NestingShape"})
+    public String shapeClass;
+
+    private Shape[] shapes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(Scenes.SEED);
+        BufferedImage image = new BufferedImage(16, 12, BufferedImage.TYPE_INT_ARGB);
+        shapes = new Shape[SHAPES];
+        for (int i = 0; i < SHAPES; i++) {
+            int x = random.nextInt(WORLD_SIZE - 20);
+            int y = random.nextInt(WORLD_SIZE - 20);
+            int deltaX = random.nextInt(13) - 6;
+            int deltaY = random.nextInt(13) - 6;
+            shapes[i] = create(x, y, deltaX, deltaY, image);
+        }
+    }
+
+    @Benchmark
+    public int move() {
+        Shape[] shapes = this.shapes;
+        int sum = 0;
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i].move(WORLD_SIZE, WORLD_SIZE);
+            sum += shapes[i].x();
+        }
+        return sum;
+    }
+
+    private Shape create(int x, int y, int deltaX, int deltaY, BufferedImage image) {
+        switch (shapeClass) {
+            case "RectangleShape":
+                return new RectangleShape(x, y, deltaX, deltaY, 16, 12);
+            case "OvalShape":
+                return new OvalShape(x, y, deltaX, deltaY, 16, 12);
+            case "GemShape":
+                return new GemShape(x, y, deltaX, deltaY, 16, 12);
+            case "DynamicRectangleShape":
+                return new DynamicRectangleShape(x, y, deltaX, deltaY, 16, 12, Color.ORANGE);
+            case "ImageRectangleShape":
+                return new ImageRectangleShape(deltaX, deltaY, image);
+            case "NestingShape":
+                return new NestingShape(x, y, deltaX, deltaY, 16, 12);
+            default:
+                throw new IllegalArgumentException("Unknown shape class: " + shapeClass);
+        }
+    }
+}
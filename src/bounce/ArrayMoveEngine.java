@@ -0,0 +1,94 @@
+package bounce;
+
+/**
+ * MoveEngine that keeps the state of each NestingShape's children in
+ * primitive arrays (see ShapeArrays) and moves them in tight loops rather
+ * than through virtual move() calls on individual Shape objects. Children are
+ * packed on first use and stay packed until the structure of their parent
+ * changes, so large, stable compositions are moved without touching the Shape
+ * objects at all. Shapes that need to react to bouncing (e.g.
+ * DynamicRectangleShape) are notified through Shape.bounced().
+ */
+public class ArrayMoveEngine implements MoveEngine {
+
+    /**
+     * see bounce.MoveEngine.clock
+     */
+    @Override
+    public void clock(NestingShape root, int width, int height) {
+        // Move the root itself, but not its children.
+        root.move(0, 0, width, height);
+
+        moveChildren(root);
+    }
+
+    /*
+     * Moves the children of nest, and recursively the children of any
+     * NestingShapes among them.
+     */
+    private void moveChildren(NestingShape nest) {
+        nest.childrenMoving();
+        ShapeArrays arrays = nest.packedChildren();
+        if (move(arrays, nest.width(), nest.height())) {
+            nest.contentsChanged();
+        }
+
+        Shape[] shapes = arrays.shapes;
+        for (int slot : arrays.nests) {
+            moveChildren((NestingShape) shapes[slot]);
+        }
+    }
+
+    /*
+     * Moves every packed shape within bounds of width and height. This is
+     * the array form of Shape.move(int, int, int, int). Returns true if any
+     * shape moved or bounced.
+     */
+    static boolean move(ShapeArrays arrays, int width, int height) {
+        int[] x = arrays.x;
+        int[] y = arrays.y;
+        int[] deltaX = arrays.deltaX;
+        int[] deltaY = arrays.deltaY;
+        int[] w = arrays.width;
+        int[] h = arrays.height;
+        int size = arrays.size();
+        boolean moved = false;
+
+        for (int i = 0; i < size; i++) {
+            int preDeltaX = deltaX[i];
+            int preDeltaY = deltaY[i];
+            int dX = preDeltaX;
+            int dY = preDeltaY;
+            int nextX = x[i] + dX;
+            int nextY = y[i] + dY;
+
+            if (nextX <= 0) {
+                nextX = 0;
+                dX = -dX;
+            } else if (nextX + w[i] >= width) {
+                nextX = width - w[i];
+                dX = -dX;
+            }
+
+            if (nextY <= 0) {
+                nextY = 0;
+                dY = -dY;
+            } else if (nextY + h[i] >= height) {
+                nextY = height - h[i];
+                dY = -dY;
+            }
+
+            moved |= nextX != x[i] || nextY != y[i];
+            x[i] = nextX;
+            y[i] = nextY;
+
+            if (dX != preDeltaX || dY != preDeltaY) {
+                deltaX[i] = dX;
+                deltaY[i] = dY;
+                arrays.shapes[i].bounced(preDeltaX, preDeltaY);
+                moved = true;
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,237 @@
+package bounce;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * ShapeModelListener that delivers ShapeModelEvents to another listener on a
+ * thread of its own, so that a slow listener does not hold up the thread
+ * that changed the ShapeModel. Events wait in a bounded queue and are
+ * delivered in the order they were fired; what happens when the queue is
+ * full is governed by a ShapeModel.Overflow policy.
+ *
+ * Events are fired while the ShapeModel is locked, so an event that has to
+ * wait for room is put in a backlog instead, and the thread that changed the
+ * model waits for the backlog to drain in awaitRoom() once it has released
+ * the lock. The listener is thus free to lock the ShapeModel, e.g. by
+ * calling shapeAt(), while the model's thread waits for it.
+ *
+ * The backlog holds as many events as the queue. Each change fires at most
+ * two events, so it only fills when a thread makes many changes while
+ * holding the ShapeModel's lock, and that thread then waits for room
+ * without releasing the lock. Events fired by the listener's own changes,
+ * on the delivery thread, are always put in the backlog.
+ */
+final class AsyncShapeModelListener implements ShapeModelListener {
+
+    private static int threadCount;
+
+    // Listener to deliver events to.
+    private final ShapeModelListener listener;
+
+    private final int capacity;
+
+    private final ShapeModel.Overflow overflow;
+
+    // Events waiting to be delivered; guarded by this object.
+    private final ArrayDeque<ShapeModelEvent> queue;
+
+    // Events waiting for room in the queue, in order; guarded by this object.
+    private final ArrayDeque<ShapeModelEvent> backlog;
+
+    // Thread that delivers events.
+    private final Thread worker;
+
+    private boolean closed;
+
+    /*
+     * Creates an AsyncShapeModelListener and starts its delivery thread.
+     */
+    AsyncShapeModelListener(ShapeModelListener listener, int capacity, ShapeModel.Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+        }
+        this.listener = listener;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        queue = new ArrayDeque<ShapeModelEvent>();
+        backlog = new ArrayDeque<ShapeModelEvent>();
+
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deliver();
+            }
+        }, "ShapeModelListener-" + nextThreadNumber());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues event for delivery. When the queue is full, the event is
+     * dropped, coalesced with a waiting event or put in the backlog,
+     * according to this listener's Overflow policy. Waits only if the
+     * backlog is full too.
+     */
+    @Override
+    public synchronized void update(ShapeModelEvent event) {
+        if (closed) {
+            return;
+        }
+        if (!backlog.isEmpty() || queue.size() >= capacity) {
+            // Events are only merged with the latest waiting events, so
+            // that they stay in order.
+            if (overflow == ShapeModel.Overflow.DROP || overflow == ShapeModel.Overflow.COALESCE
+                    && coalesce(event, backlog.isEmpty() ? queue : backlog)) {
+                return;
+            }
+            awaitBacklogRoom();
+            if (closed) {
+                return;
+            }
+        }
+        // The queue may have drained while waiting for the backlog.
+        if (backlog.isEmpty() && queue.size() < capacity) {
+            queue.addLast(event);
+        } else {
+            backlog.addLast(event);
+        }
+        notifyAll();
+    }
+
+    /*
+     * Waits, unless on the delivery thread, until the backlog has room for
+     * another event or this listener is closed. The caller holds this
+     * object's lock. If interrupted, returns at once with the interrupt
+     * status set, and the event is put in the backlog anyway.
+     */
+    private void awaitBacklogRoom() {
+        while (!closed && backlog.size() >= capacity && Thread.currentThread() != worker) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /*
+     * Waits until the events in the backlog have been queued. Must not be
+     * called while holding the ShapeModel's lock. Returns at once on the
+     * delivery thread, which would otherwise wait for itself.
+     */
+    void awaitRoom() {
+        if (Thread.currentThread() == worker) {
+            return;
+        }
+        synchronized (this) {
+            while (!closed && !backlog.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // The backlog is still delivered.
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the listener that events are delivered to.
+     */
+    ShapeModelListener listener() {
+        return listener;
+    }
+
+    /*
+     * Discards any waiting events and stops the delivery thread once the
+     * event it is delivering, if any, has been delivered.
+     */
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+        backlog.clear();
+        notifyAll();
+    }
+
+    /*
+     * Waits for the delivery thread to stop after close(). Returns at once
+     * on the delivery thread, or with the interrupt status set if
+     * interrupted.
+     */
+    void awaitClosed() {
+        if (Thread.currentThread() == worker) {
+            return;
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Merges event into an event of the same type for the same shape waiting
+     * in events, returning false if event cannot be merged. Movement is
+     * reported by the waiting event just as well, and collisions are added
+     * together.
+     */
+    private static boolean coalesce(ShapeModelEvent event, ArrayDeque<ShapeModelEvent> events) {
+        ShapeModelEvent.EventType type = event.eventType();
+        if (type != ShapeModelEvent.EventType.ShapeMoved && type != ShapeModelEvent.EventType.ShapesCollided) {
+            return false;
+        }
+
+        for (Iterator<ShapeModelEvent> i = events.iterator(); i.hasNext(); ) {
+            ShapeModelEvent waiting = i.next();
+            if (waiting.eventType() == type && waiting.operand() == event.operand()) {
+                if (type == ShapeModelEvent.EventType.ShapesCollided) {
+                    // Deliver the sum in place of the later event, so that
+                    // it still follows the ShapeMoved event it belongs to.
+                    i.remove();
+                    events.addLast(ShapeModelEvent.makeShapesCollidedEvent((NestingShape) event.operand(),
+                            waiting.collisions() + event.collisions(), event.source()));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deliver() {
+        while (true) {
+            ShapeModelEvent event;
+            synchronized (this) {
+                while (!closed && queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() ends delivery.
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                event = queue.removeFirst();
+                if (!backlog.isEmpty()) {
+                    queue.addLast(backlog.removeFirst());
+                }
+                notifyAll();
+            }
+
+            try {
+                listener.update(event);
+            } catch (RuntimeException e) {
+                // Report the failure but carry on delivering.
+                Thread.UncaughtExceptionHandler handler = worker.getUncaughtExceptionHandler();
+                handler.uncaughtException(worker, e);
+            }
+        }
+    }
+
+    private static synchronized int nextThreadNumber() {
+        return ++threadCount;
+    }
+}
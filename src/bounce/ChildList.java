@@ -0,0 +1,316 @@
+package bounce;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * List of the children of a NestingShape that answers indexOf(), contains()
+ * and remove() without scanning. Children are appended to slots, and each
+ * Shape records the slot it occupies. Removing a child leaves an empty slot
+ * behind; a Fenwick tree counting the occupied slots converts between slots
+ * and list indices in O(log n). Empty slots are compacted away once they
+ * make up half of the slots, or on request.
+ *
+ * While no slots are empty, get() and iteration are as cheap as for an
+ * ArrayList.
+ */
+final class ChildList extends AbstractList<Shape> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Children by slot; null marks an empty slot.
+    private Shape[] slots;
+
+    // Number of slots in use, occupied or empty.
+    private int slotCount;
+
+    // Number of children.
+    private int size;
+
+    // Fenwick tree over slots, counting occupied slots; tree[i] covers
+    // slots (i - (i & -i)) to i - 1.
+    private int[] tree;
+
+    ChildList() {
+        slots = new Shape[INITIAL_CAPACITY];
+        tree = new int[INITIAL_CAPACITY + 1];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Shape get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return slots[slotCount == size ? index : slotOf(index)];
+    }
+
+    @Override
+    public boolean add(Shape shape) {
+        if (slotCount == slots.length) {
+            if (slotCount - size > slotCount / 4) {
+                compact();
+            } else {
+                resize(slots.length * 2);
+            }
+        }
+
+        int slot = slotCount++;
+        slots[slot] = shape;
+        shape.childSlot = slot;
+        size++;
+        increment(slot, 1);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        int slot = slotOf(o);
+        return slot < 0 ? -1 : rank(slot);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        // A Shape is held at most once.
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return slotOf(o) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int slot = slotOf(o);
+        if (slot < 0) {
+            return false;
+        }
+        clear(slot);
+        return true;
+    }
+
+    @Override
+    public Shape remove(int index) {
+        Shape shape = get(index);
+        clear(shape.childSlot);
+        return shape;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, 0, slotCount, null);
+        Arrays.fill(tree, 0);
+        slotCount = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Shape> iterator() {
+        return new Iterator<Shape>() {
+            private int next = advance(0);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < slotCount;
+            }
+
+            @Override
+            public Shape next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= slotCount) {
+                    throw new NoSuchElementException();
+                }
+                Shape shape = slots[next];
+                next = advance(next + 1);
+                return shape;
+            }
+
+            private int advance(int slot) {
+                while (slot < slotCount && slots[slot] == null) {
+                    slot++;
+                }
+                return slot;
+            }
+        };
+    }
+
+    /*
+     * Returns the number of slots in use, occupied or empty. Walking slots
+     * 0 .. slotCount() - 1 through slot() visits the children in order,
+     * without the cost of get() once slots are empty.
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    /*
+     * Returns the child in the specified slot, or null if the slot is empty.
+     */
+    Shape slot(int slot) {
+        return slots[slot];
+    }
+
+    /*
+     * Removes those of the specified shapes that are held in this list. The
+     * removed shapes are appended to removed in list order, and the indices
+     * they were held at are returned in ascending order.
+     */
+    int[] removeAll(Collection<? extends Shape> shapes, List<Shape> removed) {
+        int[] found = new int[shapes.size()];
+        int count = 0;
+        for (Shape shape : shapes) {
+            int slot = slotOf(shape);
+            if (slot >= 0) {
+                found[count++] = slot;
+            }
+        }
+        Arrays.sort(found, 0, count);
+
+        int[] indices = new int[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            // Skip shapes given more than once.
+            if (i > 0 && found[i] == found[i - 1]) {
+                continue;
+            }
+            indices[kept++] = rank(found[i]);
+            removed.add(slots[found[i]]);
+        }
+
+        for (int i = 0; i < kept; i++) {
+            Shape shape = removed.get(removed.size() - kept + i);
+            clear(shape.childSlot);
+        }
+        return kept == count ? indices : Arrays.copyOf(indices, kept);
+    }
+
+    /*
+     * Moves the children into consecutive slots, so that get() and
+     * iteration no longer need to skip empty slots.
+     */
+    void compact() {
+        if (slotCount == size) {
+            return;
+        }
+
+        int kept = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            Shape shape = slots[slot];
+            if (shape != null) {
+                slots[kept] = shape;
+                shape.childSlot = kept;
+                kept++;
+            }
+        }
+        Arrays.fill(slots, kept, slotCount, null);
+        slotCount = kept;
+        build();
+    }
+
+    /*
+     * Returns the slot occupied by o, or -1 if o is not held in this list.
+     */
+    private int slotOf(Object o) {
+        if (!(o instanceof Shape)) {
+            return -1;
+        }
+        int slot = ((Shape) o).childSlot;
+        return slot >= 0 && slot < slotCount && slots[slot] == o ? slot : -1;
+    }
+
+    /*
+     * Empties the specified occupied slot.
+     */
+    private void clear(int slot) {
+        slots[slot].childSlot = -1;
+        slots[slot] = null;
+        size--;
+        increment(slot, -1);
+        modCount++;
+
+        if (slot == slotCount - 1) {
+            // Trailing empty slots are given up rather than left behind.
+            while (slotCount > 0 && slots[slotCount - 1] == null) {
+                slotCount--;
+            }
+        } else if (slotCount - size > slotCount / 2) {
+            compact();
+        }
+    }
+
+    /*
+     * Returns the list index of the child in the specified occupied slot,
+     * i.e. the number of occupied slots before it.
+     */
+    private int rank(int slot) {
+        if (slotCount == size) {
+            return slot;
+        }
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /*
+     * Returns the slot holding the child at the specified list index.
+     */
+    private int slotOf(int index) {
+        // Descend the tree for the last position whose prefix count is at
+        // most index; the child is in the slot that follows.
+        int position = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= slots.length && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    private void increment(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void resize(int capacity) {
+        slots = Arrays.copyOf(slots, capacity);
+        tree = new int[capacity + 1];
+        build();
+    }
+
+    /*
+     * Rebuilds the tree from the slots in linear time.
+     */
+    private void build() {
+        Arrays.fill(tree, 0);
+        for (int i = 1; i < tree.length; i++) {
+            if (i <= slotCount && slots[i - 1] != null) {
+                tree[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package bounce;
+
+import java.awt.Color;
+
+/**
+ * Grid of counts used to paint a crowd of shapes as blocks, each shaded by
+ * how many shapes lie within it, rather than shape by shape. Each block
+ * covers a few pixels whatever the Painter's scale, so painting takes time
+ * in proportion to the area covered rather than the number of shapes.
+ */
+final class DensityMap {
+
+    // Side of a block, in device pixels.
+    private static final int BLOCK_PIXELS = 4;
+
+    // Area, in device pixels, below which a shape is considered crowded.
+    private static final int CROWDED_PIXELS = 16;
+
+    // Shades for blocks holding 1, 2, ... shapes, the last standing for
+    // that many shapes or more.
+    private static final Color[] SHADES = new Color[8];
+
+    static {
+        for (int i = 0; i < SHADES.length; i++) {
+            SHADES[i] = new Color(0, 0, 0, 64 + 191 * i / (SHADES.length - 1));
+        }
+    }
+
+    private final int width;
+
+    private final int height;
+
+    private final int block;
+
+    private final int columns;
+
+    private final int rows;
+
+    private final int[] counts;
+
+    /*
+     * Creates an empty DensityMap covering width by height units, for
+     * painting with painter.
+     */
+    DensityMap(int width, int height, Painter painter) {
+        this.width = width;
+        this.height = height;
+        block = Math.max(1, (int) Math.ceil(BLOCK_PIXELS / painter.scale()));
+        columns = Math.max(1, (width + block - 1) / block);
+        rows = Math.max(1, (height + block - 1) / block);
+        counts = new int[columns * rows];
+    }
+
+    /*
+     * Returns true if painter aggregates crowds and count shapes within
+     * width by height units are too crowded to make out.
+     */
+    static boolean isCrowded(Painter painter, int count, int width, int height) {
+        if ((painter.levelOfDetail() & Painter.AGGREGATE_CROWDS) == 0 || count == 0) {
+            return false;
+        }
+        double scale = painter.scale();
+        return (double) width * height * scale * scale < (double) count * CROWDED_PIXELS;
+    }
+
+    /*
+     * Counts a shape at x, y that is width by height units in size, by its
+     * centre.
+     */
+    void plot(int x, int y, int width, int height) {
+        int column = Math.min(columns - 1, Math.max(0, (x + width / 2) / block));
+        int row = Math.min(rows - 1, Math.max(0, (y + height / 2) / block));
+        counts[row * columns + column]++;
+    }
+
+    /*
+     * Paints the blocks holding shapes, merging neighbouring blocks in a row
+     * that have the same shade.
+     */
+    void paint(Painter painter) {
+        Color color = painter.getColor();
+        Color current = color;
+
+        for (int row = 0; row < rows; row++) {
+            int start = 0;
+            int shade = shade(row, 0);
+            for (int column = 1; column <= columns; column++) {
+                int next = column == columns ? -1 : shade(row, column);
+                if (next != shade) {
+                    if (shade >= 0) {
+                        if (current != SHADES[shade]) {
+                            current = SHADES[shade];
+                            painter.setColor(current);
+                        }
+                        // Blocks at the far edges are cut to the area covered.
+                        painter.fillRect(start * block, row * block,
+                                Math.min(column * block, width) - start * block,
+                                Math.min(block, height - row * block));
+                    }
+                    start = column;
+                    shade = next;
+                }
+            }
+        }
+
+        if (current != color) {
+            painter.setColor(color);
+        }
+    }
+
+    private int shade(int row, int column) {
+        return Math.min(counts[row * columns + column], SHADES.length) - 1;
+    }
+}
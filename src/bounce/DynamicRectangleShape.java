@@ -34,32 +34,31 @@ public class DynamicRectangleShape extends RectangleShape {
     }
 
     @Override
-    public void move(int width, int height) {
-        int preDeltaX = deltaX;
-        int preDeltaY = deltaY;
-        super.move(width, height);
+    protected void bounced(int preDeltaX, int preDeltaY) {
+        int newDeltaX = deltaX();
+        int newDeltaY = deltaY();
 
-        if ((preDeltaY < 0 && deltaY > 0) ||
-                (preDeltaY > 0 && deltaY < 0)) {
+        if ((preDeltaY < 0 && newDeltaY > 0) ||
+                (preDeltaY > 0 && newDeltaY < 0)) {
             // Bounced off horizontal wall.
             filled = false;
         }
-        if ((preDeltaX < 0 && deltaX > 0) ||
-                (preDeltaX > 0 && deltaX < 0)) {
+        if ((preDeltaX < 0 && newDeltaX > 0) ||
+                (preDeltaX > 0 && newDeltaX < 0)) {
             // Bounced off vertical wall.
             filled = true;
         }
     }
 
     @Override
-    protected void doPaint(Painter painter) {
+    protected void doPaint(Painter painter, int x, int y) {
         if (this.filled) {
             Color defaultColor = painter.getColor();
             painter.setColor(this.color);
-            painter.fillRect(this.x, this.y, this.width, this.height);
+            painter.fillRect(x, y, this.width, this.height);
             painter.setColor(defaultColor);
         } else {
-            super.doPaint(painter);
+            super.doPaint(painter, x, y);
         }
     }
 }
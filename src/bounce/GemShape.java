@@ -56,7 +56,7 @@ public class GemShape extends Shape {
     }
 
     @Override
-    public void doPaint(Painter painter) {
+    public void doPaint(Painter painter, int x, int y) {
         painter.drawGemShape(x, y, width, height);
     }
 }
@@ -1,22 +1,89 @@
 package bounce;
 
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.text.Bidi;
 
 /**
  * Implementation of the Painter interface that delegates drawing to a
  * java.awt.Graphics object.
  *
+ * Text is laid out once for each font and rendering context it is drawn
+ * with, and the resulting GlyphVectors are kept in a cache shared by all
+ * GraphicsPainters, as shapes draw the same text frame after frame. The
+ * outlines of gems are likewise kept for each size, relative to the origin,
+ * and moved into place as they are drawn.
+ *
  * @author Ian Warren
  */
 public class GraphicsPainter implements Painter {
+    // Number of laid out texts cached.
+    private static final int TEXT_CACHE_SIZE = 4096;
+
+    private static final LruCache<TextKey, CenteredText> TEXT_CACHE = new LruCache<>(TEXT_CACHE_SIZE);
+
+    // Slots in the gem outline cache, a power of two. Each slot holds the
+    // outline of one size, replaced when a size sharing the slot is drawn.
+    private static final int OUTLINE_SLOTS = 1024;
+
+    private static final GemOutline[] GEM_OUTLINES = new GemOutline[OUTLINE_SLOTS];
+
     // Delegate object.
     private Graphics g;
 
+    // Position between simulation steps being painted.
+    private double interpolation;
+
+    // Level of detail flags (see Painter.levelOfDetail()).
+    private int levelOfDetail;
+
+    // Device pixels per unit of distance.
+    private double scale;
+
+    // Vertices of the gem being drawn, in position.
+    private final int[] gemX = new int[6];
+    private final int[] gemY = new int[6];
+
     /**
      * Creates a GraphicsPainter object and sets its Graphics delegate.
      */
     public GraphicsPainter(Graphics g) {
+        this(g, 1.0);
+    }
+
+    /**
+     * Creates a GraphicsPainter object that paints shapes interpolated
+     * between their previous and current positions.
+     *
+     * @param g             the Graphics delegate.
+     * @param interpolation 0.0 (previous position) .. 1.0 (current position).
+     */
+    public GraphicsPainter(Graphics g, double interpolation) {
+        this(g, interpolation, 0);
+    }
+
+    /**
+     * Creates a GraphicsPainter object that paints shapes interpolated
+     * between their previous and current positions, at a reduced level of
+     * detail.
+     *
+     * @param g             the Graphics delegate.
+     * @param interpolation 0.0 (previous position) .. 1.0 (current position).
+     * @param levelOfDetail level of detail flags (see Painter).
+     */
+    public GraphicsPainter(Graphics g, double interpolation, int levelOfDetail) {
         this.g = g;
+        this.interpolation = interpolation;
+        this.levelOfDetail = levelOfDetail;
+
+        scale = 1.0;
+        if (g instanceof Graphics2D) {
+            AffineTransform transform = ((Graphics2D) g).getTransform();
+            scale = Math.min(Math.hypot(transform.getScaleX(), transform.getShearY()),
+                    Math.hypot(transform.getShearX(), transform.getScaleY()));
+        }
     }
 
     /**
@@ -72,6 +139,15 @@ public class GraphicsPainter implements Painter {
      */
     @Override
     public void drawCenteredText(String text, int x, int y) {
+        if (g instanceof Graphics2D) {
+            Graphics2D g2 = (Graphics2D) g;
+            CenteredText centered = centeredText(g2, text);
+            if (centered != null) {
+                g2.drawGlyphVector(centered.glyphs, x + centered.offsetX, y + centered.offsetY);
+                return;
+            }
+        }
+
         FontMetrics fm = g.getFontMetrics();
         int ascent = fm.getAscent();
         int descent = fm.getDescent();
@@ -87,6 +163,66 @@ public class GraphicsPainter implements Painter {
         g.drawString(text, xPos, yPos);
     }
 
+    /*
+     * Returns text laid out in g's font and rendering context, from the
+     * cache if it has been laid out before, or null if text needs
+     * bidirectional layout, which drawString() is left to do.
+     */
+    private static CenteredText centeredText(Graphics2D g, String text) {
+        Font font = g.getFont();
+        FontRenderContext frc = g.getFontRenderContext();
+        TextKey key = new TextKey(text, font, frc);
+        CenteredText centered = TEXT_CACHE.get(key);
+        if (centered == null) {
+            char[] chars = text.toCharArray();
+            if (Bidi.requiresBidi(chars, 0, chars.length)) {
+                return null;
+            }
+            GlyphVector glyphs = font.layoutGlyphVector(frc, chars, 0, chars.length, Font.LAYOUT_LEFT_TO_RIGHT);
+
+            // Centre as drawCenteredText() does for other Graphics.
+            FontMetrics fm = g.getFontMetrics(font);
+            int ascent = fm.getAscent();
+            int descent = fm.getDescent();
+            centered = new CenteredText(glyphs, -(fm.stringWidth(text) / 2),
+                    ascent > descent ? (ascent - descent) / 2 : -((descent - ascent) / 2));
+            TEXT_CACHE.put(key, centered);
+        }
+        return centered;
+    }
+
+    /**
+     * see bounce.Painter.interpolation
+     */
+    @Override
+    public double interpolation() {
+        return interpolation;
+    }
+
+    /**
+     * see bounce.Painter.isVisible
+     */
+    @Override
+    public boolean isVisible(int x, int y, int width, int height) {
+        return g.hitClip(x, y, width, height);
+    }
+
+    /**
+     * see bounce.Painter.levelOfDetail
+     */
+    @Override
+    public int levelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * see bounce.Painter.scale
+     */
+    @Override
+    public double scale() {
+        return scale;
+    }
+
     /**
      * see bounce.Painter.drawCenteredText
      */
@@ -114,22 +250,97 @@ public class GraphicsPainter implements Painter {
      */
     @Override
     public void drawGemShape(int x, int y, int width, int height) {
-        Polygon gemShape = new Polygon();
-        if (width < 40) {
-            //add four sides diamond
-            gemShape.addPoint(x, y + height / 2);
-            gemShape.addPoint(x + width / 2, y);
-            gemShape.addPoint(x + width, y + height / 2);
-            gemShape.addPoint(x + width / 2, y + height);
-        } else {
-            //add six sides hexagon
-            gemShape.addPoint(x, y + height / 2);
-            gemShape.addPoint(x + 20, y);
-            gemShape.addPoint(x + width - 20, y);
-            gemShape.addPoint(x + width, y + height / 2);
-            gemShape.addPoint(x + width - 20, y + height);
-            gemShape.addPoint(x + 20, y + height);
+        GemOutline gem = gemOutline(width, height);
+        int vertices = gem.xPoints.length;
+        for (int i = 0; i < vertices; i++) {
+            gemX[i] = x + gem.xPoints[i];
+            gemY[i] = y + gem.yPoints[i];
+        }
+        g.drawPolygon(gemX, gemY, vertices);
+    }
+
+    /*
+     * Returns the outline of a gem of the specified size from the cache,
+     * creating it if it is not there.
+     */
+    private static GemOutline gemOutline(int width, int height) {
+        int slot = (width * 31 + height) & (OUTLINE_SLOTS - 1);
+        GemOutline outline = GEM_OUTLINES[slot];
+        if (outline == null || outline.width != width || outline.height != height) {
+            outline = new GemOutline(width, height);
+            GEM_OUTLINES[slot] = outline;
+        }
+        return outline;
+    }
+
+    /*
+     * Key of a laid out text in the text cache.
+     */
+    private static final class TextKey {
+        private final String text;
+        private final Font font;
+        private final FontRenderContext frc;
+
+        TextKey(String text, Font font, FontRenderContext frc) {
+            this.text = text;
+            this.font = font;
+            this.frc = frc;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TextKey)) {
+                return false;
+            }
+            TextKey key = (TextKey) other;
+            return text.equals(key.text) && font.equals(key.font) && frc.equals(key.frc);
+        }
+
+        @Override
+        public int hashCode() {
+            return (text.hashCode() * 31 + font.hashCode()) * 31 + frc.hashCode();
+        }
+    }
+
+    /*
+     * Text laid out as glyphs, with the offset from the point it is centred
+     * on to the start of its baseline.
+     */
+    private static final class CenteredText {
+        final GlyphVector glyphs;
+        final int offsetX;
+        final int offsetY;
+
+        CenteredText(GlyphVector glyphs, int offsetX, int offsetY) {
+            this.glyphs = glyphs;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+    }
+
+    /*
+     * Vertices of a gem of a given size, with its top left corner at the
+     * origin. Outlines are immutable, so that painters on different threads
+     * can share them.
+     */
+    private static final class GemOutline {
+        final int width;
+        final int height;
+        final int[] xPoints;
+        final int[] yPoints;
+
+        GemOutline(int width, int height) {
+            this.width = width;
+            this.height = height;
+            if (width < 40) {
+                //four sides diamond
+                xPoints = new int[]{0, width / 2, width, width / 2};
+                yPoints = new int[]{height / 2, 0, height / 2, height};
+            } else {
+                //six sides hexagon
+                xPoints = new int[]{0, 20, width - 20, width, width - 20, 20};
+                yPoints = new int[]{height / 2, 0, 0, height / 2, height, height};
+            }
         }
-        g.drawPolygon(gemShape);
     }
 }
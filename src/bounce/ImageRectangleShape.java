@@ -18,8 +18,15 @@ public class ImageRectangleShape extends RectangleShape {
         picture = image;
     }
 
+    /*
+     * Returns the image this shape displays.
+     */
+    Image image() {
+        return picture;
+    }
+
     @Override
-    protected void doPaint(Painter painter) {
+    protected void doPaint(Painter painter, int x, int y) {
         painter.drawImage(picture, x, y, width, height);
     }
 }
@@ -0,0 +1,94 @@
+package bounce;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * PagedNestingShape whose children stay in the scene file it was loaded
+ * from (see SceneFile.loadLazily()) until they are needed. Besides being
+ * loaded when asked for, the children are loaded when the LazyNestingShape
+ * is painted, and are moved on to where they would be had they been moving
+ * all along. Paged out children are simply dropped, as the file and the
+ * number of steps taken since are enough to create them again.
+ *
+ * Painting from a ShapeModelSnapshot never reads the scene file; a
+ * LazyNestingShape whose children are not loaded is painted empty and asks
+ * for them to be loaded by the next ShapeModel.clock() call.
+ */
+public class LazyNestingShape extends PagedNestingShape {
+
+    // Records of the scene file this LazyNestingShape was loaded from.
+    private final SceneFile.Records records;
+
+    // This LazyNestingShape's own record.
+    private final int record;
+
+    // Number of times the children have been moved, or would have been
+    // moved had they been loaded, since the state saved in the file.
+    private long age;
+
+    private volatile boolean loadRequested;
+
+    LazyNestingShape(int x, int y, int deltaX, int deltaY, int width, int height, String text,
+                     SceneFile.Records records, int record) {
+        super(x, y, deltaX, deltaY, width, height, text);
+        this.records = records;
+        this.record = record;
+    }
+
+    @Override
+    void paintContents(Painter painter, int x, int y, ShapeModelSnapshot snapshot, int node) {
+        if (snapshot == null) {
+            load();
+        }
+
+        if (isLoaded()) {
+            touch(painter);
+        } else if (!loadRequested) {
+            ShapeModel model = model();
+            if (model != null) {
+                loadRequested = true;
+                model.requestLoad(this);
+            }
+        }
+        super.paintContents(painter, x, y, snapshot, node);
+    }
+
+    @Override
+    void advance(long ticks, int width, int height) {
+        super.advance(ticks, width, height);
+        age += Math.max(0, ticks);
+    }
+
+    @Override
+    void childrenMoving() {
+        age++;
+    }
+
+    @Override
+    List<Shape> pageIn() {
+        List<Shape> children = copyChildren();
+        loadRequested = false;
+        return children;
+    }
+
+    @Override
+    List<Shape> copyChildren() {
+        List<Shape> children;
+        try {
+            children = records.children(record);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new UncheckedIOException(new IOException("Cannot load shapes from scene file", e));
+        }
+        for (Shape child : children) {
+            child.advance(age, width, height);
+        }
+        return children;
+    }
+
+    @Override
+    void pagedOut(List<Shape> children) {
+        // The children can be read back from the file.
+    }
+}
@@ -0,0 +1,261 @@
+package bounce;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loose quadtree that indexes the world-space bounds of every Shape in a
+ * shape composition. A Shape is stored in the node at the depth matching its
+ * size that contains its centre; because each node's bounds are loosened to
+ * twice the node's size, the Shape always lies within its node's loose
+ * bounds. Inserting, moving and removing a Shape therefore touch only the
+ * nodes on a single root-to-node path, and point and rectangle queries visit
+ * a number of nodes logarithmic in the size of the world.
+ *
+ * Each Shape's entry is reached directly through Shape.indexEntry, so
+ * refreshing the index after every Shape has moved needs no lookups.
+ */
+final class LooseQuadtree {
+    // Depth of the smallest nodes.
+    private static final int MAX_DEPTH = 12;
+
+    /*
+     * Index entry for one Shape: its world-space bounds (right and bottom
+     * exclusive) and the node and position within the node it is stored at.
+     */
+    static final class Entry {
+        final Shape shape;
+        int left;
+        int top;
+        int right;
+        int bottom;
+        Node node;
+        int slot;
+
+        Entry(Shape shape) {
+            this.shape = shape;
+        }
+    }
+
+    /*
+     * Node covering the square of the specified size at (x, y); its loose
+     * bounds extend half the size beyond the square on each side.
+     */
+    private static final class Node {
+        final Node parent;
+        final int depth;
+        final int x;
+        final int y;
+        final int size;
+        final Node[] children;
+        final List<Entry> entries;
+
+        // Number of entries in this node and its descendants.
+        int count;
+
+        Node(Node parent, int depth, int x, int y, int size) {
+            this.parent = parent;
+            this.depth = depth;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            children = new Node[4];
+            entries = new ArrayList<>(0);
+        }
+
+        boolean looseIntersects(int left, int top, int right, int bottom) {
+            int margin = size / 2;
+            return left < x + size + margin && x - margin < right
+                    && top < y + size + margin && y - margin < bottom;
+        }
+    }
+
+    private final Node root;
+
+    /**
+     * Creates an empty index for a world of the specified width and height.
+     */
+    LooseQuadtree(int width, int height) {
+        int size = 1;
+        while (size < Math.max(width, height)) {
+            size *= 2;
+        }
+        root = new Node(null, 0, 0, 0, size);
+    }
+
+    /**
+     * Adds shape, and any shapes nested within it, to this index. Parameters
+     * offsetX and offsetY give the world-space position of shape's parent.
+     */
+    void add(Shape shape, int offsetX, int offsetY) {
+        Entry entry = new Entry(shape);
+        shape.indexEntry = entry;
+        setBounds(entry, offsetX, offsetY);
+        insert(entry);
+
+        if (shape instanceof NestingShape) {
+            for (Shape child : ((NestingShape) shape).children()) {
+                add(child, entry.left, entry.top);
+            }
+        }
+    }
+
+    /**
+     * Removes shape, and any shapes nested within it, from the index
+     * holding them, if any. As an entry knows its node, the index itself is
+     * not needed, so NestingShape.remove() can unindex a shape removed
+     * directly.
+     */
+    static void remove(Shape shape) {
+        Entry entry = shape.indexEntry;
+        if (entry != null) {
+            detach(entry);
+            shape.indexEntry = null;
+        }
+
+        if (shape instanceof NestingShape) {
+            for (Shape child : ((NestingShape) shape).children()) {
+                remove(child);
+            }
+        }
+    }
+
+    /**
+     * Brings the bounds of shape, and any shapes nested within it, up to
+     * date after they have moved. Entries are only relocated when a shape's
+     * centre leaves its node or its size no longer suits the node's depth.
+     * Shapes added directly through NestingShape.add(), which have no entry
+     * yet, are added.
+     */
+    void update(Shape shape, int offsetX, int offsetY) {
+        Entry entry = shape.indexEntry;
+        if (entry == null) {
+            add(shape, offsetX, offsetY);
+            return;
+        }
+        setBounds(entry, offsetX, offsetY);
+
+        Node node = entry.node;
+        int centreX = clamp((entry.left + entry.right) / 2);
+        int centreY = clamp((entry.top + entry.bottom) / 2);
+        if (node.depth != depthFor(entry) || centreX < node.x || centreX >= node.x + node.size
+                || centreY < node.y || centreY >= node.y + node.size) {
+            detach(entry);
+            insert(entry);
+        }
+
+        if (shape instanceof NestingShape) {
+            for (Shape child : ((NestingShape) shape).children()) {
+                update(child, entry.left, entry.top);
+            }
+        }
+    }
+
+    /**
+     * Adds to result every indexed Shape whose bounds intersect area. As
+     * with Rectangle.intersects(), an empty area intersects nothing.
+     */
+    void query(Rectangle area, List<Shape> result) {
+        if (area.isEmpty()) {
+            return;
+        }
+        query(root, area.x, area.y, area.x + area.width, area.y + area.height, result);
+    }
+
+    /**
+     * Adds to result every indexed Shape whose bounds contain point.
+     */
+    void query(Point point, List<Shape> result) {
+        query(root, point.x, point.y, point.x + 1, point.y + 1, result);
+    }
+
+    private void query(Node node, int left, int top, int right, int bottom, List<Shape> result) {
+        if (node.count == 0 || !node.looseIntersects(left, top, right, bottom)) {
+            return;
+        }
+
+        for (Entry entry : node.entries) {
+            if (entry.left < right && left < entry.right
+                    && entry.top < bottom && top < entry.bottom) {
+                result.add(entry.shape);
+            }
+        }
+        for (Node child : node.children) {
+            if (child != null) {
+                query(child, left, top, right, bottom, result);
+            }
+        }
+    }
+
+    private void setBounds(Entry entry, int offsetX, int offsetY) {
+        Shape shape = entry.shape;
+        entry.left = offsetX + shape.x();
+        entry.top = offsetY + shape.y();
+        entry.right = entry.left + shape.width();
+        entry.bottom = entry.top + shape.height();
+    }
+
+    /*
+     * Returns the depth of the smallest nodes whose loose bounds can hold
+     * the entry wherever its centre lies within the node.
+     */
+    private int depthFor(Entry entry) {
+        int extent = Math.max(entry.right - entry.left, entry.bottom - entry.top);
+        int depth = 0;
+        int size = root.size;
+        while (depth < MAX_DEPTH && size / 2 >= Math.max(extent, 1)) {
+            size /= 2;
+            depth++;
+        }
+        return depth;
+    }
+
+    private void insert(Entry entry) {
+        int depth = depthFor(entry);
+        int centreX = clamp((entry.left + entry.right) / 2);
+        int centreY = clamp((entry.top + entry.bottom) / 2);
+
+        Node node = root;
+        node.count++;
+        while (node.depth < depth) {
+            int half = node.size / 2;
+            int column = centreX >= node.x + half ? 1 : 0;
+            int row = centreY >= node.y + half ? 1 : 0;
+
+            Node child = node.children[row * 2 + column];
+            if (child == null) {
+                child = new Node(node, node.depth + 1, node.x + column * half, node.y + row * half, half);
+                node.children[row * 2 + column] = child;
+            }
+            node = child;
+            node.count++;
+        }
+
+        entry.node = node;
+        entry.slot = node.entries.size();
+        node.entries.add(entry);
+    }
+
+    private static void detach(Entry entry) {
+        Node node = entry.node;
+        List<Entry> entries = node.entries;
+
+        // Swap the last entry into the vacated slot.
+        Entry last = entries.remove(entries.size() - 1);
+        if (last != entry) {
+            entries.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+
+        for (; node != null; node = node.parent) {
+            node.count--;
+        }
+        entry.node = null;
+    }
+
+    private int clamp(int coordinate) {
+        return Math.max(0, Math.min(root.size - 1, coordinate));
+    }
+}
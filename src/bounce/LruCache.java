@@ -0,0 +1,46 @@
+package bounce;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map of bounded size that evicts its least recently used entry once full.
+ * Its methods are synchronized, so that one cache can be shared by Painters
+ * painting on different threads.
+ */
+final class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map;
+
+    /*
+     * Creates an LruCache holding at most capacity entries.
+     */
+    LruCache(final int capacity) {
+        map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /*
+     * Returns the value cached for key, marking it as the most recently
+     * used, or null if there is none.
+     */
+    synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    /*
+     * Caches value for key, evicting the least recently used entry if the
+     * cache is full.
+     */
+    synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+}
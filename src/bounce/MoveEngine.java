@@ -0,0 +1,16 @@
+package bounce;
+
+/**
+ * Interface to represent a strategy for progressing a shape composition by
+ * one step. A ShapeModel delegates the movement part of clock() to its
+ * MoveEngine; different engines trade simplicity for throughput but must all
+ * leave the composition in the same state that calling move() on the root
+ * NestingShape would.
+ */
+public interface MoveEngine {
+    /**
+     * Moves the root NestingShape, and every Shape it contains, one step
+     * within a two-dimensional world of the specified width and height.
+     */
+    void clock(NestingShape root, int width, int height);
+}
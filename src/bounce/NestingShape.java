@@ -5,62 +5,284 @@ package bounce;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class NestingShape extends Shape {
 
-    private List<Shape> shapes;
+    private ChildList shapes;
+
+    // Children packed into arrays by an ArrayMoveEngine, null when unpacked.
+    private ShapeArrays packedChildren;
+
+    // Whether collisions between children are detected.
+    private boolean collisionsEnabled;
+
+    // Number of NestingShapes in this subtree, including this one, that
+    // detect collisions.
+    private int collidingNests;
+
+    // Grid used to detect collisions, created on first use.
+    private SpatialHashGrid grid;
+
+    // ShapeModel this NestingShape is the root of, if any.
+    ShapeModel model;
+
+    // Revision of what is painted within this NestingShape, bumped when it
+    // first changes after a snapshot has been recorded (see
+    // contentsChanged()).
+    int revision;
+
+    // Whether anything painted within this NestingShape has changed since a
+    // snapshot was last recorded.
+    boolean changedSinceSnapshot;
+
+    // Children as most recently painted while at rest, null if never.
+    private volatile DisplayList displayList;
 
     public NestingShape(int x, int y, int deltaX, int deltaY, int width,
                         int height) {
         super(x, y, deltaX, deltaY, width, height, null);
-        shapes = new ArrayList<>();
+        shapes = new ChildList();
     }
 
     public NestingShape(int x, int y, int deltaX, int deltaY, int width,
                         int height, String text) {
         super(x, y, deltaX, deltaY, width, height, text);
-        shapes = new ArrayList<>();
+        shapes = new ChildList();
     }
 
-    protected void doPaint(Painter painter) {
+    protected void doPaint(Painter painter, int x, int y) {
         painter.drawRect(x, y, width, height);
+    }
 
+    @Override
+    void paintContents(Painter painter, int x, int y, ShapeModelSnapshot snapshot, int node) {
         // Cause painting of shapes to be relative to this shape.
         painter.translate(x, y);
 
-        for (Shape shape : shapes) {
-            shape.paint(painter);
+        // Children that have not changed since the previous snapshot are
+        // replayed from a display list, recorded the first time they are
+        // painted at rest.
+        int revision = snapshot == null ? -1 : snapshot.revision(node);
+        if (revision >= 0) {
+            DisplayList list = displayList;
+            if (list == null || !list.matches(revision, painter)) {
+                RecordingPainter recorder = new RecordingPainter(painter.levelOfDetail(), painter.scale());
+                paintChildren(recorder, snapshot, node);
+                list = new DisplayList(recorder, revision, painter);
+                displayList = list;
+            }
+            list.recording.replay(painter);
+        } else {
+            paintChildren(painter, snapshot, node);
         }
 
         // Restore graphics origin.
         painter.translate(-x, -y);
     }
 
+    /*
+     * Paints the children, relative to this NestingShape, from the specified
+     * node of snapshot or as they are now if snapshot is null.
+     */
+    private void paintChildren(Painter painter, ShapeModelSnapshot snapshot, int node) {
+        int count = snapshot == null ? shapes.size() : snapshot.childCount(node);
+        if (DensityMap.isCrowded(painter, count, width, height)) {
+            DensityMap map = new DensityMap(width, height, painter);
+            if (snapshot == null) {
+                for (Shape shape : shapes) {
+                    map.plot(shape.x(), shape.y(), shape.width(), shape.height());
+                }
+            } else {
+                snapshot.plotChildren(map, node);
+            }
+            map.paint(painter);
+        } else if (snapshot == null) {
+            for (Shape shape : shapes) {
+                shape.paint(painter);
+            }
+        } else {
+            snapshot.paintChildren(painter, node);
+        }
+    }
+
     @Override
     public void move(int width, int height) {
         // Move this nesting shape.
         super.move(width, height);
 
         // Move contained shapes.
+        childrenMoving();
         for (Shape shape : shapes) {
             shape.move(this.width, this.height);
         }
     }
 
+    @Override
+    void advance(long ticks, int width, int height) {
+        super.advance(ticks, width, height);
+
+        for (Shape shape : shapes) {
+            shape.advance(ticks, this.width, this.height);
+        }
+    }
+
+    @Override
+    void savePosition() {
+        super.savePosition();
+
+        for (Shape shape : shapes) {
+            shape.savePosition();
+        }
+    }
+
     public void add(Shape shape) throws IllegalArgumentException {
         if (shape.parent() != null || outOfBounds(shape)) {
             throw new IllegalArgumentException();
         }
 
 
+        unpack();
         shapes.add(shape);
         shape.setParent(this);
+        changed();
+
+        if (shape instanceof NestingShape) {
+            adjustCollidingNests(((NestingShape) shape).collidingNests);
+        }
     }
 
     public void remove(Shape shape) {
-        shapes.remove(shape);
+        unpack();
+        if (shapes.remove(shape) && shape instanceof NestingShape) {
+            adjustCollidingNests(-((NestingShape) shape).collidingNests);
+        }
+        if (shape.indexEntry != null) {
+            LooseQuadtree.remove(shape);
+        }
         shape.setParent(null);
+        changed();
+    }
+
+    /*
+     * Appends shapes to this NestingShape's children, in iteration order.
+     * Either all of the shapes are added or, if any of them already has a
+     * parent, appears more than once or does not fit, none are.
+     */
+    void addAll(Collection<? extends Shape> shapes) throws IllegalArgumentException {
+        for (Shape shape : shapes) {
+            if (shape.parent() != null || shape == this || outOfBounds(shape)) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        unpack();
+        int start = this.shapes.size();
+        for (Shape shape : shapes) {
+            if (shape.parent() != null) {
+                // The shape appears twice; undo the shapes added so far.
+                for (int i = this.shapes.size() - 1; i >= start; i--) {
+                    this.shapes.remove(i).setParent(null);
+                }
+                throw new IllegalArgumentException();
+            }
+            this.shapes.add(shape);
+            shape.setParent(this);
+        }
+        changed();
+
+        int nests = 0;
+        for (int i = start; i < this.shapes.size(); i++) {
+            Shape shape = this.shapes.get(i);
+            if (shape instanceof NestingShape) {
+                nests += ((NestingShape) shape).collidingNests;
+            }
+        }
+        adjustCollidingNests(nests);
+    }
+
+    /*
+     * Removes those of the specified shapes that are children of this
+     * NestingShape, without scanning the children. The removed
+     * shapes are appended to removed in the order they were held, and the
+     * positions they were held at are returned in ascending order.
+     */
+    int[] removeAll(Collection<? extends Shape> shapes, List<Shape> removed) {
+        unpack();
+        int start = removed.size();
+        int[] indices = this.shapes.removeAll(shapes, removed);
+
+        int nests = 0;
+        for (int i = start; i < removed.size(); i++) {
+            Shape shape = removed.get(i);
+            shape.setParent(null);
+            if (shape instanceof NestingShape) {
+                nests += ((NestingShape) shape).collidingNests;
+            }
+        }
+        adjustCollidingNests(-nests);
+        if (removed.size() > start) {
+            changed();
+        }
+        return indices;
+    }
+
+    /*
+     * Appends shapes that belong to no other NestingShape to this
+     * NestingShape's children without checking them, as when children are
+     * read back from a scene file.
+     */
+    void adopt(List<Shape> shapes) {
+        unpack();
+        contentsChanged();
+        int nests = 0;
+        for (Shape shape : shapes) {
+            this.shapes.add(shape);
+            shape.setParent(this);
+            if (shape instanceof NestingShape) {
+                nests += ((NestingShape) shape).collidingNests;
+            }
+        }
+        adjustCollidingNests(nests);
+    }
+
+    /*
+     * Removes all of this NestingShape's children, returning them, so that
+     * they can be read back from a scene file later. None of the children
+     * may detect collisions.
+     */
+    List<Shape> disown() {
+        unpack();
+        contentsChanged();
+        List<Shape> children = new ArrayList<>(shapes);
+        for (Shape shape : children) {
+            shape.setParent(null);
+        }
+        shapes = new ChildList();
+        return children;
+    }
+
+    /**
+     * Specifies whether shapes directly contained in this NestingShape
+     * should bounce off each other, as well as off this NestingShape's walls.
+     * Collisions are resolved by ShapeModel.clock(); by default they are not
+     * detected and shapes pass through one another.
+     */
+    public void setCollisionsEnabled(boolean enabled) {
+        if (enabled != collisionsEnabled) {
+            collisionsEnabled = enabled;
+            adjustCollidingNests(enabled ? 1 : -1);
+            changed();
+        }
+    }
+
+    /**
+     * Returns true if collisions between this NestingShape's children are
+     * detected.
+     */
+    public boolean collisionsEnabled() {
+        return collisionsEnabled;
     }
 
     // Throws IndexOutOfBounds - unchecked exception.
@@ -81,7 +303,153 @@ public class NestingShape extends Shape {
         return shapes.contains(shape);
     }
 
-    private boolean outOfBounds(Shape s) {
+    /*
+     * Returns the children of this NestingShape, for reading only.
+     */
+    ChildList children() {
+        return shapes;
+    }
+
+    /*
+     * Returns true if collisions are detected anywhere within this subtree.
+     */
+    boolean detectsCollisions() {
+        return collidingNests > 0;
+    }
+
+    /*
+     * Detects and resolves collisions between siblings throughout this
+     * subtree, returning the number of colliding pairs.
+     */
+    int resolveCollisions() {
+        if (collidingNests == 0) {
+            return 0;
+        }
+
+        int collisions = 0;
+        if (collisionsEnabled) {
+            if (grid == null) {
+                grid = new SpatialHashGrid();
+            }
+            shapes.compact();
+            collisions = grid.collide(shapes, width, height);
+        }
+
+        for (Shape shape : shapes) {
+            if (shape instanceof NestingShape) {
+                collisions += ((NestingShape) shape).resolveCollisions();
+            }
+        }
+        return collisions;
+    }
+
+    /*
+     * Called by MoveEngines each time they are about to move this
+     * NestingShape's children, which they must only reach through
+     * children().
+     */
+    void childrenMoving() {
+    }
+
+    /*
+     * Keeps this NestingShape's children from being paged out (see
+     * PagedNestingShape). NestingShapes hold their children anyway.
+     */
+    void pin() {
+    }
+
+    /*
+     * Pins this NestingShape and its ancestors once the composition within
+     * them has been changed, as their children can no longer be read back
+     * from a scene file.
+     */
+    private void changed() {
+        for (NestingShape nest = this; nest != null; nest = nest.parent) {
+            nest.pin();
+        }
+        contentsChanged();
+    }
+
+    /*
+     * Notes that something painted within this NestingShape has changed,
+     * so that display lists of it and its ancestors are not replayed. The
+     * walk up stops at the first ancestor already changed since the last
+     * snapshot, as snapshots clear every NestingShape they record.
+     */
+    void contentsChanged() {
+        for (NestingShape nest = this; nest != null && !nest.changedSinceSnapshot; nest = nest.parent) {
+            nest.changedSinceSnapshot = true;
+            nest.revision = (nest.revision + 1) & Integer.MAX_VALUE;
+        }
+    }
+
+    /*
+     * Marks this NestingShape as changed since the last snapshot while its
+     * children are moved on several threads, so that contentsChanged()
+     * calls from them stop here and only read the flag. Returns the flag's
+     * previous value, to be passed to releaseChanges() once they have been
+     * moved.
+     */
+    boolean holdChanges() {
+        boolean held = changedSinceSnapshot;
+        changedSinceSnapshot = true;
+        return held;
+    }
+
+    /*
+     * Restores the flag set by holdChanges(), then notes the change if
+     * anything within this NestingShape changed while it was held.
+     */
+    void releaseChanges(boolean held, boolean changed) {
+        changedSinceSnapshot = held;
+        if (changed) {
+            contentsChanged();
+        }
+    }
+
+    private void adjustCollidingNests(int delta) {
+        for (NestingShape nest = this; nest != null; nest = nest.parent) {
+            nest.collidingNests += delta;
+        }
+    }
+
+    /*
+     * Returns this NestingShape's children packed into arrays, packing them
+     * first if necessary. The children remain views over the arrays until
+     * the structure of this NestingShape changes or unpack() is called.
+     */
+    ShapeArrays packedChildren() {
+        if (packedChildren == null) {
+            shapes.compact();
+            packedChildren = new ShapeArrays(this, shapes);
+        }
+        return packedChildren;
+    }
+
+    /*
+     * Copies packed child state back into the children's own fields.
+     */
+    void unpack() {
+        if (packedChildren != null) {
+            ShapeArrays arrays = packedChildren;
+            packedChildren = null;
+            arrays.release();
+        }
+    }
+
+    /*
+     * Unpacks this NestingShape and all NestingShapes nested within it.
+     */
+    void unpackAll() {
+        unpack();
+        for (Shape shape : shapes) {
+            if (shape instanceof NestingShape) {
+                ((NestingShape) shape).unpackAll();
+            }
+        }
+    }
+
+    boolean outOfBounds(Shape s) {
         boolean result = false;
 
         if ((s.x() + s.width() > this.width)
@@ -90,5 +458,27 @@ public class NestingShape extends Shape {
         }
         return result;
     }
-}
 
+    /*
+     * Recording of a NestingShape's children, with the revision it was
+     * recorded at and the level of detail and scale it was recorded for.
+     */
+    private static final class DisplayList {
+        final RecordingPainter recording;
+        final int revision;
+        final int levelOfDetail;
+        final double scale;
+
+        DisplayList(RecordingPainter recording, int revision, Painter painter) {
+            this.recording = recording;
+            this.revision = revision;
+            levelOfDetail = painter.levelOfDetail();
+            scale = painter.scale();
+        }
+
+        boolean matches(int revision, Painter painter) {
+            return this.revision == revision && levelOfDetail == painter.levelOfDetail()
+                    && scale == painter.scale();
+        }
+    }
+}
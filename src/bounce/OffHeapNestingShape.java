@@ -0,0 +1,122 @@
+package bounce;
+
+import java.util.List;
+
+/**
+ * PagedNestingShape whose children are kept outside the Java heap, as a few
+ * ints each, until they are needed. Only RectangleShapes, OvalShapes,
+ * GemShapes and DynamicRectangleShapes can be kept this way; they are moved
+ * and painted where they are held, and Shape objects are created for them
+ * only when they are asked for (see PagedNestingShape). An
+ * OffHeapNestingShape suits large numbers of simple shapes that are watched
+ * rather than manipulated.
+ *
+ * Shapes held off the heap are not found by ShapeModel.shapeAt() or
+ * shapesIn() until they are loaded.
+ */
+public class OffHeapNestingShape extends PagedNestingShape {
+
+    private final ShapeStore store = new ShapeStore();
+
+    public OffHeapNestingShape(int x, int y, int deltaX, int deltaY, int width, int height) {
+        this(x, y, deltaX, deltaY, width, height, null);
+    }
+
+    public OffHeapNestingShape(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+        super(x, y, deltaX, deltaY, width, height, text);
+    }
+
+    /**
+     * Adds a child to this OffHeapNestingShape, holding it off the heap. The
+     * shape object itself is not kept and no ShapeModelEvent is fired, so
+     * shapes should be added before this OffHeapNestingShape is added to a
+     * ShapeModel.
+     *
+     * @throws IllegalArgumentException if shape cannot be held off the heap,
+     *                                  already has a parent or does not fit.
+     * @throws IllegalStateException    if this OffHeapNestingShape's children
+     *                                  are loaded.
+     */
+    public void addStored(Shape shape) throws IllegalArgumentException, IllegalStateException {
+        if (!ShapeStore.canStore(shape) || shape.parent() != null || outOfBounds(shape)) {
+            throw new IllegalArgumentException();
+        }
+        if (isLoaded()) {
+            throw new IllegalStateException();
+        }
+        store.add(shape);
+    }
+
+    /**
+     * Returns the number of children held off the heap, which is 0 while
+     * they are loaded.
+     */
+    public int storedCount() {
+        return store.size();
+    }
+
+    @Override
+    void paintContents(Painter painter, int x, int y, ShapeModelSnapshot snapshot, int node) {
+        if (isLoaded()) {
+            touch(painter);
+            super.paintContents(painter, x, y, snapshot, node);
+        } else {
+            painter.translate(x, y);
+            if (DensityMap.isCrowded(painter, store.size(), width, height)) {
+                DensityMap map = new DensityMap(width, height, painter);
+                store.plot(map);
+                map.paint(painter);
+            } else {
+                store.paint(painter);
+            }
+            painter.translate(-x, -y);
+        }
+    }
+
+    @Override
+    void childrenMoving() {
+        if (!isLoaded() && store.move(width, height)) {
+            contentsChanged();
+        }
+    }
+
+    @Override
+    void advance(long ticks, int width, int height) {
+        super.advance(ticks, width, height);
+        if (!isLoaded()) {
+            store.advance(ticks, this.width, this.height);
+        }
+    }
+
+    @Override
+    List<Shape> pageIn() {
+        List<Shape> children = store.createAll();
+        store.clear();
+        return children;
+    }
+
+    @Override
+    List<Shape> copyChildren() {
+        return store.createAll();
+    }
+
+    @Override
+    void pagedOut(List<Shape> children) {
+        for (Shape child : children) {
+            store.add(child);
+        }
+    }
+
+    @Override
+    boolean canPageOut() {
+        if (!super.canPageOut()) {
+            return false;
+        }
+        for (Shape child : children()) {
+            if (!ShapeStore.canStore(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
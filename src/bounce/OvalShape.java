@@ -60,7 +60,7 @@ public class OvalShape extends Shape {
      * Paints this OvalShape object using the supplied Painter object.
      */
     @Override
-    public void doPaint(Painter painter) {
+    public void doPaint(Painter painter, int x, int y) {
         painter.drawOval(x, y, width, height);
     }
 }
@@ -0,0 +1,241 @@
+package bounce;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * NestingShape whose children are kept somewhere other than in Shape objects
+ * until they are needed. The children are created when they are first asked
+ * for through shapeAt(), shapeCount(), indexOf(), contains(), add() or
+ * remove(), or when collision detection is enabled. Loading is transparent:
+ * the children appear as they would be had they been Shape objects all
+ * along, and no ShapeModelEvent is fired.
+ *
+ * Once its ShapeModel is short of memory, a PagedNestingShape whose children
+ * have not been painted for a while pages them out again on the next
+ * ShapeModel.clock() call. A PagedNestingShape keeps its children for good
+ * once the composition within it has been changed, and keeps them while
+ * collisions are detected within it.
+ */
+public abstract class PagedNestingShape extends NestingShape {
+
+    private volatile boolean loaded;
+
+    private boolean pinned;
+
+    // Cleared when the children have gone unpainted long enough to be paged
+    // out, null when they are not loaded or are pinned.
+    volatile Residency residency;
+
+    PagedNestingShape(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+        super(x, y, deltaX, deltaY, width, height, text);
+    }
+
+    /**
+     * Returns true if this PagedNestingShape's children are loaded. Views
+     * that walk the whole composition should skip the children of
+     * PagedNestingShapes that are not loaded, rather than load them.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public void add(Shape shape) throws IllegalArgumentException {
+        load();
+        super.add(shape);
+    }
+
+    @Override
+    public void remove(Shape shape) {
+        load();
+        super.remove(shape);
+    }
+
+    @Override
+    public void setCollisionsEnabled(boolean enabled) {
+        load();
+        super.setCollisionsEnabled(enabled);
+    }
+
+    @Override
+    public Shape shapeAt(int index) throws IndexOutOfBoundsException {
+        load();
+        return super.shapeAt(index);
+    }
+
+    @Override
+    public int shapeCount() {
+        load();
+        return super.shapeCount();
+    }
+
+    @Override
+    public int indexOf(Shape shape) {
+        load();
+        return super.indexOf(shape);
+    }
+
+    @Override
+    public boolean contains(Shape shape) {
+        load();
+        return super.contains(shape);
+    }
+
+    @Override
+    void addAll(Collection<? extends Shape> shapes) throws IllegalArgumentException {
+        load();
+        super.addAll(shapes);
+    }
+
+    @Override
+    int[] removeAll(Collection<? extends Shape> shapes, List<Shape> removed) {
+        load();
+        return super.removeAll(shapes, removed);
+    }
+
+    @Override
+    void pin() {
+        pinned = true;
+        residency = null;
+    }
+
+    /*
+     * Creates this PagedNestingShape's children as they are now, from
+     * wherever they are kept. Called with the model's lock held, if this
+     * PagedNestingShape belongs to a ShapeModel.
+     */
+    abstract List<Shape> pageIn();
+
+    /*
+     * Creates copies of the children as they are now, which are not loaded,
+     * leaving them where they are kept. Called with the model's lock held,
+     * if this PagedNestingShape belongs to a ShapeModel.
+     */
+    abstract List<Shape> copyChildren();
+
+    /*
+     * Returns the children as they are now without loading them: the
+     * children themselves if they are loaded, and otherwise copies that
+     * belong to no NestingShape. Called with the model's lock held, if this
+     * PagedNestingShape belongs to a ShapeModel.
+     */
+    List<Shape> currentChildren() {
+        return loaded ? new ArrayList<>(children()) : copyChildren();
+    }
+
+    /*
+     * Takes back the children pageIn() created, which are no longer part of
+     * the composition.
+     */
+    abstract void pagedOut(List<Shape> children);
+
+    /*
+     * Returns true if the children, which are loaded, may be paged out.
+     */
+    boolean canPageOut() {
+        return !detectsCollisions();
+    }
+
+    /*
+     * Marks the children as recently used by painter, so that they stay
+     * loaded. A RecordingPainter notes this PagedNestingShape, so that the
+     * children stay loaded while its recording is replayed instead.
+     */
+    void touch(Painter painter) {
+        Residency current = residency;
+        if (current != null) {
+            current.get();
+        }
+        if (painter instanceof RecordingPainter) {
+            ((RecordingPainter) painter).touched(this);
+        }
+    }
+
+    /*
+     * Creates this PagedNestingShape's children, if they are not loaded.
+     */
+    void load() {
+        if (loaded) {
+            return;
+        }
+        ShapeModel model = model();
+        if (model == null) {
+            loadChildren(null);
+        } else {
+            synchronized (model) {
+                if (!loaded) {
+                    loadChildren(model);
+                }
+            }
+        }
+    }
+
+    private void loadChildren(ShapeModel model) {
+        adopt(pageIn());
+        loaded = true;
+        if (model != null) {
+            arm(model);
+            model.childrenLoaded(this);
+        }
+    }
+
+    private void arm(ShapeModel model) {
+        if (!pinned) {
+            residency = new Residency(this, model.residencyQueue());
+        }
+    }
+
+    /*
+     * Pages this PagedNestingShape's children out once cleared, its
+     * Residency, has been queued, returning the children. Null is returned
+     * if the children stay, as they do if they have since been paged out
+     * and loaded again, if this PagedNestingShape is pinned or if
+     * canPageOut() says so. The caller must hold the model's lock.
+     */
+    List<Shape> pageOut(Residency cleared, ShapeModel model) {
+        if (cleared != residency) {
+            return null;
+        }
+        if (!canPageOut()) {
+            // Try again later.
+            arm(model);
+            return null;
+        }
+
+        List<Shape> children = disown();
+        residency = null;
+        loaded = false;
+        pagedOut(children);
+        return children;
+    }
+
+    /*
+     * Returns the ShapeModel whose composition this PagedNestingShape is
+     * part of, or null.
+     */
+    ShapeModel model() {
+        NestingShape top = this;
+        while (top.parent() != null) {
+            top = top.parent();
+        }
+        return top.model;
+    }
+
+    /*
+     * Reference that the garbage collector clears when the children of a
+     * PagedNestingShape have gone unused long enough to be paged out, and
+     * queues for the ShapeModel to act on.
+     */
+    static final class Residency extends SoftReference<Object> {
+        final PagedNestingShape nest;
+
+        Residency(PagedNestingShape nest, ReferenceQueue<Object> queue) {
+            super(new Object(), queue);
+            this.nest = nest;
+        }
+    }
+}
@@ -9,6 +9,29 @@ import java.awt.Image;
  * @author Ian Warren
  */
 public interface Painter {
+    /**
+     * Level of detail flag: skip the text of shapes too small to hold it.
+     */
+    public static final int SKIP_SMALL_TEXT = 1;
+
+    /**
+     * Level of detail flag: paint shapes smaller than a pixel as a single
+     * point.
+     */
+    public static final int PLOT_TINY_SHAPES = 2;
+
+    /**
+     * Level of detail flag: paint the children of NestingShapes too crowded
+     * to make out individual shapes as blocks shaded by how many shapes they
+     * hold.
+     */
+    public static final int AGGREGATE_CROWDS = 4;
+
+    /**
+     * Level of detail combining all of the flags above.
+     */
+    public static final int REDUCED_DETAIL = SKIP_SMALL_TEXT | PLOT_TINY_SHAPES | AGGREGATE_CROWDS;
+
     /**
      * Draws a rectangle. Parameters x and y specify the top left corner of the
      * oval. Parameters width and height specify its width and height.
@@ -66,4 +89,42 @@ public interface Painter {
      * Draws a GemShape from left-most vertex and proceeding in a clockwise direction
      */
     public void drawGemShape(int x, int y, int width, int height);
+
+    /**
+     * Returns how far between two simulation steps this Painter is painting,
+     * from 0.0 (the previous step) to 1.0 (the current step). Shapes use this
+     * to interpolate their position. By default Painters paint the current
+     * step.
+     */
+    public default double interpolation() {
+        return 1.0;
+    }
+
+    /**
+     * Returns false if nothing drawn within the specified rectangle would be
+     * visible, e.g. because it lies outside of the area being repainted.
+     * Shapes use this to skip painting themselves. By default everything is
+     * considered visible.
+     */
+    public default boolean isVisible(int x, int y, int width, int height) {
+        return true;
+    }
+
+    /**
+     * Returns the level of detail shapes should be painted at, as a
+     * combination of the flags above. By default Painters paint in full
+     * detail, with no flags set.
+     */
+    public default int levelOfDetail() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of device pixels a unit of distance covers, which
+     * shapes use to judge their size on screen. By default a unit is a
+     * pixel.
+     */
+    public default double scale() {
+        return 1.0;
+    }
 }
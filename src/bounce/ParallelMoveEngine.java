@@ -0,0 +1,216 @@
+package bounce;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * MoveEngine that moves a shape composition in parallel using a ForkJoinPool.
+ * Children of a NestingShape move independently of one another, so the
+ * composition is split into tasks by subtree and, for NestingShapes with many
+ * children, by chunks of the child list.
+ *
+ * The engine adapts to the size of the composition: when the previous clock()
+ * moved fewer shapes than a threshold, the composition is moved sequentially
+ * on the calling thread, and chunk sizes grow with the number of shapes so
+ * that each task does a worthwhile amount of work.
+ */
+public class ParallelMoveEngine implements MoveEngine {
+    // Compositions smaller than this are moved on the calling thread.
+    private static final int DEFAULT_SEQUENTIAL_THRESHOLD = 20000;
+
+    // Smallest number of sibling shapes moved by one task.
+    private static final int DEFAULT_MIN_CHUNK = 2048;
+
+    // Target number of tasks per worker thread.
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final ForkJoinPool pool;
+
+    private final int sequentialThreshold;
+
+    private final int minChunk;
+
+    // Number of shapes moved by the most recent clock() call.
+    private int shapeCount;
+
+    /**
+     * Creates a ParallelMoveEngine that runs on the common ForkJoinPool.
+     */
+    public ParallelMoveEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a ParallelMoveEngine that runs on the specified ForkJoinPool.
+     */
+    public ParallelMoveEngine(ForkJoinPool pool) {
+        this(pool, DEFAULT_SEQUENTIAL_THRESHOLD, DEFAULT_MIN_CHUNK);
+    }
+
+    /*
+     * Creates a ParallelMoveEngine with specific tuning values.
+     */
+    ParallelMoveEngine(ForkJoinPool pool, int sequentialThreshold, int minChunk) {
+        this.pool = pool;
+        this.sequentialThreshold = sequentialThreshold;
+        this.minChunk = minChunk;
+        shapeCount = 0;
+    }
+
+    /**
+     * see bounce.MoveEngine.clock
+     */
+    @Override
+    public void clock(NestingShape root, int width, int height) {
+        // Move the root itself, but not its children.
+        root.move(0, 0, width, height);
+        root.childrenMoving();
+        int slotCount = root.children().slotCount();
+
+        if (shapeCount < sequentialThreshold || pool.getParallelism() == 1) {
+            shapeCount = 1 + moveChildren(root, 0, slotCount);
+        } else {
+            int chunk = Math.max(minChunk, shapeCount / (pool.getParallelism() * TASKS_PER_THREAD));
+            MoveTask task = new MoveTask(root, 0, slotCount, chunk);
+            task.held = root.holdChanges();
+            shapeCount = 1 + pool.invoke(task);
+            task.release();
+        }
+    }
+
+    /*
+     * Sequentially moves the children of nest held in slots from (inclusive)
+     * to to (exclusive) of its ChildList, along with everything nested within
+     * them. Returns the number of shapes moved.
+     */
+    private static int moveChildren(NestingShape nest, int from, int to) {
+        ChildList children = nest.children();
+        int width = nest.width();
+        int height = nest.height();
+        int count = 0;
+
+        for (int i = from; i < to; i++) {
+            Shape shape = children.slot(i);
+            if (shape == null) {
+                continue;
+            }
+            shape.move(0, 0, width, height);
+            count++;
+
+            if (shape instanceof NestingShape) {
+                NestingShape child = (NestingShape) shape;
+                child.childrenMoving();
+                count += moveChildren(child, 0, child.children().slotCount());
+            }
+        }
+        return count;
+    }
+
+    /*
+     * Task that moves the children in a range of a NestingShape's child
+     * slots. Ranges larger than the chunk size are split in two;
+     * NestingShapes within the range are handed to subtasks so that deep
+     * subtrees are spread over the pool.
+     *
+     * Shapes moving on different threads would race to flag their common
+     * ancestors as changed (see NestingShape.contentsChanged()). Each
+     * NestingShape is therefore held while its children move, and the
+     * task that moved it notes whether anything within it changed once
+     * they have all been moved. Tasks report changes to their joiners
+     * through the changed field.
+     */
+    private static class MoveTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final NestingShape nest;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        // Whether any shape in the range, or nested within one, changed.
+        boolean changed;
+
+        // Flag returned by nest.holdChanges(), for tasks of a whole nest.
+        private boolean held;
+
+        MoveTask(NestingShape nest, int from, int to, int chunk) {
+            this.nest = nest;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > chunk) {
+                int middle = (from + to) >>> 1;
+                MoveTask upper = new MoveTask(nest, middle, to, chunk);
+                upper.fork();
+                MoveTask lower = new MoveTask(nest, from, middle, chunk);
+                int count = lower.compute() + upper.join();
+                changed = lower.changed || upper.changed;
+                return count;
+            }
+
+            ChildList children = nest.children();
+            int width = nest.width();
+            int height = nest.height();
+            int count = 0;
+            List<MoveTask> subtasks = null;
+
+            for (int i = from; i < to; i++) {
+                Shape shape = children.slot(i);
+                if (shape == null) {
+                    continue;
+                }
+                int x = shape.x();
+                int y = shape.y();
+                int deltaX = shape.deltaX();
+                int deltaY = shape.deltaY();
+                shape.move(0, 0, width, height);
+                changed |= shape.x() != x || shape.y() != y || shape.deltaX() != deltaX
+                        || shape.deltaY() != deltaY;
+                count++;
+
+                if (shape instanceof NestingShape) {
+                    NestingShape child = (NestingShape) shape;
+                    child.childrenMoving();
+                    MoveTask subtask = new MoveTask(child, 0, child.children().slotCount(), chunk);
+                    subtask.held = child.holdChanges();
+
+                    if (subtask.to < chunk / 2) {
+                        // Small subtree; not worth a task of its own.
+                        count += subtask.compute();
+                        changed |= subtask.release();
+                    } else {
+                        if (subtasks == null) {
+                            subtasks = new ArrayList<>();
+                        }
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    }
+                }
+            }
+
+            if (subtasks != null) {
+                for (MoveTask subtask : subtasks) {
+                    count += subtask.join();
+                    changed |= subtask.release();
+                }
+            }
+            return count;
+        }
+
+        /*
+         * Releases the nest this task moved the children of, once the task
+         * has completed. Returns true if anything within the nest has
+         * changed since the last snapshot.
+         */
+        boolean release() {
+            nest.releaseChanges(held, changed);
+            return nest.changedSinceSnapshot;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package bounce;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implementation of the Painter interface that records painting requests as
+ * a display list, which can then be replayed onto any other Painter. The
+ * requests are held in packed arrays of operation codes and arguments,
+ * which are kept when the RecordingPainter is reset, so that a display list
+ * can be recorded afresh each frame without allocating once the arrays have
+ * grown large enough.
+ *
+ * Calls to setColor(null), such as when a shape restores the colour it was
+ * given by getColor() before anything was recorded, are replayed as
+ * restoring the colour the target Painter had when replay began.
+ */
+public class RecordingPainter implements Painter {
+    // Operation codes.
+    private static final byte DRAW_RECT = 0;
+    private static final byte FILL_RECT = 1;
+    private static final byte DRAW_OVAL = 2;
+    private static final byte DRAW_LINE = 3;
+    private static final byte DRAW_IMAGE = 4;
+    private static final byte DRAW_GEM_SHAPE = 5;
+    private static final byte SET_COLOR = 6;
+    private static final byte TRANSLATE = 7;
+    private static final byte DRAW_CENTERED_TEXT = 8;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int levelOfDetail;
+
+    private final double scale;
+
+    private byte[] ops = new byte[INITIAL_CAPACITY];
+
+    private int opCount;
+
+    // Integer arguments of the operations, in order.
+    private int[] args = new int[INITIAL_CAPACITY * 4];
+
+    private int argCount;
+
+    // Colours, images and text used by the operations, in order.
+    private Object[] refs = new Object[INITIAL_CAPACITY];
+
+    private int refCount;
+
+    // Colour most recently set, null if none has been.
+    private Color color;
+
+    // PagedNestingShapes whose children were painted, null if none were.
+    private List<PagedNestingShape> touched;
+
+    /**
+     * Creates a RecordingPainter that records shapes in full detail.
+     */
+    public RecordingPainter() {
+        this(0, 1.0);
+    }
+
+    /**
+     * Creates a RecordingPainter that records shapes as a Painter with the
+     * specified level of detail and scale would paint them (see
+     * Painter.levelOfDetail() and Painter.scale()).
+     */
+    public RecordingPainter(int levelOfDetail, double scale) {
+        this.levelOfDetail = levelOfDetail;
+        this.scale = scale;
+    }
+
+    /**
+     * Discards the recorded display list, keeping the arrays holding it for
+     * the next recording.
+     */
+    public void reset() {
+        Arrays.fill(refs, 0, refCount, null);
+        opCount = 0;
+        argCount = 0;
+        refCount = 0;
+        color = null;
+        if (touched != null) {
+            touched.clear();
+        }
+    }
+
+    /**
+     * Returns the number of painting requests recorded.
+     */
+    public int size() {
+        return opCount;
+    }
+
+    /**
+     * Paints the recorded display list using target, skipping shapes that
+     * target reports are not visible. PagedNestingShapes
+     * whose children were painted while recording keep them loaded, as if
+     * they had been painted again.
+     */
+    public void replay(Painter target) {
+        Color original = null;
+        boolean originalRead = false;
+        int arg = 0;
+        int ref = 0;
+
+        for (int i = 0; i < opCount; i++) {
+            switch (ops[i]) {
+                case DRAW_RECT:
+                    if (isVisible(target, arg)) {
+                        target.drawRect(args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                    }
+                    arg += 4;
+                    break;
+                case FILL_RECT:
+                    if (isVisible(target, arg)) {
+                        target.fillRect(args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                    }
+                    arg += 4;
+                    break;
+                case DRAW_OVAL:
+                    if (isVisible(target, arg)) {
+                        target.drawOval(args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                    }
+                    arg += 4;
+                    break;
+                case DRAW_LINE:
+                    int x1 = args[arg];
+                    int y1 = args[arg + 1];
+                    int x2 = args[arg + 2];
+                    int y2 = args[arg + 3];
+                    if (target.isVisible(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1) + 1,
+                            Math.abs(y2 - y1) + 1)) {
+                        target.drawLine(x1, y1, x2, y2);
+                    }
+                    arg += 4;
+                    break;
+                case DRAW_IMAGE:
+                    Image image = (Image) refs[ref++];
+                    if (isVisible(target, arg)) {
+                        target.drawImage(image, args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                    }
+                    arg += 4;
+                    break;
+                case DRAW_GEM_SHAPE:
+                    if (isVisible(target, arg)) {
+                        target.drawGemShape(args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                    }
+                    arg += 4;
+                    break;
+                case SET_COLOR:
+                    if (!originalRead) {
+                        original = target.getColor();
+                        originalRead = true;
+                    }
+                    // Null restores the target's own colour.
+                    Color color = (Color) refs[ref++];
+                    target.setColor(color == null ? original : color);
+                    break;
+                case TRANSLATE:
+                    target.translate(args[arg], args[arg + 1]);
+                    arg += 2;
+                    break;
+                default:
+                    target.drawCenteredText((String) refs[ref++], args[arg], args[arg + 1]);
+                    arg += 2;
+                    break;
+            }
+        }
+
+        if (touched != null) {
+            for (int i = 0; i < touched.size(); i++) {
+                touched.get(i).touch(target);
+            }
+        }
+    }
+
+    /**
+     * see bounce.Painter.drawRect
+     */
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        record(DRAW_RECT, x, y, width, height);
+    }
+
+    /**
+     * see bounce.Painter.fillRect
+     */
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        record(FILL_RECT, x, y, width, height);
+    }
+
+    /**
+     * see bounce.Painter.drawOval
+     */
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        record(DRAW_OVAL, x, y, width, height);
+    }
+
+    /**
+     * see bounce.Painter.drawLine
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, x1, y1, x2, y2);
+    }
+
+    /**
+     * see bounce.Painter.drawImage
+     */
+    @Override
+    public void drawImage(Image img, int x, int y, int width, int height) {
+        record(DRAW_IMAGE, x, y, width, height);
+        addRef(img);
+    }
+
+    /**
+     * see bounce.Painter.drawGemShape
+     */
+    @Override
+    public void drawGemShape(int x, int y, int width, int height) {
+        record(DRAW_GEM_SHAPE, x, y, width, height);
+    }
+
+    /**
+     * see bounce.Painter.getColor
+     */
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * see bounce.Painter.setColor
+     */
+    @Override
+    public void setColor(Color color) {
+        addOp(SET_COLOR);
+        addRef(color);
+        this.color = color;
+    }
+
+    /**
+     * see bounce.Painter.translate
+     */
+    @Override
+    public void translate(int x, int y) {
+        addOp(TRANSLATE);
+        addArgs(x, y);
+    }
+
+    /**
+     * see bounce.Painter.drawCenteredText
+     */
+    @Override
+    public void drawCenteredText(String text, int x, int y) {
+        addOp(DRAW_CENTERED_TEXT);
+        addArgs(x, y);
+        addRef(text);
+    }
+
+    /**
+     * see bounce.Painter.levelOfDetail
+     */
+    @Override
+    public int levelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * see bounce.Painter.scale
+     */
+    @Override
+    public double scale() {
+        return scale;
+    }
+
+    /*
+     * Returns true if anything drawn within the rectangle whose arguments
+     * start at arg would be visible to target, allowing for outlines.
+     */
+    private boolean isVisible(Painter target, int arg) {
+        return target.isVisible(args[arg], args[arg + 1], args[arg + 2] + 1, args[arg + 3] + 1);
+    }
+
+    /*
+     * Notes that the children of nest have been painted.
+     */
+    void touched(PagedNestingShape nest) {
+        if (touched == null) {
+            touched = new ArrayList<>();
+        }
+        touched.add(nest);
+    }
+
+    private void record(byte op, int a, int b, int c, int d) {
+        addOp(op);
+        if (argCount + 4 > args.length) {
+            args = Arrays.copyOf(args, args.length * 2);
+        }
+        args[argCount++] = a;
+        args[argCount++] = b;
+        args[argCount++] = c;
+        args[argCount++] = d;
+    }
+
+    private void addOp(byte op) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, ops.length * 2);
+        }
+        ops[opCount++] = op;
+    }
+
+    private void addArgs(int a, int b) {
+        if (argCount + 2 > args.length) {
+            args = Arrays.copyOf(args, args.length * 2);
+        }
+        args[argCount++] = a;
+        args[argCount++] = b;
+    }
+
+    private void addRef(Object ref) {
+        if (refCount == refs.length) {
+            refs = Arrays.copyOf(refs, refs.length * 2);
+        }
+        refs[refCount++] = ref;
+    }
+}
@@ -82,7 +82,7 @@ public class RectangleShape extends Shape {
      * Paints the rectangle using the supplied Painter.
      */
     @Override
-    protected void doPaint(Painter painter) {
+    protected void doPaint(Painter painter, int x, int y) {
         painter.drawRect(x, y, width, height);
     }
 }
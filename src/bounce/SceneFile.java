@@ -0,0 +1,659 @@
+package bounce;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utility class that saves the shape composition of a ShapeModel to a binary
+ * scene file, and loads it back. Scene files are memory mapped and hold one
+ * fixed size record per shape, so loading involves no parsing beyond
+ * creating the shapes.
+ *
+ * A scene file holds, in order:
+ *
+ * <pre>
+ *   header   magic, version, record count, class count, record offset
+ *            and data offset, as ints
+ *   classes  the name of each Shape class used, as a length and UTF-8 bytes
+ *   records  10 ints per shape: class index and flags, x, y, deltaX,
+ *            deltaY, width, height, parent record, text offset and extra
+ *   data     text, as a length and UTF-8 bytes, and image pixels
+ * </pre>
+ *
+ * Record 0 is the root NestingShape. The other shapes are recorded breadth
+ * first, so each shape's parent precedes it and each NestingShape's children
+ * are consecutive. Offsets are relative to the start of the data section,
+ * with -1 meaning none. The extra int holds a DynamicRectangleShape's colour
+ * and the offset of an ImageRectangleShape's image, which is stored as its
+ * width, height and ARGB pixels. All ints are little endian.
+ *
+ * Shapes of other classes are created with a constructor taking six ints
+ * (or six ints and a String when they have text), as for SceneBuilder.
+ */
+public final class SceneFile {
+
+    static final int MAGIC = 0x424E4353;
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int RECORD_SIZE = 40;
+
+    // Field offsets within a record.
+    private static final int KIND = 0;
+    private static final int X = 4;
+    private static final int Y = 8;
+    private static final int DELTA_X = 12;
+    private static final int DELTA_Y = 16;
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 24;
+    private static final int PARENT = 28;
+    private static final int TEXT = 32;
+    private static final int EXTRA = 36;
+
+    // Flags held above the class index in a record's first int.
+    private static final int CLASS_MASK = 0xFFFF;
+    private static final int COLLISIONS = 1 << 16;
+    private static final int FILLED = 1 << 17;
+
+    private SceneFile() {
+    }
+
+    /**
+     * Saves the shape composition held by model to the specified file,
+     * replacing any existing content. The children of PagedNestingShapes
+     * that are not loaded are saved from copies, and stay where they are
+     * kept.
+     *
+     * @throws IOException if the file cannot be written, or the composition
+     *                     is too large for a scene file.
+     */
+    public static void save(ShapeModel model, Path file) throws IOException {
+        synchronized (model) {
+            save(model.root(), file);
+        }
+    }
+
+    /**
+     * Loads the shapes saved in the specified file into model, adding the
+     * shapes the saved root held to model's root in one go. The root's
+     * collision setting is loaded too. Returns the number of shapes added,
+     * including nested shapes.
+     *
+     * @throws IOException              if the file cannot be read or is not
+     *                                  a valid scene file.
+     * @throws IllegalArgumentException if the saved shapes do not fit within
+     *                                  model's root.
+     */
+    public static int load(Path file, ShapeModel model) throws IOException {
+        Records records = new Records(map(file));
+        NestingShape root = model.root();
+        Shape[] shapes = new Shape[records.count];
+        shapes[0] = root;
+        List<Shape> topLevel = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < records.count; i++) {
+                int parent = records.parent(i);
+                if (parent < 0 || parent >= i || !(shapes[parent] instanceof NestingShape)) {
+                    throw new IOException("Corrupt scene file record: " + i);
+                }
+
+                Shape shape = records.create(i);
+                shapes[i] = shape;
+                if (parent == 0) {
+                    topLevel.add(shape);
+                } else {
+                    ((NestingShape) shapes[parent]).add(shape);
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Saved shapes always fit their saved parents.
+            throw new IOException("Corrupt scene file", e);
+        }
+
+        if (!model.addAll(topLevel, root)) {
+            throw new IllegalArgumentException("Saved shapes do not fit within the model");
+        }
+        root.setCollisionsEnabled(records.collisionsEnabled(0));
+        return records.count - 1;
+    }
+
+    /**
+     * Loads the shapes saved in the specified file into model as load()
+     * does, except that the children of saved NestingShapes are left in the
+     * file until they are first needed. Such NestingShapes are loaded as
+     * LazyNestingShapes, which read their children back when they are first
+     * asked for them or painted, and may later page them out again (see
+     * LazyNestingShape). NestingShapes with collision detection, and those
+     * holding shapes of classes that move in ways of their own, are loaded
+     * with their children. Returns the number of shapes added now.
+     *
+     * The file must not be changed while the model holds shapes loaded from
+     * it.
+     *
+     * @throws IOException              if the file cannot be read or is not
+     *                                  a valid scene file.
+     * @throws IllegalArgumentException if the saved shapes do not fit within
+     *                                  model's root.
+     */
+    public static int loadLazily(Path file, ShapeModel model) throws IOException {
+        Records records = new Records(map(file));
+        records.loadLazily();
+        NestingShape root = model.root();
+
+        List<Shape> topLevel;
+        try {
+            topLevel = records.children(0);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt scene file", e);
+        }
+
+        if (!model.addAll(topLevel, root)) {
+            throw new IllegalArgumentException("Saved shapes do not fit within the model");
+        }
+        root.setCollisionsEnabled(records.collisionsEnabled(0));
+        return records.created;
+    }
+
+    private static void save(NestingShape root, Path file) throws IOException {
+        // Number the shapes breadth first.
+        List<Shape> shapes = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        shapes.add(root);
+        parents.add(-1);
+        for (int i = 0; i < shapes.size(); i++) {
+            List<Shape> children = null;
+            if (shapes.get(i) instanceof PagedNestingShape) {
+                // Saved from copies, so that saving does not load them.
+                children = ((PagedNestingShape) shapes.get(i)).currentChildren();
+            } else if (shapes.get(i) instanceof NestingShape) {
+                children = ((NestingShape) shapes.get(i)).children();
+            }
+            if (children != null) {
+                for (Shape child : children) {
+                    shapes.add(child);
+                    parents.add(i);
+                }
+            }
+        }
+
+        // Gather the classes, text and images to be written.
+        Map<Class<?>, Integer> classIndices = new HashMap<>();
+        List<byte[]> classNames = new ArrayList<>();
+        byte[][] texts = new byte[shapes.size()][];
+        int[][] pixels = new int[shapes.size()][];
+        long classesSize = 0;
+        long dataSize = 0;
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            Class<?> cls = savedClass(shape);
+            if (!classIndices.containsKey(cls)) {
+                byte[] name = cls.getName().getBytes(StandardCharsets.UTF_8);
+                classIndices.put(cls, classNames.size());
+                classNames.add(name);
+                classesSize += 4 + name.length;
+            }
+            if (shape.text != null) {
+                texts[i] = shape.text.getBytes(StandardCharsets.UTF_8);
+                dataSize += 4 + texts[i].length;
+            }
+            if (shape instanceof ImageRectangleShape) {
+                pixels[i] = pixels(((ImageRectangleShape) shape).image());
+                dataSize += 4L * pixels[i].length;
+            }
+        }
+
+        long recordOffset = HEADER_SIZE + classesSize;
+        long dataOffset = recordOffset + (long) RECORD_SIZE * shapes.size();
+        long size = dataOffset + dataSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Composition too large for a scene file");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putInt(shapes.size());
+            buffer.putInt(classNames.size());
+            buffer.putInt((int) recordOffset);
+            buffer.putInt((int) dataOffset);
+            for (byte[] name : classNames) {
+                buffer.putInt(name.length);
+                buffer.put(name);
+            }
+
+            int data = 0;
+            for (int i = 0; i < shapes.size(); i++) {
+                Shape shape = shapes.get(i);
+                int record = (int) recordOffset + i * RECORD_SIZE;
+                int kind = classIndices.get(savedClass(shape));
+                int extra = 0;
+
+                if (shape instanceof NestingShape && ((NestingShape) shape).collisionsEnabled()) {
+                    kind |= COLLISIONS;
+                }
+                if (shape instanceof DynamicRectangleShape) {
+                    DynamicRectangleShape dynamic = (DynamicRectangleShape) shape;
+                    kind |= dynamic.filled ? FILLED : 0;
+                    extra = dynamic.color.getRGB();
+                }
+
+                buffer.putInt(record + KIND, kind);
+                buffer.putInt(record + X, shape.x());
+                buffer.putInt(record + Y, shape.y());
+                buffer.putInt(record + DELTA_X, shape.deltaX());
+                buffer.putInt(record + DELTA_Y, shape.deltaY());
+                buffer.putInt(record + WIDTH, shape.width);
+                buffer.putInt(record + HEIGHT, shape.height);
+                buffer.putInt(record + PARENT, parents.get(i));
+
+                buffer.putInt(record + TEXT, texts[i] == null ? -1 : data);
+                if (texts[i] != null) {
+                    buffer.position((int) dataOffset + data);
+                    buffer.putInt(texts[i].length);
+                    buffer.put(texts[i]);
+                    data += 4 + texts[i].length;
+                }
+                if (pixels[i] != null) {
+                    extra = data;
+                    buffer.position((int) dataOffset + data);
+                    buffer.asIntBuffer().put(pixels[i]);
+                    data += 4 * pixels[i].length;
+                }
+                buffer.putInt(record + EXTRA, extra);
+            }
+            buffer.force();
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Scene file too large: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    /*
+     * Reads a length prefixed UTF-8 string at the specified offset, leaving
+     * the buffer positioned after it. The string must end by limit.
+     */
+    private static String string(MappedByteBuffer buffer, int offset, int limit) throws IOException {
+        int length = offset + 4 <= limit ? buffer.getInt(offset) : -1;
+        if (length < 0 || (long) offset + 4 + length > limit) {
+            throw new IOException("Corrupt scene file string at " + offset);
+        }
+        byte[] bytes = new byte[length];
+        buffer.position(offset + 4);
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Returns the ARGB pixels of image.
+     */
+    private static int[] pixels(Image image) {
+        int width = Math.max(0, image.getWidth(null));
+        int height = Math.max(0, image.getHeight(null));
+        int[] pixels = new int[2 + width * height];
+        pixels[0] = width;
+        pixels[1] = height;
+        if (width == 0 || height == 0) {
+            return pixels;
+        }
+
+        BufferedImage buffered;
+        if (image instanceof BufferedImage) {
+            buffered = (BufferedImage) image;
+        } else {
+            buffered = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics g = buffered.getGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        buffered.getRGB(0, 0, width, height, pixels, 2, width);
+        return pixels;
+    }
+
+    /*
+     * Returns a Factory for the named Shape class.
+     */
+    private static Factory factory(String className) throws IOException {
+        switch (className) {
+            case "bounce.RectangleShape":
+                return new PlainFactory() {
+                    @Override
+                    Shape create(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+                        return new RectangleShape(x, y, deltaX, deltaY, width, height, text);
+                    }
+                };
+            case "bounce.OvalShape":
+                return new PlainFactory() {
+                    @Override
+                    Shape create(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+                        return new OvalShape(x, y, deltaX, deltaY, width, height, text);
+                    }
+                };
+            case "bounce.GemShape":
+                return new PlainFactory() {
+                    @Override
+                    Shape create(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+                        return new GemShape(x, y, deltaX, deltaY, width, height, text);
+                    }
+                };
+            case "bounce.NestingShape":
+                return new PlainFactory() {
+                    @Override
+                    Shape create(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+                        return new NestingShape(x, y, deltaX, deltaY, width, height, text);
+                    }
+                };
+            case "bounce.DynamicRectangleShape":
+                return new Factory() {
+                    // Colour of the previous shape, which most shapes share.
+                    private Color color;
+
+                    @Override
+                    Shape create(MappedByteBuffer buffer, int record, String text, int dataOffset) {
+                        int rgb = buffer.getInt(record + EXTRA);
+                        if (color == null || color.getRGB() != rgb) {
+                            color = new Color(rgb, true);
+                        }
+                        return new DynamicRectangleShape(buffer.getInt(record + X), buffer.getInt(record + Y),
+                                buffer.getInt(record + DELTA_X), buffer.getInt(record + DELTA_Y),
+                                buffer.getInt(record + WIDTH), buffer.getInt(record + HEIGHT), text, color);
+                    }
+                };
+            case "bounce.ImageRectangleShape":
+                return new Factory() {
+                    @Override
+                    Shape create(MappedByteBuffer buffer, int record, String text, int dataOffset) {
+                        Shape shape = new ImageRectangleShape(buffer.getInt(record + DELTA_X),
+                                buffer.getInt(record + DELTA_Y), image(buffer, dataOffset + buffer.getInt(record + EXTRA)));
+                        shape.x = buffer.getInt(record + X);
+                        shape.y = buffer.getInt(record + Y);
+                        shape.width = buffer.getInt(record + WIDTH);
+                        shape.height = buffer.getInt(record + HEIGHT);
+                        shape.text = text;
+                        shape.savePosition();
+                        return shape;
+                    }
+                };
+            default:
+                return reflectiveFactory(className);
+        }
+    }
+
+    /*
+     * Returns the class shape is saved as. LazyNestingShapes are made only
+     * by loadLazily(), so they are saved as the NestingShapes they were
+     * loaded from.
+     */
+    private static Class<?> savedClass(Shape shape) {
+        return shape instanceof LazyNestingShape ? NestingShape.class : shape.getClass();
+    }
+
+    private static Factory reflectiveFactory(String className) throws IOException {
+        try {
+            Class<?> cls = Class.forName(className);
+            if (!Shape.class.isAssignableFrom(cls)) {
+                throw new IOException("Not a Shape class: " + className);
+            }
+            final Constructor<?> plain = cls.getConstructor(int.class, int.class, int.class, int.class,
+                    int.class, int.class);
+            Constructor<?> withText = null;
+            try {
+                withText = cls.getConstructor(int.class, int.class, int.class, int.class, int.class, int.class,
+                        String.class);
+            } catch (NoSuchMethodException e) {
+                // Shapes of this class are saved without text.
+            }
+            final Constructor<?> textConstructor = withText;
+
+            return new PlainFactory() {
+                @Override
+                Shape create(int x, int y, int deltaX, int deltaY, int width, int height, String text) {
+                    try {
+                        if (text != null && textConstructor != null) {
+                            return (Shape) textConstructor.newInstance(x, y, deltaX, deltaY, width, height, text);
+                        }
+                        return (Shape) plain.newInstance(x, y, deltaX, deltaY, width, height);
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalArgumentException("Cannot create shape of class " + className, e);
+                    }
+                }
+            };
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Cannot create shapes of class " + className, e);
+        }
+    }
+
+    private static Image image(MappedByteBuffer buffer, int offset) {
+        int width = buffer.getInt(offset);
+        int height = buffer.getInt(offset + 4);
+        BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        if (width > 0 && height > 0) {
+            int[] pixels = new int[width * height];
+            buffer.position(offset + 8);
+            buffer.asIntBuffer().get(pixels);
+            image.setRGB(0, 0, width, height, pixels, 0, width);
+        }
+        return image;
+    }
+
+    /*
+     * The records of a mapped scene file, from which shapes are created.
+     */
+    static final class Records {
+        private final MappedByteBuffer buffer;
+
+        final int count;
+
+        private final int recordOffset;
+
+        private final int dataOffset;
+
+        private final String[] classNames;
+
+        private final Factory[] factories;
+
+        // Whether create() makes LazyNestingShapes.
+        private boolean lazy;
+
+        // Whether each class is NestingShape itself.
+        private boolean[] nesting;
+
+        // Records whose children are loaded along with them.
+        private BitSet eager;
+
+        // Number of shapes created.
+        int created;
+
+        Records(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a scene file");
+            }
+            if (buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported scene file version: " + buffer.getInt(4));
+            }
+            count = buffer.getInt(8);
+            int classCount = buffer.getInt(12);
+            recordOffset = buffer.getInt(16);
+            dataOffset = buffer.getInt(20);
+            if (count < 1 || classCount < 1 || recordOffset < HEADER_SIZE
+                    || (long) recordOffset + (long) count * RECORD_SIZE != dataOffset
+                    || dataOffset > buffer.capacity()) {
+                throw new IOException("Corrupt scene file header");
+            }
+
+            classNames = new String[classCount];
+            factories = new Factory[classCount];
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < classCount; i++) {
+                classNames[i] = string(buffer, buffer.position(), recordOffset);
+                factories[i] = factory(classNames[i]);
+            }
+        }
+
+        /*
+         * Makes create() return LazyNestingShapes where it can.
+         * The children of NestingShapes that detect collisions or hold
+         * shapes that do not move predictably (see Shape.advance()) cannot
+         * be worked out from the file once time has passed, so those
+         * NestingShapes, and every NestingShape holding them, are loaded
+         * with their children. Also checks that the records are in the
+         * order children() relies on.
+         */
+        void loadLazily() throws IOException {
+            nesting = new boolean[classNames.length];
+            boolean[] predictable = new boolean[classNames.length];
+            for (int i = 0; i < classNames.length; i++) {
+                nesting[i] = classNames[i].equals(NestingShape.class.getName());
+                try {
+                    predictable[i] = Shape.movesPredictably(Class.forName(classNames[i]));
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Cannot create shapes of class " + classNames[i], e);
+                }
+            }
+
+            eager = new BitSet(count);
+            for (int i = 1; i < count; i++) {
+                int parent = parent(i);
+                if (parent < 0 || parent >= i || parent < parent(i - 1)) {
+                    throw new IOException("Corrupt scene file record: " + i);
+                }
+                int kind = kind(i);
+                if ((kind & COLLISIONS) != 0 || !predictable[classIndex(i, kind)]) {
+                    for (int record = i; record > 0 && !eager.get(record); record = parent(record)) {
+                        eager.set(record);
+                    }
+                }
+            }
+            lazy = true;
+        }
+
+        /*
+         * Creates the shape saved in the specified record, without any
+         * children.
+         */
+        Shape create(int i) throws IOException {
+            int record = recordOffset + i * RECORD_SIZE;
+            int kind = kind(i);
+            int classIndex = classIndex(i, kind);
+            int textOffset = buffer.getInt(record + TEXT);
+            String text = textOffset < 0 ? null : string(buffer, dataOffset + textOffset, buffer.capacity());
+
+            Shape shape;
+            if (lazy && nesting[classIndex] && !eager.get(i)) {
+                shape = new LazyNestingShape(buffer.getInt(record + X), buffer.getInt(record + Y),
+                        buffer.getInt(record + DELTA_X), buffer.getInt(record + DELTA_Y),
+                        buffer.getInt(record + WIDTH), buffer.getInt(record + HEIGHT), text, this, i);
+            } else {
+                shape = factories[classIndex].create(buffer, record, text, dataOffset);
+            }
+            if (shape instanceof NestingShape && (kind & COLLISIONS) != 0) {
+                ((NestingShape) shape).setCollisionsEnabled(true);
+            }
+            if (shape instanceof DynamicRectangleShape) {
+                ((DynamicRectangleShape) shape).filled = (kind & FILLED) != 0;
+            }
+            created++;
+            return shape;
+        }
+
+        /*
+         * Creates the shapes saved as children of the specified record, and
+         * the children of any NestingShapes among them that are not
+         * LazyNestingShapes. Requires loadLazily() to have been called.
+         */
+        List<Shape> children(int parent) throws IOException {
+            // Children are consecutive, and ordered by parent.
+            int low = parent + 1;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (parent(middle) < parent) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            List<Shape> children = new ArrayList<>();
+            for (int i = low; i < count && parent(i) == parent; i++) {
+                Shape shape = create(i);
+                if (shape.getClass() == NestingShape.class) {
+                    ((NestingShape) shape).adopt(children(i));
+                } else if (shape instanceof NestingShape && !(shape instanceof LazyNestingShape)) {
+                    ((NestingShape) shape).addAll(children(i));
+                }
+                children.add(shape);
+            }
+            return children;
+        }
+
+        int parent(int i) {
+            return buffer.getInt(recordOffset + i * RECORD_SIZE + PARENT);
+        }
+
+        boolean collisionsEnabled(int i) {
+            return (kind(i) & COLLISIONS) != 0;
+        }
+
+        private int kind(int i) {
+            return buffer.getInt(recordOffset + i * RECORD_SIZE + KIND);
+        }
+
+        private int classIndex(int i, int kind) throws IOException {
+            int classIndex = kind & CLASS_MASK;
+            if (classIndex >= factories.length) {
+                throw new IOException("Corrupt scene file record: " + i);
+            }
+            return classIndex;
+        }
+    }
+
+    /*
+     * Creates shapes of one class from their records.
+     */
+    private abstract static class Factory {
+        abstract Shape create(MappedByteBuffer buffer, int record, String text, int dataOffset);
+    }
+
+    /*
+     * Creates shapes of one class from the fields every record holds.
+     */
+    private abstract static class PlainFactory extends Factory {
+        @Override
+        Shape create(MappedByteBuffer buffer, int record, String text, int dataOffset) {
+            return create(buffer.getInt(record + X), buffer.getInt(record + Y), buffer.getInt(record + DELTA_X),
+                    buffer.getInt(record + DELTA_Y), buffer.getInt(record + WIDTH), buffer.getInt(record + HEIGHT),
+                    text);
+        }
+
+        abstract Shape create(int x, int y, int deltaX, int deltaY, int width, int height, String text);
+    }
+}
@@ -0,0 +1,16 @@
+package bounce;
+
+/**
+ * MoveEngine that walks the shape composition and moves each Shape in turn
+ * through its move() method. This is the default engine used by ShapeModel.
+ */
+public class SequentialMoveEngine implements MoveEngine {
+
+    /**
+     * see bounce.MoveEngine.clock
+     */
+    @Override
+    public void clock(NestingShape root, int width, int height) {
+        root.move(width, height);
+    }
+}
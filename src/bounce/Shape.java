@@ -1,6 +1,7 @@
 package bounce;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -26,7 +27,13 @@ public abstract class Shape {
     protected static final int DEFAULT_WIDTH = 25;
     // ===
 
-    // === Instance variables, accessible by subclasses.
+    // Smallest size, in device pixels, worth painting text on when a
+    // Painter skips small text.
+    private static final int MIN_TEXT_PIXELS = 6;
+
+    // === Instance variables, accessible by subclasses. While an
+    // ArrayMoveEngine holds this Shape packed, x, y, deltaX and deltaY are
+    // not kept up to date; read them through x(), y(), deltaX() and deltaY().
     protected int x;
 
     protected int y;
@@ -43,6 +50,31 @@ public abstract class Shape {
 
     protected NestingShape parent;
 
+    /*
+     * Packed storage this Shape is a view over while an ArrayMoveEngine is
+     * moving it, null when the Shape's own fields hold its state. The arrays
+     * are owned by the parent NestingShape.
+     */
+    ShapeArrays packed;
+
+    int packedIndex;
+
+    // Slot this Shape occupies in its parent's ChildList.
+    int childSlot;
+
+    // Position before the most recent step, used to interpolate painting.
+    int previousX;
+
+    int previousY;
+
+    // Entry for this Shape in its ShapeModel's spatial index, if any.
+    LooseQuadtree.Entry indexEntry;
+
+    // Cached result of path(), and the parent's path it was built from.
+    private List<Shape> path;
+
+    private List<Shape> pathBase;
+
     /**
      * Creates a Shape object with default values for instance variables.
      */
@@ -78,6 +110,8 @@ public abstract class Shape {
         this.height = height;
         text = null;
         parent = null;
+        previousX = x;
+        previousY = y;
     }
 
     public Shape(int x, int y, int deltaX, int deltaY, int width, int height,
@@ -103,6 +137,13 @@ public abstract class Shape {
     }
 
     public void move(int x, int y, int width, int height) {
+        if (packed != null) {
+            // Pull state back out of the parent's arrays before moving.
+            parent.unpack();
+        }
+
+        int preDeltaX = deltaX;
+        int preDeltaY = deltaY;
         int nextX = this.x + deltaX;
         int nextY = this.y + deltaY;
 
@@ -122,44 +163,271 @@ public abstract class Shape {
             deltaY = -deltaY;
         }
 
+        boolean moved = nextX != this.x || nextY != this.y;
         this.x = nextX;
         this.y = nextY;
+
+        if (deltaX != preDeltaX || deltaY != preDeltaY) {
+            bounced(preDeltaX, preDeltaY);
+            moved = true;
+        }
+        if (moved && parent != null) {
+            parent.contentsChanged();
+        }
+    }
+
+    /*
+     * Leaves this Shape as ticks calls to move(0, 0, width, height) would.
+     * For shapes of classes that move predictably (see movesPredictably())
+     * the new state is worked out directly, in time independent of ticks,
+     * and bounced() is called for the last bounce off each pair of walls.
+     * Shapes of other classes are moved ticks times.
+     */
+    void advance(long ticks, int width, int height) {
+        if (ticks <= 0) {
+            return;
+        }
+        if (!movesPredictably(getClass())) {
+            for (long i = 0; i < ticks; i++) {
+                move(0, 0, width, height);
+            }
+            return;
+        }
+        if (packed != null) {
+            parent.unpack();
+        }
+
+        long[] alongX = advance(x, deltaX, this.width, width, ticks);
+        long[] alongY = advance(y, deltaY, this.height, height, ticks);
+        x = (int) alongX[0];
+        y = (int) alongY[0];
+        deltaX = (int) alongX[1];
+        deltaY = (int) alongY[1];
+        previousX = x;
+        previousY = y;
+
+        // Replay the last bounce off each pair of walls, in the order they
+        // happened, with the deltas the shape had just before.
+        long lastX = alongX[2];
+        long lastY = alongY[2];
+        if (lastX > 0 && lastX == lastY) {
+            bounced(-deltaX, -deltaY);
+        } else if (lastX < lastY) {
+            if (lastX > 0) {
+                bounced(-deltaX, deltaY);
+            }
+            bounced(deltaX, -deltaY);
+        } else if (lastY < lastX) {
+            if (lastY > 0) {
+                bounced(deltaX, -deltaY);
+            }
+            bounced(-deltaX, deltaY);
+        }
     }
 
+    /*
+     * Advances movement along one axis by ticks steps, returning the new
+     * position and delta, and the step on which the shape last bounced, or
+     * 0 if it did not bounce.
+     */
+    static long[] advance(int position, int delta, int size, int bound, long ticks) {
+        int range = bound - size;
+        long steps;
+        if (delta == 0) {
+            // A stationary shape settles within two steps.
+            steps = Math.min(ticks, 2);
+        } else if (range <= 0) {
+            // A shape too big for its bounds bounces on every step, and from
+            // the third step on alternates between two states.
+            steps = ticks <= 3 ? ticks : 3 + ((ticks - 3) & 1);
+        } else if (position < 0 || position > range) {
+            // One step brings a shape that is out of bounds back in.
+            steps = 1;
+        } else {
+            steps = 0;
+        }
+
+        long last = 0;
+        for (long i = 1; i <= steps; i++) {
+            int next = position + delta;
+            if (next <= 0 || next + size >= bound) {
+                next = next <= 0 ? 0 : range;
+                delta = -delta;
+                // Negating a zero delta is not a bounce.
+                last = delta == 0 ? 0 : i;
+            }
+            position = next;
+        }
+        if (delta == 0 || range <= 0) {
+            return new long[]{position, delta, last == 0 ? 0 : ticks};
+        }
+
+        // From here on the shape takes a fixed number of steps to cross from
+        // one wall to the other.
+        long remaining = ticks - steps;
+        long speed = Math.abs((long) delta);
+        long first = Math.max(1, ceilDiv(delta > 0 ? range - position : position, speed));
+        if (remaining < first) {
+            position += (int) (remaining * delta);
+        } else {
+            long crossing = ceilDiv(range, speed);
+            long bounces = (remaining - first) / crossing;
+            long rest = (remaining - first) % crossing;
+
+            // The first bounce is off the wall the shape is heading for, and
+            // each later one off the opposite wall to the one before.
+            boolean even = (bounces & 1) == 0;
+            boolean high = (delta > 0) == even;
+            delta = even ? -delta : delta;
+            position = (high ? range : 0) + (int) (rest * delta);
+            last = steps + first + bounces * crossing;
+        }
+        return new long[]{position, delta, last};
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /*
+     * Returns true if shapes of the specified class move only as Shape's
+     * move() moves them and react to bouncing only by changing their own
+     * state, so that advance() can work out where they end up.
+     */
+    static boolean movesPredictably(Class<?> type) {
+        return PREDICTABLE.get(type);
+    }
+
+    private static final ClassValue<Boolean> PREDICTABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            Class<?> move = declarer(type, "move", int.class, int.class);
+            Class<?> bounced = declarer(type, "bounced", int.class, int.class);
+            return (move == Shape.class || move == NestingShape.class)
+                    && declarer(type, "move", int.class, int.class, int.class, int.class) == Shape.class
+                    && (bounced == Shape.class || bounced == DynamicRectangleShape.class);
+        }
+    };
+
+    private static Class<?> declarer(Class<?> type, String name, Class<?>... parameters) {
+        for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+            try {
+                cls.getDeclaredMethod(name, parameters);
+                return cls;
+            } catch (NoSuchMethodException e) {
+                // Look in the superclass.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Paints this Shape object using the supplied Painter. If the Painter is
+     * painting part way between two steps (see Painter.interpolation()), the
+     * Shape is painted between its previous and current position. Nothing is
+     * painted if the Painter reports the Shape is not visible, and less detail
+     * is painted if the Painter asks for it (see Painter.levelOfDetail()).
+     */
     public final void paint(Painter painter) {
-        doPaint(painter);
-        if (text != null) {
-            painter.drawCenteredText(text, x + width / 2, y
-                    + height / 2);
+        paint(painter, x(), y(), previousX, previousY, null, -1);
+    }
+
+    /*
+     * Paints this Shape object as it was at position x, y, having moved there
+     * from previousX, previousY. Shapes nested within it are painted from
+     * the specified node of snapshot, or as they are now if snapshot is null.
+     */
+    final void paint(Painter painter, int x, int y, int previousX, int previousY,
+                     ShapeModelSnapshot snapshot, int node) {
+        int offsetX = 0;
+        int offsetY = 0;
+
+        double interpolation = painter.interpolation();
+        if (interpolation < 1.0) {
+            offsetX = (int) Math.round((previousX - x) * (1.0 - interpolation));
+            offsetY = (int) Math.round((previousY - y) * (1.0 - interpolation));
+        }
+        boolean offset = offsetX != 0 || offsetY != 0;
+
+        if (offset) {
+            painter.translate(offsetX, offsetY);
+        }
+
+        // Work out how much detail is worth painting, given the shape's size
+        // on screen.
+        int levelOfDetail = painter.levelOfDetail();
+        boolean tiny = false;
+        boolean drawText = text != null;
+        if (levelOfDetail != 0) {
+            double scale = painter.scale();
+            tiny = isTiny(levelOfDetail, scale, width, height);
+            drawText &= !tiny && isTextShown(levelOfDetail, scale, width, height);
+        }
+
+        // Skip shapes that lie outside of the area being painted. Text is
+        // not clipped to a shape's bounds, so shapes with text are painted.
+        if (drawText || painter.isVisible(x, y, width + 1, height + 1)) {
+            if (tiny) {
+                painter.drawLine(x, y, x, y);
+            } else {
+                doPaint(painter, x, y);
+                paintContents(painter, x, y, snapshot, node);
+            }
+            if (drawText) {
+                painter.drawCenteredText(text, x + width / 2, y
+                        + height / 2);
+            }
+        }
+
+        if (offset) {
+            painter.translate(-offsetX, -offsetY);
         }
     }
 
+    /*
+     * Returns true if a shape of the specified size is plotted as a single
+     * point at the specified level of detail and scale.
+     */
+    static boolean isTiny(int levelOfDetail, double scale, int width, int height) {
+        return (levelOfDetail & Painter.PLOT_TINY_SHAPES) != 0
+                && (width + 1) * scale <= 1.0 && (height + 1) * scale <= 1.0;
+    }
+
+    /*
+     * Returns true if the text of a shape of the specified size, which is
+     * not tiny, is painted at the specified level of detail and scale.
+     */
+    static boolean isTextShown(int levelOfDetail, double scale, int width, int height) {
+        return (levelOfDetail & Painter.SKIP_SMALL_TEXT) == 0
+                || Math.max(width, height) * scale >= MIN_TEXT_PIXELS;
+    }
+
     /**
      * Returns this Shape object's x position.
      */
     public int x() {
-        return x;
+        return packed == null ? x : packed.x[packedIndex];
     }
 
     /**
      * Returns this Shape object's y position.
      */
     public int y() {
-        return y;
+        return packed == null ? y : packed.y[packedIndex];
     }
 
     /**
      * Returns this Shape object's speed and direction.
      */
     public int deltaX() {
-        return deltaX;
+        return packed == null ? deltaX : packed.deltaX[packedIndex];
     }
 
     /**
      * Returns this Shape object's speed and direction.
      */
     public int deltaY() {
-        return deltaY;
+        return packed == null ? deltaY : packed.deltaY[packedIndex];
     }
 
     /**
@@ -195,20 +463,105 @@ public abstract class Shape {
         return parent;
     }
 
+    /**
+     * Returns the path from the root NestingShape to this Shape. The list is
+     * unmodifiable and is cached, so it is only built again after this Shape
+     * or one of its ancestors has been given a new parent.
+     */
     public List<Shape> path() {
-        List<Shape> rootPath = null;
-        if (parent == null) {
-            rootPath = new ArrayList<Shape>();
-        } else {
-            rootPath = parent.path();
+        List<Shape> parentPath = parent == null ? null : parent.path();
+
+        if (path == null || parentPath != pathBase) {
+            List<Shape> newPath = new ArrayList<Shape>(parentPath == null ? 1 : parentPath.size() + 1);
+            if (parentPath != null) {
+                newPath.addAll(parentPath);
+            }
+            newPath.add(this);
+            path = Collections.unmodifiableList(newPath);
+            pathBase = parentPath;
         }
-        rootPath.add(this);
-        return rootPath;
+        return path;
     }
 
     protected void setParent(NestingShape parent) {
         this.parent = parent;
+        path = null;
+
+        // Positions relative to a former parent are meaningless.
+        previousX = x();
+        previousY = y();
+    }
+
+    /*
+     * Sets this Shape's speed and direction, whether held in its own fields
+     * or in packed arrays.
+     */
+    void setDelta(int deltaX, int deltaY) {
+        if (packed == null) {
+            this.deltaX = deltaX;
+            this.deltaY = deltaY;
+        } else {
+            packed.deltaX[packedIndex] = deltaX;
+            packed.deltaY[packedIndex] = deltaY;
+        }
+    }
+
+    /*
+     * Records the current position as the previous position, ready for the
+     * next step.
+     */
+    void savePosition() {
+        previousX = x();
+        previousY = y();
     }
 
-    protected abstract void doPaint(Painter painter);
+    /**
+     * Called after a move has reflected this Shape off one or more walls.
+     * Parameters preDeltaX and preDeltaY hold the speed and direction the
+     * Shape had before bouncing; the new values are available through
+     * deltaX() and deltaY(). The default implementation does nothing.
+     */
+    protected void bounced(int preDeltaX, int preDeltaY) {
+    }
+
+    /*
+     * Paints any shapes nested within this Shape, which is painted at x, y.
+     * Shapes other than NestingShapes have nothing to paint.
+     */
+    void paintContents(Painter painter, int x, int y, ShapeModelSnapshot snapshot, int node) {
+    }
+
+    /**
+     * Paints this Shape object, positioned at x, y, using the supplied
+     * Painter. Subclasses must not read the position through x() and y(),
+     * which may have moved on since the position being painted.
+     *
+     * The default implementation calls doPaint(Painter), translating the
+     * Painter so that what it paints at the x and y fields is painted at x,
+     * y instead, for subclasses written before this method was added. Such
+     * subclasses are not snapshot-safe: the translation and doPaint(Painter)
+     * read the x, y, width and height fields as the simulation thread leaves
+     * them, not as the snapshot being painted recorded them. A shape painted
+     * while it is being moved or resized may be drawn out of place for a
+     * frame.
+     */
+    protected void doPaint(Painter painter, int x, int y) {
+        int offsetX = x - this.x;
+        int offsetY = y - this.y;
+        painter.translate(offsetX, offsetY);
+        doPaint(painter);
+        painter.translate(-offsetX, -offsetY);
+    }
+
+    /**
+     * Paints this Shape object, positioned at its x and y fields, using the
+     * supplied Painter. The default implementation paints nothing.
+     *
+     * @deprecated Override doPaint(Painter, int, int) instead, which is
+     * painted from a snapshot. This method is only called by the default
+     * implementation of that method.
+     */
+    @Deprecated
+    protected void doPaint(Painter painter) {
+    }
 }
@@ -0,0 +1,98 @@
+package bounce;
+
+import java.util.List;
+
+/**
+ * Structure-of-arrays representation of the children of a NestingShape. The
+ * position, speed and size of each child are held in parallel int arrays so
+ * that an ArrayMoveEngine can move a whole NestingShape's worth of shapes in
+ * one tight loop. While packed, each child Shape is a view over its slot in
+ * the arrays.
+ */
+final class ShapeArrays {
+    // NestingShape whose children are packed.
+    final NestingShape owner;
+
+    // Packed shapes, indexed by slot.
+    final Shape[] shapes;
+
+    final int[] x;
+
+    final int[] y;
+
+    final int[] deltaX;
+
+    final int[] deltaY;
+
+    final int[] width;
+
+    final int[] height;
+
+    // Slots holding NestingShapes, whose own children need moving too.
+    final int[] nests;
+
+    /*
+     * Packs the specified children of owner, binding each as a view over its
+     * slot.
+     */
+    ShapeArrays(NestingShape owner, List<Shape> children) {
+        int size = children.size();
+
+        this.owner = owner;
+        shapes = new Shape[size];
+        x = new int[size];
+        y = new int[size];
+        deltaX = new int[size];
+        deltaY = new int[size];
+        width = new int[size];
+        height = new int[size];
+
+        int nestCount = 0;
+        for (int i = 0; i < size; i++) {
+            Shape shape = children.get(i);
+            shapes[i] = shape;
+            x[i] = shape.x;
+            y[i] = shape.y;
+            deltaX[i] = shape.deltaX;
+            deltaY[i] = shape.deltaY;
+            width[i] = shape.width;
+            height[i] = shape.height;
+
+            shape.packed = this;
+            shape.packedIndex = i;
+
+            if (shape instanceof NestingShape) {
+                nestCount++;
+            }
+        }
+
+        nests = new int[nestCount];
+        for (int i = 0, j = 0; i < size; i++) {
+            if (shapes[i] instanceof NestingShape) {
+                nests[j++] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of packed shapes.
+     */
+    int size() {
+        return shapes.length;
+    }
+
+    /*
+     * Copies packed state back into each Shape's fields and detaches the
+     * Shapes from the arrays.
+     */
+    void release() {
+        for (int i = 0; i < shapes.length; i++) {
+            Shape shape = shapes[i];
+            shape.x = x[i];
+            shape.y = y[i];
+            shape.deltaX = deltaX[i];
+            shape.deltaY = deltaY[i];
+            shape.packed = null;
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package bounce;
 
 import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Class to represent a shape composition. Classes whose instances are
@@ -13,27 +21,106 @@ import java.util.List;
  * move() request) the ShapeModel notifies all registered listeners by firing a
  * ShapeModelEvent.
  *
+ * A ShapeModel may be shared between threads, e.g. a simulation thread that
+ * calls clock() and the Swing event dispatch thread. Methods that change the
+ * model are synchronized on the ShapeModel object. Listeners are notified on
+ * the thread that made the change, unless they were registered for
+ * asynchronous delivery, in which case each has a thread and a bounded event
+ * queue of its own (see Overflow). Listeners may be registered and removed
+ * at any time, including while events are being fired. Other threads should
+ * read the model through snapshots (see acquireSnapshot()), which are
+ * published after each clock() call and can be read without locking while
+ * the shapes move on.
+ *
  * @author Ian Warren
  */
 public class ShapeModel {
 
+    /**
+     * What a ShapeModel does with an event for a listener registered for
+     * asynchronous delivery when the listener's queue is full.
+     */
+    public enum Overflow {
+        /**
+         * The event is discarded.
+         */
+        DROP,
+
+        /**
+         * ShapeMoved and ShapesCollided events are merged with a waiting
+         * event of the same type for the same shape; other events are
+         * waited for as with BLOCK.
+         */
+        COALESCE,
+
+        /**
+         * The thread changing the model waits until the event can be
+         * queued. It waits once the change is complete and the ShapeModel
+         * is unlocked, so the listener may call the ShapeModel's methods
+         * while handling events. A thread that makes several changes while
+         * holding the ShapeModel's lock can only be kept that far ahead of
+         * the listener, and waits with the lock held once it is.
+         */
+        BLOCK
+    }
+
     // Root of the shape composition.
     private NestingShape root;
 
     // Boundaries governing Shape movement within a ShapeModel.
     private Dimension bounds;
 
-    // List of ShapeModelListeners.
+    // List of ShapeModelListeners, copied on change so that listeners can
+    // be registered and removed while events are being fired.
     private List<ShapeModelListener> listeners;
 
+    // Strategy used to move the shape composition on each clock() call.
+    private MoveEngine engine;
+
+    // Whether clock() records positions so that painting can interpolate.
+    private boolean interpolated;
+
+    // Spatial index of world-space shape bounds, built on first query.
+    private LooseQuadtree index;
+
+    // Most recently published snapshot, and an older one to write next.
+    private volatile ShapeModelSnapshot snapshot;
+
+    private ShapeModelSnapshot spare;
+
+    // Number of snapshots recorded.
+    private long snapshotCount;
+
+    // System.nanoTime() at which the most recent step was due.
+    private long stepTime;
+
+    // Whether the structure has changed since snapshot was published.
+    private volatile boolean snapshotStale;
+
+    // Whether snapshots have been asked for, and so are published by clock().
+    private volatile boolean snapshotsRequested;
+
+    // Log of changes to this ShapeModel, if it is being recorded.
+    private ShapeModelRecorder recorder;
+
+    // PagedNestingShapes whose children may be paged out.
+    private final ReferenceQueue<Object> coldNests;
+
+    // LazyNestingShapes painted without their children, to load on clock().
+    private final Queue<LazyNestingShape> loadRequests;
+
 
     /**
      * Creates a ShapeModel with specified height and width bounds.
      */
     public ShapeModel(Dimension bounds) {
         root = new NestingShape(0, 0, 0, 0, bounds.width, bounds.height);
+        root.model = this;
         this.bounds = bounds;
-        listeners = new ArrayList<ShapeModelListener>();
+        listeners = new CopyOnWriteArrayList<ShapeModelListener>();
+        engine = new SequentialMoveEngine();
+        coldNests = new ReferenceQueue<Object>();
+        loadRequests = new ConcurrentLinkedQueue<LazyNestingShape>();
     }
 
     /**
@@ -58,14 +145,22 @@ public class ShapeModel {
     public boolean add(Shape shape, NestingShape parent) {
         boolean success = true;
 
-        try {
-            parent.add(shape);
+        synchronized (this) {
+            try {
+                parent.add(shape);
+                addToIndex(shape);
+                snapshotStale = true;
+                if (recorder != null) {
+                    recorder.added(shape, parent);
+                }
 
-            // Fire event.
-            fire(ShapeModelEvent.makeShapeAddedEvent(shape, this));
-        } catch (IllegalArgumentException e) {
-            success = false;
+                // Fire event.
+                fire(ShapeModelEvent.makeShapeAddedEvent(shape, this));
+            } catch (IllegalArgumentException e) {
+                success = false;
+            }
         }
+        awaitListeners();
         return success;
     }
 
@@ -79,43 +174,423 @@ public class ShapeModel {
      * @param shape the Shape to remove.
      */
     public void remove(Shape shape) {
-        // Remove shape from its parent.
-        NestingShape parent = shape.parent();
+        synchronized (this) {
+            // Remove shape from its parent.
+            NestingShape parent = shape.parent();
 
-        if (parent != null) {
-            int index = parent.indexOf(shape);
-            parent.remove(shape);
+            if (parent != null) {
+                int index = parent.indexOf(shape);
+                parent.remove(shape);
+                removeFromIndex(shape);
+                snapshotStale = true;
+                if (recorder != null) {
+                    recorder.removed(shape);
+                }
 
-            // Fire event.
-            fire(ShapeModelEvent.makeShapeRemovedEvent(shape, parent, index, this));
+                // Fire event.
+                fire(ShapeModelEvent.makeShapeRemovedEvent(shape, parent, index, this));
+            }
         }
+        awaitListeners();
+    }
+
+    /**
+     * Attempts to add several new Shapes to a specified NestingShape held
+     * within the ShapeModel. The shapes are validated in one pass; if any of
+     * them cannot be added, for the reasons given for add(), none are and
+     * this method returns false. Otherwise the shapes are appended to the
+     * NestingShape in iteration order and a single ShapesAdded
+     * ShapeModelEvent is fired to registered listeners. Adding an empty
+     * collection fires no event.
+     *
+     * @param shapes the new shapes to add to this ShapeModel.
+     * @param parent the intended parent of the new shapes.
+     */
+    public boolean addAll(Collection<? extends Shape> shapes, NestingShape parent) {
+        boolean success = true;
+
+        synchronized (this) {
+            try {
+                int firstIndex = parent.shapeCount();
+                parent.addAll(shapes);
+
+                if (!shapes.isEmpty()) {
+                    snapshotStale = true;
+                    List<Shape> added = new ArrayList<Shape>(shapes);
+                    for (Shape shape : added) {
+                        addToIndex(shape);
+                    }
+                    if (recorder != null) {
+                        recorder.addedAll(added, parent);
+                    }
+
+                    // Fire event.
+                    fire(ShapeModelEvent.makeShapesAddedEvent(added, parent, firstIndex, this));
+                }
+            } catch (IllegalArgumentException e) {
+                success = false;
+            }
+        }
+        awaitListeners();
+        return success;
+    }
+
+    /**
+     * Removes those of the specified Shapes that are children of the
+     * specified NestingShape, ignoring any others. If any shapes are removed,
+     * registered ShapeModelListeners are notified via a single ShapesRemoved
+     * ShapeModelEvent.
+     *
+     * @param shapes the Shapes to remove.
+     * @param parent the NestingShape to remove them from.
+     */
+    public void removeAll(Collection<? extends Shape> shapes, NestingShape parent) {
+        synchronized (this) {
+            List<Shape> removed = new ArrayList<Shape>();
+            int[] indices = parent.removeAll(shapes, removed);
+
+            if (!removed.isEmpty()) {
+                snapshotStale = true;
+                for (Shape shape : removed) {
+                    removeFromIndex(shape);
+                }
+                if (recorder != null) {
+                    recorder.removedAll(removed, parent);
+                }
+
+                // Fire event.
+                fire(ShapeModelEvent.makeShapesRemovedEvent(removed, parent, indices, this));
+            }
+        }
+        awaitListeners();
     }
 
     /**
      * Progresses the animation. Calling this method causes each Shape in this
      * ShapeModel to move before notifying each registered ShapeModelListener
-     * of the movement. Note that a clock() call results in ONE ShapeModelEvent
-     * being fired; the event identifies the root NestingShape.
+     * of the movement. Note that a clock() call results in ONE ShapeMoved
+     * ShapeModelEvent being fired; the event identifies the root NestingShape.
+     * If any NestingShape detects collisions between its children, the
+     * ShapeMoved event is followed by a ShapesCollided event carrying the
+     * number of collisions resolved.
+     *
+     * Before moving the shapes, LazyNestingShapes that have been painted
+     * without their children load them, and PagedNestingShapes whose
+     * children have gone unused while memory is short page them out.
      */
     public void clock() {
-        root.move(bounds.width, bounds.height);
+        clock(System.nanoTime());
+    }
+
+    /**
+     * Progresses the animation as clock() does, taking stepTime, a
+     * System.nanoTime() value, as the time at which the step was due.
+     * Snapshots recorded from then on carry stepTime (see
+     * ShapeModelSnapshot.stepTime()), so that a renderer can work out how
+     * far between steps to paint from the snapshot it paints.
+     */
+    public void clock(long stepTime) {
+        synchronized (this) {
+            this.stepTime = stepTime;
+            pageLazyNests();
+            if (interpolated) {
+                root.savePosition();
+            }
+            engine.clock(root, bounds.width, bounds.height);
+            if (recorder != null) {
+                recorder.clocked();
+            }
 
-        // Fire event.
-        fire(ShapeModelEvent.makeShapeMovedEvent(root, this));
+            // Resolve collisions between siblings, where enabled.
+            boolean collisionsDetected = root.detectsCollisions();
+            int collisions = root.resolveCollisions();
+
+            if (index != null) {
+                index.update(root, 0, 0);
+            }
+            if (snapshotsRequested) {
+                publishSnapshot();
+            }
+
+            // Fire event.
+            fire(ShapeModelEvent.makeShapeMovedEvent(root, this));
+            if (collisionsDetected) {
+                fire(ShapeModelEvent.makeShapesCollidedEvent(root, collisions, this));
+            }
+        }
+        awaitListeners();
+    }
+
+    /**
+     * Returns the Shape that is painted topmost at the specified point, given
+     * in world coordinates, or null if the point lies outside of this
+     * ShapeModel. Queries are answered from a spatial index that is built on
+     * the first query and kept up to date from then on.
+     */
+    public synchronized Shape shapeAt(Point point) {
+        List<Shape> hits = new ArrayList<Shape>();
+        index().query(point, hits);
+
+        Shape topmost = null;
+        for (Shape shape : hits) {
+            if (topmost == null || paintedAfter(shape, topmost)) {
+                topmost = shape;
+            }
+        }
+        return topmost;
+    }
+
+    /**
+     * Returns every Shape whose bounds intersect the specified area, given
+     * in world coordinates. The shapes are returned in no particular order.
+     */
+    public synchronized List<Shape> shapesIn(Rectangle area) {
+        List<Shape> result = new ArrayList<Shape>();
+        index().query(area, result);
+        return result;
+    }
+
+    /**
+     * Returns the latest snapshot of this ShapeModel, which stays unchanged
+     * while the caller reads it. Once snapshots have been asked for, a new
+     * one is published after each clock() call, so this method only needs
+     * to lock the ShapeModel when its structure has changed since the last
+     * clock(). The caller must release the snapshot when done with it.
+     */
+    public ShapeModelSnapshot acquireSnapshot() {
+        snapshotsRequested = true;
+        while (true) {
+            ShapeModelSnapshot latest = snapshot;
+            if (latest == null || snapshotStale) {
+                synchronized (this) {
+                    if (snapshot == null || snapshotStale) {
+                        publishSnapshot();
+                    }
+                    latest = snapshot;
+                }
+            }
+
+            // Acquiring fails if a newer snapshot has been published and
+            // this one is being written again, in which case try the newer.
+            if (latest.acquire()) {
+                return latest;
+            }
+        }
+    }
+
+    /**
+     * Sets the MoveEngine used by clock() to move the shapes held in this
+     * ShapeModel. Any state packed by the previous engine is restored to the
+     * shapes themselves before the new engine takes over.
+     */
+    public synchronized void setMoveEngine(MoveEngine engine) {
+        root.unpackAll();
+        this.engine = engine;
     }
 
     /**
-     * Registers a ShapeModelListener on this ShapeModel object.
+     * Specifies whether clock() should record each Shape's position before
+     * moving it, allowing Painters to interpolate between the previous and
+     * current positions (see Painter.interpolation()).
+     */
+    public synchronized void setInterpolated(boolean interpolated) {
+        if (interpolated && !this.interpolated) {
+            root.savePosition();
+        }
+        this.interpolated = interpolated;
+    }
+
+    /**
+     * Starts recording this ShapeModel's composition, and every change made
+     * to it from now on, to recorder (see ShapeModelRecorder). Passing null
+     * stops recording; the recorder is left open.
+     *
+     * @throws IllegalStateException if recorder has already recorded a
+     *                               ShapeModel.
+     */
+    public synchronized void setRecorder(ShapeModelRecorder recorder) {
+        if (recorder != null) {
+            recorder.started(bounds, root);
+        }
+        this.recorder = recorder;
+    }
+
+    /**
+     * Returns the MoveEngine used by clock().
+     */
+    public MoveEngine moveEngine() {
+        return engine;
+    }
+
+    /**
+     * Registers a ShapeModelListener on this ShapeModel object. The listener
+     * is notified on the thread that changes the model.
      */
     public void addShapeModelListener(ShapeModelListener listener) {
         listeners.add(listener);
     }
 
     /**
-     * Registers a ShapeModelListener from this ShapeModel object.
+     * Registers a ShapeModelListener on this ShapeModel object for
+     * asynchronous delivery. Events are queued for the listener and
+     * delivered in order on a thread of its own; once capacity events are
+     * waiting, further events are handled according to overflow. Where
+     * overflow has the changing thread wait for room, it waits after
+     * unlocking this ShapeModel, so the listener may lock it, e.g. by
+     * calling shapeAt(), without deadlocking.
+     *
+     * @throws IllegalArgumentException if capacity is less than 1.
+     */
+    public void addShapeModelListener(ShapeModelListener listener, int capacity, Overflow overflow) {
+        listeners.add(new AsyncShapeModelListener(listener, capacity, overflow));
+    }
+
+    /**
+     * Removes a ShapeModelListener from this ShapeModel object. Events still
+     * waiting to be delivered to an asynchronous listener are discarded, and
+     * its delivery thread stops once it has delivered the event it is
+     * delivering, if any.
      */
     public void removeShapeModelListener(ShapeModelListener listener) {
-        listeners.remove(listener);
+        for (ShapeModelListener registered : listeners) {
+            if (registered.equals(listener)) {
+                listeners.remove(registered);
+                return;
+            }
+            if (registered instanceof AsyncShapeModelListener
+                    && ((AsyncShapeModelListener) registered).listener() == listener) {
+                listeners.remove(registered);
+                ((AsyncShapeModelListener) registered).close();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes every ShapeModelListener registered for asynchronous delivery
+     * and stops their delivery threads, discarding events still waiting.
+     * Listeners notified on the thread that changes the model stay
+     * registered. Returns once each delivery thread has delivered the event
+     * it was delivering, if any, and stopped, unless called on one of them.
+     * Must not be called while holding this ShapeModel's lock, as a delivery
+     * thread may be waiting for it.
+     */
+    public void shutdownListeners() {
+        List<AsyncShapeModelListener> closed = new ArrayList<AsyncShapeModelListener>();
+        for (ShapeModelListener registered : listeners) {
+            if (registered instanceof AsyncShapeModelListener) {
+                AsyncShapeModelListener async = (AsyncShapeModelListener) registered;
+                listeners.remove(async);
+                async.close();
+                closed.add(async);
+            }
+        }
+        for (AsyncShapeModelListener async : closed) {
+            async.awaitClosed();
+        }
+    }
+
+    /*
+     * Returns the queue that PagedNestingShapes register their children's
+     * residency with.
+     */
+    ReferenceQueue<Object> residencyQueue() {
+        return coldNests;
+    }
+
+    /*
+     * Asks for nest's children to be loaded by the next clock() call.
+     */
+    void requestLoad(LazyNestingShape nest) {
+        loadRequests.add(nest);
+    }
+
+    /*
+     * Indexes the children nest has just loaded. The caller holds this
+     * ShapeModel's lock.
+     */
+    void childrenLoaded(PagedNestingShape nest) {
+        for (Shape child : nest.children()) {
+            addToIndex(child);
+        }
+        snapshotStale = true;
+    }
+
+    private void pageLazyNests() {
+        for (LazyNestingShape nest; (nest = loadRequests.poll()) != null; ) {
+            nest.load();
+        }
+
+        for (Reference<?> cleared; (cleared = coldNests.poll()) != null; ) {
+            PagedNestingShape.Residency residency = (PagedNestingShape.Residency) cleared;
+            List<Shape> children = residency.nest.pageOut(residency, this);
+            if (children != null) {
+                for (Shape child : children) {
+                    removeFromIndex(child);
+                }
+                snapshotStale = true;
+            }
+        }
+    }
+
+    /*
+     * Records the current state in a snapshot and publishes it. The oldest
+     * snapshot is reused unless somebody is still reading it.
+     */
+    private void publishSnapshot() {
+        ShapeModelSnapshot next = spare;
+        if (next == null || !next.beginWrite()) {
+            next = new ShapeModelSnapshot();
+        }
+        next.record(root, snapshotCount++, stepTime);
+
+        spare = snapshot;
+        snapshotStale = false;
+        snapshot = next;
+    }
+
+    private LooseQuadtree index() {
+        if (index == null) {
+            index = new LooseQuadtree(bounds.width, bounds.height);
+            index.add(root, 0, 0);
+        }
+        return index;
+    }
+
+    private void addToIndex(Shape shape) {
+        // Shapes added to a NestingShape outside of the model are indexed
+        // when that NestingShape joins the model.
+        LooseQuadtree.Entry parentEntry = shape.parent().indexEntry;
+        if (index != null && parentEntry != null) {
+            index.add(shape, parentEntry.left, parentEntry.top);
+        }
+    }
+
+    private void removeFromIndex(Shape shape) {
+        if (index != null) {
+            LooseQuadtree.remove(shape);
+        }
+    }
+
+    /*
+     * Returns true if shape a is painted after (i.e. on top of) shape b.
+     */
+    private static boolean paintedAfter(Shape a, Shape b) {
+        List<Shape> pathA = a.path();
+        List<Shape> pathB = b.path();
+
+        int common = 0;
+        while (common < pathA.size() && common < pathB.size()
+                && pathA.get(common) == pathB.get(common)) {
+            common++;
+        }
+
+        if (common == pathA.size() || common == pathB.size()) {
+            // One is an ancestor of the other; the descendant is on top.
+            return pathA.size() > pathB.size();
+        }
+        NestingShape parent = (NestingShape) pathA.get(common - 1);
+        return parent.indexOf(pathA.get(common)) > parent.indexOf(pathB.get(common));
     }
 
     /*
@@ -128,6 +603,24 @@ public class ShapeModel {
         }
     }
 
+    /*
+     * Waits until listeners registered for asynchronous delivery have room
+     * for the events fired by the change just made. Called once the change
+     * has released this ShapeModel's lock, so that the listeners can lock it
+     * while the changing thread waits; does nothing if the lock is still
+     * held by an enclosing change.
+     */
+    private void awaitListeners() {
+        if (Thread.holdsLock(this)) {
+            return;
+        }
+        for (ShapeModelListener listener : listeners) {
+            if (listener instanceof AsyncShapeModelListener) {
+                ((AsyncShapeModelListener) listener).awaitRoom();
+            }
+        }
+    }
+
     /*
      * TODO Implement appropriate method(s) for the cut and paste feature
      *  where a selected shape is moved to a new destination.
@@ -135,25 +628,38 @@ public class ShapeModel {
      */
     public boolean cutAndPaste(Shape shapeToPaste, NestingShape destination) {
         boolean success = true;
-        //shapeToPaste already exists in the destination , do nothing and return true
-        if (destination.contains(shapeToPaste)) return true;
+        synchronized (this) {
+            //shapeToPaste already exists in the destination , do nothing and return true
+            if (destination.contains(shapeToPaste)) return true;
 
-        try {
-            //store original parent before remove
-            NestingShape parent = shapeToPaste.parent();
-            if (parent != null) {
-                int index = shapeToPaste.parent.indexOf(shapeToPaste);
-                shapeToPaste.parent.remove(shapeToPaste);
-                fire(ShapeModelEvent.makeShapeRemovedEvent(shapeToPaste, parent, index, this));
+            try {
+                //store original parent before remove
+                NestingShape parent = shapeToPaste.parent();
+                if (parent != null) {
+                    int index = shapeToPaste.parent.indexOf(shapeToPaste);
+                    shapeToPaste.parent.remove(shapeToPaste);
+                    removeFromIndex(shapeToPaste);
+                    snapshotStale = true;
+                    if (recorder != null) {
+                        recorder.removed(shapeToPaste);
+                    }
+                    fire(ShapeModelEvent.makeShapeRemovedEvent(shapeToPaste, parent, index, this));
+                }
+                shapeToPaste.move(destination.width(), destination.height());
+                destination.add(shapeToPaste);
+                addToIndex(shapeToPaste);
+                snapshotStale = true;
+                if (recorder != null) {
+                    // Logged as an addition, with the position move() gave it.
+                    recorder.added(shapeToPaste, destination);
+                }
+                fire(ShapeModelEvent.makeShapeAddedEvent(shapeToPaste, this));
+            } catch (IllegalArgumentException e) {
+                System.out.println("error: " + e.getMessage());
+                success = false;
             }
-            shapeToPaste.move(destination.width(), destination.height());
-            destination.add(shapeToPaste);
-            fire(ShapeModelEvent.makeShapeAddedEvent(shapeToPaste, this));
-        } catch (IllegalArgumentException e) {
-            System.out.println("error: " + e.getMessage());
-            success = false;
         }
-
+        awaitListeners();
         return success;
 
     }
@@ -1,5 +1,8 @@
 package bounce;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Class to describe a change to the state of a ShapeModel object. An instance
  * of ShapeModelEvent is sent in a notification message (an update() call) by a
@@ -10,7 +13,7 @@ package bounce;
 public class ShapeModelEvent {
 
     // Set of event types.
-    public enum EventType {ShapeAdded, ShapeRemoved, ShapeMoved}
+    public enum EventType {ShapeAdded, ShapeRemoved, ShapeMoved, ShapesCollided, ShapesAdded, ShapesRemoved}
 
     private EventType type;      // Type of event.
     private Shape operand;       // Shape to which the event relates.
@@ -20,6 +23,10 @@ public class ShapeModelEvent {
     private NestingShape parent; // Parent NestingShape of fOperand; for
     // ShapeRemoved events this is the former
     // parent of fOperand.
+    private int collisions;      // Number of colliding pairs, for
+    // ShapesCollided events.
+    private List<Shape> operands; // Shapes to which a bulk event relates.
+    private int[] indices;        // Indices of operands within parent.
 
     /**
      * Creates a ShapeAdded ShapeModelEvent.
@@ -53,6 +60,43 @@ public class ShapeModelEvent {
 
     }
 
+    /**
+     * Creates a ShapesAdded ShapeModelEvent, describing shapes that have
+     * been appended to a NestingShape in one go.
+     *
+     * @param shapesAdded the Shapes that have been added to a ShapeModel, in
+     *                    the order they were added.
+     * @param parent      the NestingShape the shapes have been added to.
+     * @param firstIndex  the index position of the first of shapesAdded
+     *                    within parent; the others follow it.
+     * @param source      the ShapeModel object that fires the event.
+     */
+    public static ShapeModelEvent makeShapesAddedEvent(
+            List<Shape> shapesAdded, NestingShape parent, int firstIndex, ShapeModel source) {
+        int[] indices = new int[shapesAdded.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = firstIndex + i;
+        }
+        return makeBulkEvent(EventType.ShapesAdded, shapesAdded, parent, indices, source);
+    }
+
+    /**
+     * Creates a ShapesRemoved ShapeModelEvent, describing shapes that have
+     * been removed from a NestingShape in one go.
+     *
+     * @param shapesRemoved the Shapes that have been removed from a
+     *                      ShapeModel, in the order they were held.
+     * @param formerParent  the former parent of shapesRemoved.
+     * @param indices       the index positions, in ascending order, that
+     *                      shapesRemoved used to be stored at within
+     *                      formerParent.
+     * @param source        the ShapeModel object that fires the event.
+     */
+    public static ShapeModelEvent makeShapesRemovedEvent(
+            List<Shape> shapesRemoved, NestingShape formerParent, int[] indices, ShapeModel source) {
+        return makeBulkEvent(EventType.ShapesRemoved, shapesRemoved, formerParent, indices, source);
+    }
+
     /**
      * Creates a ShapeMoved ShapeModelEvent.
      *
@@ -71,6 +115,29 @@ public class ShapeModelEvent {
         return new ShapeModelEvent(EventType.ShapeMoved, shapeMoved, parent, index, source);
     }
 
+    /**
+     * Creates a ShapesCollided ShapeModelEvent.
+     *
+     * @param root       the root NestingShape of the ShapeModel.
+     * @param collisions the number of pairs of sibling shapes that collided
+     *                   during the last clock() call.
+     * @param source     the ShapeModel object that fires the event.
+     */
+    public static ShapeModelEvent makeShapesCollidedEvent(
+            NestingShape root, int collisions, ShapeModel source) {
+        ShapeModelEvent event = new ShapeModelEvent(EventType.ShapesCollided, root, null, -1, source);
+        event.collisions = collisions;
+        return event;
+    }
+
+    private static ShapeModelEvent makeBulkEvent(
+            EventType type, List<Shape> operands, NestingShape parent, int[] indices, ShapeModel source) {
+        ShapeModelEvent event = new ShapeModelEvent(type, operands.get(0), parent, indices[0], source);
+        event.operands = Collections.unmodifiableList(operands);
+        event.indices = indices;
+        return event;
+    }
+
     /*
      * Hidden constructor used by the static factory methods.
      */
@@ -84,19 +151,30 @@ public class ShapeModelEvent {
 
     /**
      * Returns the type of the event, one of ShapeAdded, ShapeRemoved,
-     * ShapeMoved.
+     * ShapeMoved, ShapesCollided, ShapesAdded, ShapesRemoved.
      */
     public EventType eventType() {
         return type;
     }
 
     /**
-     * Returns the Shape object to which this ShapeModelEvent applies.
+     * Returns the Shape object to which this ShapeModelEvent applies. For
+     * ShapesAdded and ShapesRemoved events this is the first of operands().
      */
     public Shape operand() {
         return operand;
     }
 
+    /**
+     * Returns the Shape objects to which this ShapeModelEvent applies. For
+     * ShapesAdded and ShapesRemoved events these are all of the shapes added
+     * or removed, in index order; for other events the list holds operand()
+     * alone.
+     */
+    public List<Shape> operands() {
+        return operands == null ? Collections.singletonList(operand) : operands;
+    }
+
     /**
      * Returns the parent NestingShape of the Shape to which this
      * ShapeModelEvent applies. If the type of this ShapeModelEvent is
@@ -124,4 +202,24 @@ public class ShapeModelEvent {
     public int index() {
         return index;
     }
+
+    /**
+     * Returns the index positions of the Shape objects returned by
+     * operands() within their NestingShape parent, in ascending order. For
+     * ShapesAdded events the indices form a single range; for ShapesRemoved
+     * events they are the positions the shapes occupied before they were
+     * removed. For other events the array holds index() alone.
+     */
+    public int[] indices() {
+        return indices == null ? new int[]{index} : indices.clone();
+    }
+
+    /**
+     * Returns the number of pairs of sibling shapes that collided during the
+     * clock() call that fired this ShapeModelEvent. For event types other
+     * than ShapesCollided this method returns 0.
+     */
+    public int collisions() {
+        return collisions;
+    }
 }
@@ -0,0 +1,358 @@
+package bounce;
+
+import java.awt.Dimension;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a compact binary log of the changes made to a ShapeModel, from
+ * which ShapeModelReplayer can rebuild the model and step it exactly as it
+ * was stepped. A recorder is attached with ShapeModel.setRecorder(), which
+ * logs the composition the model holds at that moment; after that every
+ * add(), addAll(), remove(), removeAll(), cutAndPaste() and clock() call is
+ * logged.
+ *
+ * Since movement follows from the state of the shapes, a run of clock()
+ * calls is logged as a single count, so ticks cost almost nothing to record.
+ * Shapes are logged when they join the model, with their state and any
+ * shapes nested within them, and are referred to by number from then on.
+ * Numbers are varint encoded, and records are buffered and written to a
+ * FileChannel in large blocks.
+ *
+ * Changes that are not made through the ShapeModel, such as enabling
+ * collision detection in a NestingShape already in the model, are not
+ * logged. An ImageRectangleShape's image is not logged either; replaying
+ * gives it a blank image of the same size.
+ *
+ * Recording never throws from the ShapeModel's methods. If writing fails,
+ * recording stops and the failure is thrown by the next flush() or close().
+ */
+public final class ShapeModelRecorder implements Closeable {
+
+    static final int MAGIC = 0x424E434C;
+    static final int FORMAT_VERSION = 1;
+
+    // Record types.
+    static final int ADD = 1;
+    static final int ADD_ALL = 2;
+    static final int REMOVE = 3;
+    static final int REMOVE_ALL = 4;
+    static final int CLOCK = 5;
+
+    // Shape kinds.
+    static final int RECTANGLE = 0;
+    static final int OVAL = 1;
+    static final int GEM = 2;
+    static final int DYNAMIC_RECTANGLE = 3;
+    static final int IMAGE_RECTANGLE = 4;
+    static final int NESTING = 5;
+    static final int OTHER = 6;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Largest number of bytes a varint takes.
+    private static final int MAX_VARINT = 10;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    // Numbers of the shapes in the recorded model.
+    private final Map<Shape, Integer> ids;
+
+    private int nextId;
+
+    // clock() calls not yet written.
+    private long pendingTicks;
+
+    private boolean started;
+
+    // First write failure, if any.
+    private IOException failure;
+
+    /**
+     * Creates a ShapeModelRecorder that writes to channel, which it closes
+     * when it is closed.
+     */
+    public ShapeModelRecorder(FileChannel channel) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ids = new IdentityHashMap<>();
+    }
+
+    /**
+     * Creates a ShapeModelRecorder that writes to the specified file,
+     * replacing any existing content.
+     *
+     * @throws IOException if the file cannot be opened for writing.
+     */
+    public static ShapeModelRecorder create(Path file) throws IOException {
+        return new ShapeModelRecorder(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Writes everything recorded so far to the underlying channel.
+     *
+     * @throws IOException if this or an earlier write failed.
+     */
+    public synchronized void flush() throws IOException {
+        writeTicks();
+        drain();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Flushes this recorder and closes the underlying channel. Changes made
+     * to the model afterwards are not recorded.
+     *
+     * @throws IOException if this or an earlier write failed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            failure = failure == null ? new IOException("Recorder closed") : failure;
+            channel.close();
+        }
+    }
+
+    /*
+     * Records the composition of a model with the specified bounds.
+     */
+    synchronized void started(Dimension bounds, NestingShape root) {
+        if (started) {
+            throw new IllegalStateException("Recorder already attached to a ShapeModel");
+        }
+        started = true;
+
+        ensure(4 + 3 * MAX_VARINT);
+        buffer.putInt(MAGIC);
+        putUnsigned(FORMAT_VERSION);
+        putUnsigned(bounds.width);
+        putUnsigned(bounds.height);
+        ids.put(root, nextId++);
+        putChildren(root);
+    }
+
+    synchronized void added(Shape shape, NestingShape parent) {
+        Integer parentId = ids.get(parent);
+        if (parentId != null && beginRecord(ADD)) {
+            putUnsigned(parentId);
+            putShape(shape);
+        }
+    }
+
+    synchronized void addedAll(List<Shape> shapes, NestingShape parent) {
+        Integer parentId = ids.get(parent);
+        if (parentId != null && beginRecord(ADD_ALL)) {
+            putUnsigned(parentId);
+            putUnsigned(shapes.size());
+            for (Shape shape : shapes) {
+                putShape(shape);
+            }
+        }
+    }
+
+    synchronized void removed(Shape shape) {
+        Integer id = ids.get(shape);
+        if (id != null && beginRecord(REMOVE)) {
+            putUnsigned(id);
+            forget(shape);
+        }
+    }
+
+    synchronized void removedAll(List<Shape> shapes, NestingShape parent) {
+        Integer parentId = ids.get(parent);
+        if (parentId != null && beginRecord(REMOVE_ALL)) {
+            putUnsigned(parentId);
+            putUnsigned(shapes.size());
+            for (Shape shape : shapes) {
+                ensure(MAX_VARINT);
+                putUnsigned(ids.get(shape));
+                forget(shape);
+            }
+        }
+    }
+
+    /*
+     * Counts a clock() call; the count is written before the next record.
+     */
+    synchronized void clocked() {
+        pendingTicks++;
+    }
+
+    /*
+     * Writes any pending ticks and the type of a new record, leaving room
+     * for two numbers to follow. Returns false if recording has stopped.
+     */
+    private boolean beginRecord(int type) {
+        if (failure != null || !started) {
+            return false;
+        }
+        writeTicks();
+        ensure(1 + 2 * MAX_VARINT);
+        buffer.put((byte) type);
+        return true;
+    }
+
+    private void writeTicks() {
+        if (pendingTicks > 0 && failure == null) {
+            ensure(1 + MAX_VARINT);
+            buffer.put((byte) CLOCK);
+            putUnsigned(pendingTicks);
+            pendingTicks = 0;
+        }
+    }
+
+    /*
+     * Writes a shape and, for a NestingShape, the shapes nested within it,
+     * numbering each in the order written.
+     */
+    private void putShape(Shape shape) {
+        ids.put(shape, nextId++);
+
+        int kind = kindOf(shape);
+        ensure(1 + 6 * MAX_VARINT);
+        buffer.put((byte) kind);
+        putSigned(shape.x());
+        putSigned(shape.y());
+        putSigned(shape.deltaX());
+        putSigned(shape.deltaY());
+        putUnsigned(shape.width);
+        putUnsigned(shape.height);
+        putString(shape.text);
+
+        switch (kind) {
+            case DYNAMIC_RECTANGLE:
+                DynamicRectangleShape dynamic = (DynamicRectangleShape) shape;
+                ensure(1 + 4);
+                buffer.put((byte) (dynamic.filled ? 1 : 0));
+                buffer.putInt(dynamic.color.getRGB());
+                break;
+            case NESTING:
+                putChildren((NestingShape) shape);
+                break;
+            case OTHER:
+                putString(shape.getClass().getName());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void putChildren(NestingShape nest) {
+        if (nest instanceof PagedNestingShape) {
+            // The recorded children must stay in the model.
+            ((PagedNestingShape) nest).load();
+            nest.pin();
+        }
+        List<Shape> children = nest.children();
+        ensure(1 + MAX_VARINT);
+        buffer.put((byte) (nest.collisionsEnabled() ? 1 : 0));
+        putUnsigned(children.size());
+        for (Shape child : children) {
+            putShape(child);
+        }
+    }
+
+    private void putString(String string) {
+        if (string == null) {
+            ensure(1);
+            putUnsigned(0);
+            return;
+        }
+
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        ensure(MAX_VARINT);
+        putUnsigned(bytes.length + 1L);
+        for (int offset = 0; offset < bytes.length; ) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /*
+     * Writes value zigzag encoded, so that small negative values are short.
+     */
+    private void putSigned(int value) {
+        putUnsigned(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /*
+     * Writes value seven bits at a time, least significant first, the top
+     * bit of each byte marking that more follow. The caller must have
+     * ensured there is room.
+     */
+    private void putUnsigned(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /*
+     * Makes room in the buffer for the specified number of bytes.
+     */
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (failure == null && buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        // Once recording has failed, records are written to the buffer and
+        // discarded.
+        buffer.clear();
+    }
+
+    private void forget(Shape shape) {
+        ids.remove(shape);
+        if (shape instanceof NestingShape) {
+            for (Shape child : ((NestingShape) shape).children()) {
+                forget(child);
+            }
+        }
+    }
+
+    private static int kindOf(Shape shape) {
+        Class<?> cls = shape.getClass();
+        if (cls == RectangleShape.class) {
+            return RECTANGLE;
+        } else if (cls == OvalShape.class) {
+            return OVAL;
+        } else if (cls == GemShape.class) {
+            return GEM;
+        } else if (cls == DynamicRectangleShape.class) {
+            return DYNAMIC_RECTANGLE;
+        } else if (cls == ImageRectangleShape.class) {
+            return IMAGE_RECTANGLE;
+        } else if (cls == NestingShape.class || cls == LazyNestingShape.class
+                || cls == OffHeapNestingShape.class) {
+            return NESTING;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,367 @@
+package bounce;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds a ShapeModel from a log written by a ShapeModelRecorder and
+ * steps it as the recorded model was stepped. The model holds the recorded
+ * composition as soon as the replayer is created; each call to step() then
+ * applies the next change, or run of clock() calls, through the model's own
+ * methods, so that listeners registered on model() see the session unfold.
+ *
+ * Replaying needs no Swing and runs as fast as the model can be clocked.
+ */
+public final class ShapeModelReplayer implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final ShapeModel model;
+
+    // Shapes by the numbers the recorder gave them.
+    private final List<Shape> shapes;
+
+    // Number of clock() calls replayed.
+    private long ticks;
+
+    /**
+     * Creates a ShapeModelReplayer that reads a log from channel and builds
+     * the composition it starts with.
+     *
+     * @throws IOException if the log cannot be read or is not a log written
+     *                     by a ShapeModelRecorder.
+     */
+    public ShapeModelReplayer(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.flip();
+        shapes = new ArrayList<>();
+
+        if (!fill(4) || buffer.getInt() != ShapeModelRecorder.MAGIC) {
+            throw new IOException("Not a ShapeModel log");
+        }
+        int version = (int) getUnsigned();
+        if (version != ShapeModelRecorder.FORMAT_VERSION) {
+            throw new IOException("Unsupported log format: " + version);
+        }
+
+        int width = (int) getUnsigned();
+        int height = (int) getUnsigned();
+        model = new ShapeModel(new Dimension(width, height));
+        NestingShape root = model.root();
+        shapes.add(root);
+        model.addAll(getChildren(root), root);
+    }
+
+    /**
+     * Opens the log in the specified file.
+     *
+     * @throws IOException if the file cannot be read or does not hold a log
+     *                     written by a ShapeModelRecorder.
+     */
+    public static ShapeModelReplayer open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new ShapeModelReplayer(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the ShapeModel being replayed.
+     */
+    public ShapeModel model() {
+        return model;
+    }
+
+    /**
+     * Returns the number of clock() calls replayed so far.
+     */
+    public long ticks() {
+        return ticks;
+    }
+
+    /**
+     * Replays the next recorded change, or run of clock() calls. Returns
+     * false if the end of the log has been reached.
+     *
+     * @throws IOException if the log cannot be read, or ends part way
+     *                     through a record.
+     */
+    public boolean step() throws IOException {
+        if (!fill(1)) {
+            return false;
+        }
+
+        int type = buffer.get();
+        switch (type) {
+            case ShapeModelRecorder.ADD: {
+                NestingShape parent = nest(getUnsigned());
+                model.add(getShape(), parent);
+                break;
+            }
+            case ShapeModelRecorder.ADD_ALL: {
+                NestingShape parent = nest(getUnsigned());
+                int count = (int) getUnsigned();
+                List<Shape> added = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    added.add(getShape());
+                }
+                model.addAll(added, parent);
+                break;
+            }
+            case ShapeModelRecorder.REMOVE:
+                model.remove(shape(getUnsigned()));
+                break;
+            case ShapeModelRecorder.REMOVE_ALL: {
+                NestingShape parent = nest(getUnsigned());
+                int count = (int) getUnsigned();
+                List<Shape> removed = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    removed.add(shape(getUnsigned()));
+                }
+                model.removeAll(removed, parent);
+                break;
+            }
+            case ShapeModelRecorder.CLOCK: {
+                long count = getUnsigned();
+                for (long i = 0; i < count; i++) {
+                    model.clock();
+                }
+                ticks += count;
+                break;
+            }
+            default:
+                throw new IOException("Unknown record type: " + type);
+        }
+        return true;
+    }
+
+    /**
+     * Replays the rest of the log, returning the number of clock() calls
+     * replayed in all.
+     *
+     * @throws IOException if the log cannot be read, or ends part way
+     *                     through a record.
+     */
+    public long replay() throws IOException {
+        while (step()) {
+        }
+        return ticks;
+    }
+
+    /**
+     * Closes the underlying channel.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+     * Reads a shape and any shapes nested within it, numbering each in the
+     * order read.
+     */
+    private Shape getShape() throws IOException {
+        int id = shapes.size();
+        shapes.add(null);
+
+        int kind = getByte();
+        int x = getSigned();
+        int y = getSigned();
+        int deltaX = getSigned();
+        int deltaY = getSigned();
+        int width = (int) getUnsigned();
+        int height = (int) getUnsigned();
+        String text = getString();
+
+        Shape shape;
+        switch (kind) {
+            case ShapeModelRecorder.RECTANGLE:
+                shape = new RectangleShape(x, y, deltaX, deltaY, width, height, text);
+                break;
+            case ShapeModelRecorder.OVAL:
+                shape = new OvalShape(x, y, deltaX, deltaY, width, height, text);
+                break;
+            case ShapeModelRecorder.GEM:
+                shape = new GemShape(x, y, deltaX, deltaY, width, height, text);
+                break;
+            case ShapeModelRecorder.DYNAMIC_RECTANGLE: {
+                boolean filled = getByte() != 0;
+                DynamicRectangleShape dynamic = new DynamicRectangleShape(x, y, deltaX, deltaY, width, height,
+                        text, new Color(getInt(), true));
+                dynamic.filled = filled;
+                shape = dynamic;
+                break;
+            }
+            case ShapeModelRecorder.IMAGE_RECTANGLE: {
+                BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height),
+                        BufferedImage.TYPE_INT_ARGB);
+                shape = new ImageRectangleShape(deltaX, deltaY, image);
+                shape.x = x;
+                shape.y = y;
+                shape.width = width;
+                shape.height = height;
+                shape.text = text;
+                shape.savePosition();
+                break;
+            }
+            case ShapeModelRecorder.NESTING: {
+                NestingShape nest = new NestingShape(x, y, deltaX, deltaY, width, height, text);
+                shapes.set(id, nest);
+                for (Shape child : getChildren(nest)) {
+                    nest.add(child);
+                }
+                shape = nest;
+                break;
+            }
+            case ShapeModelRecorder.OTHER:
+                shape = construct(getString(), x, y, deltaX, deltaY, width, height, text);
+                break;
+            default:
+                throw new IOException("Unknown shape kind: " + kind);
+        }
+        shapes.set(id, shape);
+        return shape;
+    }
+
+    /*
+     * Reads the collision setting and children of a NestingShape, returning
+     * the children.
+     */
+    private List<Shape> getChildren(NestingShape nest) throws IOException {
+        nest.setCollisionsEnabled(getByte() != 0);
+        int count = (int) getUnsigned();
+        List<Shape> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(getShape());
+        }
+        return children;
+    }
+
+    /*
+     * Creates a Shape of a class the log names, using its six int
+     * constructor (or six ints and a String when it has text).
+     */
+    private static Shape construct(String className, int x, int y, int deltaX, int deltaY, int width,
+                                   int height, String text) throws IOException {
+        try {
+            Class<?> cls = Class.forName(className);
+            if (text == null) {
+                Constructor<?> constructor = cls.getConstructor(int.class, int.class, int.class, int.class,
+                        int.class, int.class);
+                return (Shape) constructor.newInstance(x, y, deltaX, deltaY, width, height);
+            }
+            Constructor<?> constructor = cls.getConstructor(int.class, int.class, int.class, int.class,
+                    int.class, int.class, String.class);
+            return (Shape) constructor.newInstance(x, y, deltaX, deltaY, width, height, text);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IOException("Cannot create shape of class " + className, e);
+        }
+    }
+
+    private Shape shape(long id) throws IOException {
+        Shape shape = id < shapes.size() ? shapes.get((int) id) : null;
+        if (shape == null) {
+            throw new IOException("Unknown shape: " + id);
+        }
+        return shape;
+    }
+
+    private NestingShape nest(long id) throws IOException {
+        Shape shape = shape(id);
+        if (!(shape instanceof NestingShape)) {
+            throw new IOException("Not a NestingShape: " + id);
+        }
+        return (NestingShape) shape;
+    }
+
+    private String getString() throws IOException {
+        long length = getUnsigned();
+        if (length == 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[(int) (length - 1)];
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!fill(1)) {
+                throw new EOFException("Log ends part way through a record");
+            }
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int getSigned() throws IOException {
+        int value = (int) getUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long getUnsigned() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = getByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+
+    private int getInt() throws IOException {
+        if (!fill(4)) {
+            throw new EOFException("Log ends part way through a record");
+        }
+        return buffer.getInt();
+    }
+
+    private int getByte() throws IOException {
+        if (!fill(1)) {
+            throw new EOFException("Log ends part way through a record");
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    /*
+     * Reads from the channel until at least the specified number of bytes
+     * are buffered. Returns false if the log ends first.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,346 @@
+package bounce;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable record of the positions and sizes of the shapes in a ShapeModel,
+ * as they were after a clock() call or a change to the model's structure.
+ * Views such as AnimationView read snapshots rather than the shapes
+ * themselves, so they can paint without locking the ShapeModel while a
+ * simulation thread moves the shapes on.
+ *
+ * Each shape is identified by a node number. Node 0 is the root
+ * NestingShape, and the children of each NestingShape have consecutive node
+ * numbers.
+ *
+ * Snapshots are obtained from ShapeModel.acquireSnapshot() and must be
+ * released once read, after which the ShapeModel may reuse them.
+ */
+public final class ShapeModelSnapshot {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Number of readers, or -1 while the owning ShapeModel writes.
+    private final AtomicInteger readers;
+
+    // Number of snapshots the owning ShapeModel had recorded before this one.
+    private long version;
+
+    // System.nanoTime() at which the step recorded was due.
+    private long stepTime;
+
+    private int size;
+
+    private Shape[] shapes;
+
+    private int[] x;
+
+    private int[] y;
+
+    private int[] previousX;
+
+    private int[] previousY;
+
+    private int[] deltaX;
+
+    private int[] deltaY;
+
+    private int[] width;
+
+    private int[] height;
+
+    // Node number of each shape's first child, and how many children it has.
+    private int[] firstChild;
+
+    private int[] childCount;
+
+    // Revision of each NestingShape at rest, -1 for other nodes.
+    private int[] revision;
+
+    // Node numbers of NestingShapes.
+    private final Map<Shape, Integer> nests;
+
+    /*
+     * Creates an empty snapshot, ready to be written.
+     */
+    ShapeModelSnapshot() {
+        readers = new AtomicInteger(-1);
+        nests = new IdentityHashMap<>();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns a number that grows with each snapshot a ShapeModel records,
+     * so that information derived from one snapshot can be recognised as
+     * still current.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the System.nanoTime() value at which the most recent
+     * ShapeModel.clock() step recorded in this snapshot was due, or 0 if
+     * the model had not been clocked. Painters interpolating between the
+     * previous and current positions should derive how far to go from this
+     * time rather than from the latest step, which may be newer than the
+     * snapshot.
+     */
+    public long stepTime() {
+        return stepTime;
+    }
+
+    /**
+     * Returns the number of shapes in this snapshot, including the root.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the Shape recorded at the specified node.
+     */
+    public Shape shape(int node) {
+        return shapes[checked(node)];
+    }
+
+    /**
+     * Returns the x position of the Shape at the specified node.
+     */
+    public int x(int node) {
+        return x[checked(node)];
+    }
+
+    /**
+     * Returns the y position of the Shape at the specified node.
+     */
+    public int y(int node) {
+        return y[checked(node)];
+    }
+
+    /**
+     * Returns the speed and direction of the Shape at the specified node
+     * along the x axis.
+     */
+    public int deltaX(int node) {
+        return deltaX[checked(node)];
+    }
+
+    /**
+     * Returns the speed and direction of the Shape at the specified node
+     * along the y axis.
+     */
+    public int deltaY(int node) {
+        return deltaY[checked(node)];
+    }
+
+    /**
+     * Returns the width of the Shape at the specified node.
+     */
+    public int width(int node) {
+        return width[checked(node)];
+    }
+
+    /**
+     * Returns the height of the Shape at the specified node.
+     */
+    public int height(int node) {
+        return height[checked(node)];
+    }
+
+    /**
+     * Returns the number of shapes directly nested within the Shape at the
+     * specified node.
+     */
+    public int childCount(int node) {
+        return childCount[checked(node)];
+    }
+
+    /**
+     * Returns the node of the child at the specified index of the Shape at
+     * the specified node.
+     *
+     * @throws IndexOutOfBoundsException if there is no such child.
+     */
+    public int child(int node, int index) {
+        if (index < 0 || index >= childCount[checked(node)]) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Children: " + childCount[node]);
+        }
+        return firstChild[node] + index;
+    }
+
+    /**
+     * Returns the node at which shape is recorded, or -1 if shape is not
+     * part of this snapshot.
+     */
+    public int indexOf(Shape shape) {
+        Integer node = nests.get(shape);
+        if (node != null) {
+            return node;
+        }
+
+        // Other shapes are found among their parent's children.
+        Integer parent = nests.get(shape.parent());
+        if (parent != null) {
+            int first = firstChild[parent];
+            for (int i = first; i < first + childCount[parent]; i++) {
+                if (shapes[i] == shape) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Paints the recorded shapes using the supplied Painter.
+     */
+    public void paint(Painter painter) {
+        if (size > 0) {
+            paint(painter, 0);
+        }
+    }
+
+    /**
+     * Releases this snapshot, which must have been obtained from
+     * ShapeModel.acquireSnapshot() and must not be read afterwards.
+     */
+    public void release() {
+        readers.decrementAndGet();
+    }
+
+    /*
+     * Paints the children of the specified node.
+     */
+    void paintChildren(Painter painter, int node) {
+        int first = firstChild[node];
+        for (int i = first; i < first + childCount[node]; i++) {
+            paint(painter, i);
+        }
+    }
+
+    /*
+     * Returns the revision the NestingShape at the specified node has been
+     * at since the previous snapshot, or -1 if it has changed since or the
+     * node is not a NestingShape.
+     */
+    int revision(int node) {
+        return revision[node];
+    }
+
+    /*
+     * Counts the children of the specified node in map.
+     */
+    void plotChildren(DensityMap map, int node) {
+        int first = firstChild[node];
+        for (int i = first; i < first + childCount[node]; i++) {
+            map.plot(x[i], y[i], width[i], height[i]);
+        }
+    }
+
+    private void paint(Painter painter, int node) {
+        shapes[node].paint(painter, x[node], y[node], previousX[node], previousY[node], this, node);
+    }
+
+    /*
+     * Registers a reader, unless the owning ShapeModel is writing this
+     * snapshot. Returns true if a reader was registered.
+     */
+    boolean acquire() {
+        int count = readers.get();
+        while (count >= 0) {
+            if (readers.compareAndSet(count, count + 1)) {
+                return true;
+            }
+            count = readers.get();
+        }
+        return false;
+    }
+
+    /*
+     * Claims this snapshot for writing, provided nobody is reading it.
+     */
+    boolean beginWrite() {
+        return readers.compareAndSet(0, -1);
+    }
+
+    /*
+     * Records the shape composition rooted at root, breadth first, as of the
+     * step due at stepTime, then makes this snapshot available to readers.
+     * The caller must have claimed this snapshot for writing.
+     */
+    void record(NestingShape root, long version, long stepTime) {
+        this.version = version;
+        this.stepTime = stepTime;
+        int previousSize = size;
+        nests.clear();
+        shapes[0] = root;
+        size = 1;
+
+        for (int node = 0; node < size; node++) {
+            Shape shape = shapes[node];
+            x[node] = shape.x();
+            y[node] = shape.y();
+            previousX[node] = shape.previousX;
+            previousY[node] = shape.previousY;
+            deltaX[node] = shape.deltaX();
+            deltaY[node] = shape.deltaY();
+            width[node] = shape.width;
+            height[node] = shape.height;
+            firstChild[node] = size;
+            revision[node] = -1;
+
+            if (shape instanceof NestingShape) {
+                NestingShape nest = (NestingShape) shape;
+                if (!nest.changedSinceSnapshot) {
+                    revision[node] = nest.revision;
+                }
+                nest.changedSinceSnapshot = false;
+                nests.put(shape, node);
+                List<Shape> children = ((NestingShape) shape).children();
+                if (size + children.size() > shapes.length) {
+                    allocate(Math.max(shapes.length * 2, size + children.size()));
+                }
+                for (Shape child : children) {
+                    shapes[size++] = child;
+                }
+            }
+            childCount[node] = size - firstChild[node];
+        }
+
+        // Let go of shapes recorded by an earlier, larger composition.
+        if (size < previousSize) {
+            Arrays.fill(shapes, size, previousSize, null);
+        }
+        readers.set(0);
+    }
+
+    private void allocate(int capacity) {
+        shapes = Arrays.copyOf(shapes == null ? new Shape[0] : shapes, capacity);
+        x = grow(x, capacity);
+        y = grow(y, capacity);
+        previousX = grow(previousX, capacity);
+        previousY = grow(previousY, capacity);
+        deltaX = grow(deltaX, capacity);
+        deltaY = grow(deltaY, capacity);
+        width = grow(width, capacity);
+        height = grow(height, capacity);
+        firstChild = grow(firstChild, capacity);
+        childCount = grow(childCount, capacity);
+        revision = grow(revision, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private int checked(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("Node: " + node + ", Size: " + size);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,354 @@
+package bounce;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap storage for simple shapes: RectangleShapes, OvalShapes,
+ * GemShapes and DynamicRectangleShapes. Each shape takes eight ints of a
+ * direct buffer, rather than an object of its own, and can be moved, painted
+ * and turned back into a Shape object where it is held. Text is kept on the
+ * heap, and only for stores holding shapes that have text.
+ *
+ * A ShapeStore may be painted while it is being moved on another thread, in
+ * which case some shapes may be painted where they were before the step.
+ */
+final class ShapeStore {
+
+    // Ints per shape, and their offsets.
+    private static final int INTS_PER_SHAPE = 8;
+    private static final int KIND = 0;
+    private static final int X = 1;
+    private static final int Y = 2;
+    private static final int DELTA_X = 3;
+    private static final int DELTA_Y = 4;
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 6;
+    private static final int COLOR = 7;
+
+    // Kinds of shape, with flags above.
+    private static final int RECTANGLE = 0;
+    private static final int OVAL = 1;
+    private static final int GEM = 2;
+    private static final int DYNAMIC_RECTANGLE = 3;
+    private static final int KIND_MASK = 0xFF;
+    private static final int FILLED = 1 << 8;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Stored shapes, null when there are none.
+    private volatile IntBuffer ints;
+
+    private volatile int size;
+
+    // Text of each shape, null until a shape with text is stored.
+    private volatile String[] texts;
+
+    /*
+     * Returns true if shape is of a class a ShapeStore can hold.
+     */
+    static boolean canStore(Shape shape) {
+        return kindOf(shape) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /*
+     * Appends the state of shape, which must be of a class this store can
+     * hold. The shape itself is not kept.
+     */
+    void add(Shape shape) {
+        int kind = kindOf(shape);
+        if (ints == null || (size + 1) * INTS_PER_SHAPE > ints.capacity()) {
+            grow();
+        }
+
+        int color = 0;
+        if (kind == DYNAMIC_RECTANGLE) {
+            DynamicRectangleShape dynamic = (DynamicRectangleShape) shape;
+            kind |= dynamic.filled ? FILLED : 0;
+            color = dynamic.color.getRGB();
+        }
+
+        int base = size * INTS_PER_SHAPE;
+        ints.put(base + KIND, kind);
+        ints.put(base + X, shape.x());
+        ints.put(base + Y, shape.y());
+        ints.put(base + DELTA_X, shape.deltaX());
+        ints.put(base + DELTA_Y, shape.deltaY());
+        ints.put(base + WIDTH, shape.width);
+        ints.put(base + HEIGHT, shape.height);
+        ints.put(base + COLOR, color);
+
+        if (shape.text != null && texts == null) {
+            texts = new String[ints.capacity() / INTS_PER_SHAPE];
+        }
+        if (texts != null) {
+            texts[size] = shape.text;
+        }
+        size++;
+    }
+
+    /*
+     * Creates a Shape object for each stored shape, in the order stored.
+     */
+    List<Shape> createAll() {
+        List<Shape> shapes = new ArrayList<>(size);
+        Color color = null;
+        for (int i = 0; i < size; i++) {
+            int base = i * INTS_PER_SHAPE;
+            int kind = ints.get(base + KIND);
+            int x = ints.get(base + X);
+            int y = ints.get(base + Y);
+            int deltaX = ints.get(base + DELTA_X);
+            int deltaY = ints.get(base + DELTA_Y);
+            int width = ints.get(base + WIDTH);
+            int height = ints.get(base + HEIGHT);
+            String text = texts == null ? null : texts[i];
+
+            switch (kind & KIND_MASK) {
+                case RECTANGLE:
+                    shapes.add(new RectangleShape(x, y, deltaX, deltaY, width, height, text));
+                    break;
+                case OVAL:
+                    shapes.add(new OvalShape(x, y, deltaX, deltaY, width, height, text));
+                    break;
+                case GEM:
+                    shapes.add(new GemShape(x, y, deltaX, deltaY, width, height, text));
+                    break;
+                default:
+                    // Most shapes share a colour.
+                    int rgb = ints.get(base + COLOR);
+                    if (color == null || color.getRGB() != rgb) {
+                        color = new Color(rgb, true);
+                    }
+                    DynamicRectangleShape dynamic = new DynamicRectangleShape(x, y, deltaX, deltaY, width,
+                            height, text, color);
+                    dynamic.filled = (kind & FILLED) != 0;
+                    shapes.add(dynamic);
+                    break;
+            }
+        }
+        return shapes;
+    }
+
+    /*
+     * Discards the stored shapes, releasing the buffer.
+     */
+    void clear() {
+        size = 0;
+        ints = null;
+        texts = null;
+    }
+
+    /*
+     * Moves every stored shape within bounds of width and height, as
+     * Shape.move(int, int, int, int) would move the shape itself. Returns
+     * true if any shape moved or bounced.
+     */
+    boolean move(int width, int height) {
+        IntBuffer ints = this.ints;
+        int end = size * INTS_PER_SHAPE;
+        boolean moved = false;
+
+        for (int base = 0; base < end; base += INTS_PER_SHAPE) {
+            int deltaX = ints.get(base + DELTA_X);
+            int deltaY = ints.get(base + DELTA_Y);
+            int nextX = ints.get(base + X) + deltaX;
+            int nextY = ints.get(base + Y) + deltaY;
+            int maxX = width - ints.get(base + WIDTH);
+            int maxY = height - ints.get(base + HEIGHT);
+            boolean bouncedX = false;
+            boolean bouncedY = false;
+
+            if (nextX <= 0) {
+                nextX = 0;
+                bouncedX = true;
+            } else if (nextX >= maxX) {
+                nextX = maxX;
+                bouncedX = true;
+            }
+            if (nextY <= 0) {
+                nextY = 0;
+                bouncedY = true;
+            } else if (nextY >= maxY) {
+                nextY = maxY;
+                bouncedY = true;
+            }
+
+            moved |= nextX != ints.get(base + X) || nextY != ints.get(base + Y)
+                    || bouncedX && deltaX != 0 || bouncedY && deltaY != 0;
+            ints.put(base + X, nextX);
+            ints.put(base + Y, nextY);
+            if (bouncedX) {
+                ints.put(base + DELTA_X, -deltaX);
+            }
+            if (bouncedY) {
+                ints.put(base + DELTA_Y, -deltaY);
+            }
+
+            // As DynamicRectangleShape.bounced() does, fill on bouncing off a
+            // vertical wall and empty on bouncing off a horizontal one.
+            int kind = ints.get(base + KIND);
+            if ((kind & KIND_MASK) == DYNAMIC_RECTANGLE && (bouncedX && deltaX != 0 || bouncedY && deltaY != 0)) {
+                boolean filled = bouncedX && deltaX != 0 || (kind & FILLED) != 0 && !(bouncedY && deltaY != 0);
+                ints.put(base + KIND, filled ? kind | FILLED : kind & ~FILLED);
+            }
+        }
+        return moved;
+    }
+
+    /*
+     * Leaves every stored shape as ticks calls to move() would, working out
+     * each shape's new state where it is stored (see Shape.advance()).
+     */
+    void advance(long ticks, int width, int height) {
+        IntBuffer ints = this.ints;
+        if (size == 0 || ticks <= 0) {
+            return;
+        }
+        int end = size * INTS_PER_SHAPE;
+
+        for (int base = 0; base < end; base += INTS_PER_SHAPE) {
+            long[] alongX = Shape.advance(ints.get(base + X), ints.get(base + DELTA_X), ints.get(base + WIDTH),
+                    width, ticks);
+            long[] alongY = Shape.advance(ints.get(base + Y), ints.get(base + DELTA_Y), ints.get(base + HEIGHT),
+                    height, ticks);
+            ints.put(base + X, (int) alongX[0]);
+            ints.put(base + DELTA_X, (int) alongX[1]);
+            ints.put(base + Y, (int) alongY[0]);
+            ints.put(base + DELTA_Y, (int) alongY[1]);
+
+            // The last bounce decides whether a DynamicRectangleShape is
+            // filled: off a vertical wall, or both walls at once, fills it.
+            int kind = ints.get(base + KIND);
+            long lastX = alongX[2];
+            long lastY = alongY[2];
+            if ((kind & KIND_MASK) == DYNAMIC_RECTANGLE && (lastX > 0 || lastY > 0)) {
+                ints.put(base + KIND, lastX >= lastY ? kind | FILLED : kind & ~FILLED);
+            }
+        }
+    }
+
+    /*
+     * Paints every stored shape, relative to the painter's origin, as the
+     * shape's own class would paint it (see Shape.paint()).
+     */
+    void paint(Painter painter) {
+        IntBuffer ints = this.ints;
+        String[] texts = this.texts;
+        if (ints == null) {
+            return;
+        }
+        int count = Math.min(size, ints.capacity() / INTS_PER_SHAPE);
+        int levelOfDetail = painter.levelOfDetail();
+        double scale = levelOfDetail == 0 ? 1.0 : painter.scale();
+
+        // Most DynamicRectangleShapes share a colour.
+        Color color = null;
+
+        for (int i = 0; i < count; i++) {
+            int base = i * INTS_PER_SHAPE;
+            int kind = ints.get(base + KIND);
+            int x = ints.get(base + X);
+            int y = ints.get(base + Y);
+            int width = ints.get(base + WIDTH);
+            int height = ints.get(base + HEIGHT);
+            String text = texts == null || i >= texts.length ? null : texts[i];
+
+            boolean tiny = false;
+            boolean drawText = text != null;
+            if (levelOfDetail != 0) {
+                tiny = Shape.isTiny(levelOfDetail, scale, width, height);
+                drawText &= !tiny && Shape.isTextShown(levelOfDetail, scale, width, height);
+            }
+            if (!drawText && !painter.isVisible(x, y, width + 1, height + 1)) {
+                continue;
+            }
+
+            if (tiny) {
+                painter.drawLine(x, y, x, y);
+            } else {
+                switch (kind & KIND_MASK) {
+                    case OVAL:
+                        painter.drawOval(x, y, width, height);
+                        break;
+                    case GEM:
+                        painter.drawGemShape(x, y, width, height);
+                        break;
+                    case DYNAMIC_RECTANGLE:
+                        if ((kind & FILLED) != 0) {
+                            int rgb = ints.get(base + COLOR);
+                            if (color == null || color.getRGB() != rgb) {
+                                color = new Color(rgb, true);
+                            }
+                            Color defaultColor = painter.getColor();
+                            painter.setColor(color);
+                            painter.fillRect(x, y, width, height);
+                            painter.setColor(defaultColor);
+                            break;
+                        }
+                        painter.drawRect(x, y, width, height);
+                        break;
+                    default:
+                        painter.drawRect(x, y, width, height);
+                        break;
+                }
+            }
+            if (drawText) {
+                painter.drawCenteredText(text, x + width / 2, y + height / 2);
+            }
+        }
+    }
+
+    /*
+     * Counts every stored shape in map.
+     */
+    void plot(DensityMap map) {
+        IntBuffer ints = this.ints;
+        if (ints == null) {
+            return;
+        }
+        int end = Math.min(size, ints.capacity() / INTS_PER_SHAPE) * INTS_PER_SHAPE;
+        for (int base = 0; base < end; base += INTS_PER_SHAPE) {
+            map.plot(ints.get(base + X), ints.get(base + Y), ints.get(base + WIDTH), ints.get(base + HEIGHT));
+        }
+    }
+
+    private void grow() {
+        int capacity = ints == null ? INITIAL_CAPACITY : ints.capacity() / INTS_PER_SHAPE * 2;
+        IntBuffer grown = ByteBuffer.allocateDirect(capacity * INTS_PER_SHAPE * 4)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        if (ints != null) {
+            ints.clear();
+            grown.put(ints);
+            grown.clear();
+        }
+        if (texts != null) {
+            String[] grownTexts = new String[capacity];
+            System.arraycopy(texts, 0, grownTexts, 0, size);
+            texts = grownTexts;
+        }
+        ints = grown;
+    }
+
+    private static int kindOf(Shape shape) {
+        Class<?> cls = shape.getClass();
+        if (cls == RectangleShape.class) {
+            return RECTANGLE;
+        } else if (cls == OvalShape.class) {
+            return OVAL;
+        } else if (cls == GemShape.class) {
+            return GEM;
+        } else if (cls == DynamicRectangleShape.class) {
+            return DYNAMIC_RECTANGLE;
+        }
+        return -1;
+    }
+}
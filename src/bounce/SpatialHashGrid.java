@@ -0,0 +1,183 @@
+package bounce;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid spatial hash used by a NestingShape to find and resolve
+ * collisions between its children. The grid is rebuilt once per step with a
+ * counting sort, so each step costs time roughly linear in the number of
+ * children rather than quadratic, and the arrays it uses are reused from step
+ * to step.
+ *
+ * Two shapes collide when their bounds overlap. A colliding pair exchange
+ * their speeds along the axis on which they overlap least, provided they are
+ * moving towards each other along that axis; this is an elastic collision
+ * between shapes of equal mass.
+ */
+final class SpatialHashGrid {
+    // Smallest cell size, in pixels.
+    private static final int MIN_CELL_SIZE = 8;
+
+    // Maximum number of cells per shape.
+    private static final int CELLS_PER_SHAPE = 4;
+
+    // Bounds of each shape; right and bottom are exclusive.
+    private int[] left = new int[0];
+    private int[] top = new int[0];
+    private int[] right = new int[0];
+    private int[] bottom = new int[0];
+
+    // Shapes in cell c are cellItems[cellStart[c] .. cellStart[c + 1] - 1].
+    private int[] cellStart = new int[1];
+    private int[] cellItems = new int[0];
+
+    private int cellSize;
+    private int columns;
+    private int rows;
+
+    /**
+     * Detects collisions between shapes moving within a world of the
+     * specified width and height, and updates the speeds of colliding shapes.
+     * Returns the number of colliding pairs.
+     */
+    int collide(List<Shape> shapes, int width, int height) {
+        int size = shapes.size();
+        if (size < 2) {
+            return 0;
+        }
+
+        build(shapes, width, height);
+
+        int collisions = 0;
+        for (int cell = 0; cell < columns * rows; cell++) {
+            int end = cellStart[cell + 1];
+
+            for (int i = cellStart[cell]; i < end; i++) {
+                int a = cellItems[i];
+
+                for (int j = i + 1; j < end; j++) {
+                    int b = cellItems[j];
+
+                    if (left[a] < right[b] && left[b] < right[a]
+                            && top[a] < bottom[b] && top[b] < bottom[a]
+                            && cellOf(Math.max(left[a], left[b]), Math.max(top[a], top[b])) == cell) {
+                        // Overlapping pairs sharing several cells are only
+                        // handled in the cell holding their overlap's corner.
+                        collisions++;
+                        respond(shapes.get(a), a, shapes.get(b), b);
+                    }
+                }
+            }
+        }
+        return collisions;
+    }
+
+    /*
+     * Sizes the grid to the shapes and sorts the shapes into cells.
+     */
+    private void build(List<Shape> shapes, int width, int height) {
+        int size = shapes.size();
+        if (left.length < size) {
+            int capacity = Math.max(size, left.length * 2);
+            left = new int[capacity];
+            top = new int[capacity];
+            right = new int[capacity];
+            bottom = new int[capacity];
+        }
+
+        long extent = 0;
+        for (int i = 0; i < size; i++) {
+            Shape shape = shapes.get(i);
+            left[i] = shape.x();
+            top[i] = shape.y();
+            right[i] = left[i] + shape.width();
+            bottom[i] = top[i] + shape.height();
+            extent += Math.max(shape.width(), shape.height());
+        }
+
+        // Cells twice the average shape extent, but not too many of them.
+        cellSize = Math.max(MIN_CELL_SIZE, (int) (2 * extent / size));
+        while (cellCount(width, height) > (long) CELLS_PER_SHAPE * size) {
+            cellSize *= 2;
+        }
+        columns = Math.max(1, (width + cellSize - 1) / cellSize);
+        rows = Math.max(1, (height + cellSize - 1) / cellSize);
+
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        }
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+
+        // Count the entries in each cell, offset by one for the prefix sum.
+        for (int i = 0; i < size; i++) {
+            for (int row = rowOf(top[i]); row <= rowOf(bottom[i] - 1); row++) {
+                for (int column = columnOf(left[i]); column <= columnOf(right[i] - 1); column++) {
+                    cellStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+
+        if (cellItems.length < cellStart[cells]) {
+            cellItems = new int[Math.max(cellStart[cells], cellItems.length * 2)];
+        }
+
+        // Fill cells, using cellStart as a cursor and then restoring it.
+        for (int i = 0; i < size; i++) {
+            for (int row = rowOf(top[i]); row <= rowOf(bottom[i] - 1); row++) {
+                for (int column = columnOf(left[i]); column <= columnOf(right[i] - 1); column++) {
+                    cellItems[cellStart[row * columns + column]++] = i;
+                }
+            }
+        }
+        for (int cell = cells; cell > 0; cell--) {
+            cellStart[cell] = cellStart[cell - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /*
+     * Exchanges the speeds of shapes a and b along their axis of least
+     * overlap, if they are approaching each other along it.
+     */
+    private void respond(Shape a, int i, Shape b, int j) {
+        int overlapX = Math.min(right[i], right[j]) - Math.max(left[i], left[j]);
+        int overlapY = Math.min(bottom[i], bottom[j]) - Math.max(top[i], top[j]);
+
+        if (overlapX < overlapY) {
+            int separation = (left[j] + right[j]) - (left[i] + right[i]);
+            if (separation * (b.deltaX() - a.deltaX()) < 0) {
+                int deltaX = a.deltaX();
+                a.setDelta(b.deltaX(), a.deltaY());
+                b.setDelta(deltaX, b.deltaY());
+            }
+        } else {
+            int separation = (top[j] + bottom[j]) - (top[i] + bottom[i]);
+            if (separation * (b.deltaY() - a.deltaY()) < 0) {
+                int deltaY = a.deltaY();
+                a.setDelta(a.deltaX(), b.deltaY());
+                b.setDelta(b.deltaX(), deltaY);
+            }
+        }
+    }
+
+    private long cellCount(int width, int height) {
+        return (long) ((width + cellSize - 1) / cellSize) * ((height + cellSize - 1) / cellSize);
+    }
+
+    private int cellOf(int x, int y) {
+        return rowOf(y) * columns + columnOf(x);
+    }
+
+    private int columnOf(int x) {
+        return Math.max(0, Math.min(columns - 1, x / cellSize));
+    }
+
+    private int rowOf(int y) {
+        return Math.max(0, Math.min(rows - 1, y / cellSize));
+    }
+}
@@ -7,13 +7,19 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
 
 import javax.swing.BorderFactory;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
-import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JList;
 import javax.swing.JPanel;
@@ -33,8 +39,10 @@ import bounce.forms.FormResolver;
 import bounce.forms.util.FormComponent;
 import bounce.forms.util.FormHandler;
 import bounce.views.AnimationView;
+import bounce.views.SwingThreadAdapter;
 import bounce.views.Task2;
 import bounce.views.TableModelAdapter;
+import bounce.views.TileRenderer;
 
 
 /**
@@ -42,21 +50,30 @@ import bounce.views.TableModelAdapter;
  * comprising three views of a ShapeModel: an animation view, a table view and
  * a tree view. In addition the GUI includes buttons and associated event
  * handlers to add new shapes to the animation and to remove existing shapes.
- * A Bounce object uses a Timer to progress the animation; this results in the
- * ShapeModel being sent a clock() message to which it responds by moving its
- * constituent Shape objects and then by notifying the three views
- * (ShapeModelListeners). The application uses a BounceConfig object to read
- * properties from the bounce.properties file, one of which is the name of a
- * ShapeFactory implementation class that is used to create Shapes on request.
+ * A Bounce object uses a SimulationLoop to progress the animation on its own
+ * thread; this results in the ShapeModel being sent a clock() message to which
+ * it responds by moving its constituent Shape objects and then by notifying
+ * the three views (ShapeModelListeners). A Swing Timer repaints the animation
+ * view at a separate, fixed rendering rate, unless the view is configured to
+ * render itself actively where the display supports it. The application uses
+ * a BounceConfig object to read properties from the bounce.properties file,
+ * one of which is the name of a ShapeFactory implementation class that is
+ * used to create Shapes on request.
+ * The initial shapes can be loaded from a scene file (see SceneFile) named on
+ * the command line.
  *
  * @author Ian Warren
  */
 public class Bounce extends JPanel {
-    private static final int DELAY = 25;
-
     // Underlying model for the application.
     private ShapeModel model;
 
+    // Loop that progresses the model.
+    private SimulationLoop simulation;
+
+    // Timer that repaints the animation view.
+    private Timer repaintTimer;
+
     private ShapeClassComboBoxModel comboBoxModel;
 
     // View instances.
@@ -89,20 +106,30 @@ public class Bounce extends JPanel {
      * Creates a Bounce object.
      */
     public Bounce() {
+        this(null);
+    }
+
+    /**
+     * Creates a Bounce object whose initial shapes are loaded from the
+     * specified scene file, or are a built-in set if scene is null.
+     */
+    public Bounce(Path scene) {
         // Instantiate model and populate it with an initial set of shapes.
         BounceConfig config = BounceConfig.instance();
         model = new ShapeModel(config.getAnimationBounds());
-        populateModel();
+        populateModel(scene);
 
         comboBoxModel = new ShapeClassComboBoxModel();
 
         // Instantiate GUI objects and construct GUI.
         buildGUI();
 
-        // Register views with models.
+        // Register views with models. The Swing models are notified on the
+        // event dispatch thread, whereas the animation view tracks the areas
+        // changed by every step on the thread that takes it.
         model.addShapeModelListener(animationView);
-        model.addShapeModelListener(tableModelAdapter);
-        model.addShapeModelListener(treeModelAdapter);
+        model.addShapeModelListener(new SwingThreadAdapter(tableModelAdapter));
+        model.addShapeModelListener(new SwingThreadAdapter(treeModelAdapter));
 
         // Setup event handlers to process user input.
         setUpEventHandlers();
@@ -111,44 +138,75 @@ public class Bounce extends JPanel {
         treeView.setSelectionPath(new TreePath(model.root()));
 
         // Start animation.
-        Timer timer = new Timer(DELAY, new ActionListener() {
+        simulation = new SimulationLoop(model, config.getTickRate());
+        animationView.setInterpolation(new ToDoubleFunction<ShapeModelSnapshot>() {
+            @Override
+            public double applyAsDouble(ShapeModelSnapshot snapshot) {
+                return simulation.interpolation(snapshot);
+            }
+        });
+        simulation.start();
+
+        if (config.getTileSize() > 0) {
+            animationView.setTileRenderer(
+                    new TileRenderer(config.getTileSize(), ForkJoinPool.commonPool()));
+        }
+
+        repaintTimer = new Timer(1000 / config.getRenderRate(), new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                model.clock();
+                animationView.repaintChanges();
             }
         });
-        timer.start();
+        repaintTimer.start();
     }
 
-    private static void createAndShowGUI() {
+    private static void createAndShowGUI(Path scene) {
         JFrame frame = new JFrame("Bounce");
-        JComponent newContentPane = new Bounce();
+        Bounce newContentPane = new Bounce(scene);
         frame.add(newContentPane);
         frame.pack();
         frame.setLocationRelativeTo(null);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setResizable(false);
         frame.setVisible(true);
+
+        // The animation view can only render actively once it is displayed.
+        BounceConfig config = BounceConfig.instance();
+        if (config.isActiveRendering()
+                && newContentPane.animationView.startActiveRendering(config.getRenderRate())) {
+            newContentPane.repaintTimer.stop();
+        }
     }
 
     public static void main(String[] args) {
+        final Path scene = args.length > 0 ? Paths.get(args[0]) : null;
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                createAndShowGUI();
+                createAndShowGUI(scene);
             }
         });
     }
 
     /*
-     * Adds shapes to the model.
+     * Adds shapes to the model, from the scene file if there is one.
      */
-    private void populateModel() {
+    private void populateModel(Path scene) {
+        if (scene != null) {
+            try {
+                SceneFile.load(scene, model);
+                return;
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Cannot load " + scene + ": " + e.getMessage());
+            }
+        }
         NestingShape root = model.root();
 
         model.add(new RectangleShape(440, 0, 10, 10, 4, 2), root);
         model.add(new RectangleShape(0, 0, 5, 7), root);
         model.add(new RectangleShape(0, 0, 2, 2, 10, 10), root);
-        model.add(new DynamicRectangleShape(0, 0, 2, 3, 180, 130, "I change color when I bounce", Color.CYAN), root);
+        model.add(new DynamicRectangleShape(0, 0, 2, 3, 180, 130,
+                "I change color when I bounce", Color.CYAN), root);
 
         NestingShape child = new NestingShape(10, 10, 2, 2, 100, 100);
         model.add(new DynamicRectangleShape(0, 0, 2, 3, 50, 80, Color.RED), child);
@@ -195,7 +253,7 @@ public class Bounce extends JPanel {
                 Shape selection = shapeSelected;
                 NestingShape parent = selection.parent();
 
-                treeView.setSelectionPath(new TreePath(parent.path().toArray()));
+                treeView.setSelectionPath(treeModelAdapter.treePath(parent));
                 model.remove(selection);
 
             }
@@ -214,9 +272,9 @@ public class Bounce extends JPanel {
                 if("Cut".equals(e.getActionCommand())) {
                     shapeToPaste = selection;
                     cutPasteShape.setText("Paste");
-                    treeView.setSelectionPath(new TreePath(shapeToPaste.parent().path().toArray()));
+                    treeView.setSelectionPath(treeModelAdapter.treePath(shapeToPaste.parent()));
                 }else if("Paste".equals(e.getActionCommand())){
-                    treeView.setSelectionPath(new TreePath(shapeToPaste.parent().path().toArray()));
+                    treeView.setSelectionPath(treeModelAdapter.treePath(shapeToPaste.parent()));
                     boolean success = model.cutAndPaste(shapeToPaste, (NestingShape) selection);
                     if(success) {
                         shapeToPaste = null;
@@ -227,6 +285,23 @@ public class Bounce extends JPanel {
             }
         });
 
+        /*
+         * Event handling code to be executed whenever the user clicks on the
+         * animation view. The topmost shape under the mouse is selected in
+         * the JTree view.
+         */
+        animationView.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                Shape shape = model.shapeAt(e.getPoint());
+                if (shape != null) {
+                    TreePath path = treeModelAdapter.treePath(shape);
+                    treeView.setSelectionPath(path);
+                    treeView.scrollPathToVisible(path);
+                }
+            }
+        });
+
         /*
          * Event handling code to be executed whenever the user selects a node
          * within the JTree view. The event handler records which shape is
@@ -267,7 +342,8 @@ public class Bounce extends JPanel {
                     //shape to be pasted not be the ancestor of the destination shape
                     cutPasteShape.setEnabled(shapeToPaste != null
                             && shapeSelected instanceof NestingShape
-                            && (shapeSelected.parent() == null || !shapeSelected.parent().path().contains(shapeToPaste))
+                            && (shapeSelected.parent() == null
+                                    || !shapeSelected.parent().path().contains(shapeToPaste))
                             && shapeSelected.width() > shapeToPaste.width()
                             && shapeSelected.height() > shapeToPaste.height());
                 }
@@ -289,7 +365,7 @@ public class Bounce extends JPanel {
     private void buildGUI() {
         // Create Swing model objects.
         treeModelAdapter = new Task2(model);
-        tableModelAdapter = new TableModelAdapter(model.root());
+        tableModelAdapter = new TableModelAdapter(model.root(), model);
 
         // Create main Swing components.
         treeView = new JTree(treeModelAdapter);
@@ -350,9 +426,11 @@ public class Bounce extends JPanel {
          */
         shapeTypes.setRenderer(new BasicComboBoxRenderer() {
             @Override
-            public Component getListCellRendererComponent(JList list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            public Component getListCellRendererComponent(JList list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
                 String className = value.toString().substring(value.toString().lastIndexOf('.') + 1);
-                return super.getListCellRendererComponent(list, className, index, isSelected, cellHasFocus);
+                return super.getListCellRendererComponent(list, className, index, isSelected,
+                        cellHasFocus);
             }
         });
 
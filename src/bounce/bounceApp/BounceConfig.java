@@ -34,16 +34,29 @@ public class BounceConfig {
     public static final int DEFAULT_ANIMATION_HEIGHT = 500;
     public static final int MAX_ANIMATION_WIDTH = 1000;
     public static final int MAX_ANIMATION_HEIGHT = 1000;
+    public static final int DEFAULT_TICK_RATE = 40;
+    public static final int DEFAULT_RENDER_RATE = 60;
+    public static final int MAX_RATE = 1000;
+    public static final int DEFAULT_TILE_SIZE = 0;
+    public static final boolean DEFAULT_ACTIVE_RENDERING = false;
 
     // Property names (keys).
     private static final String ANIMATION_WIDTH = "animation_width";
     private static final String ANIMATION_HEIGHT = "animation_height";
     private static final String SHAPES = "shape_classes";
+    private static final String TICK_RATE = "tick_rate";
+    private static final String RENDER_RATE = "render_rate";
+    private static final String TILE_SIZE = "tile_size";
+    private static final String ACTIVE_RENDERING = "active_rendering";
 
     // Property values.
     private Dimension bounds;
     private String[] shapeClassNames;
     private List<Class<? extends Shape>> shapeClasses;
+    private int tickRate;
+    private int renderRate;
+    private int tileSize;
+    private boolean activeRendering;
 
     // Singleton instance.
     private static BounceConfig instance;
@@ -96,6 +109,22 @@ public class BounceConfig {
             }
             bounds = new Dimension(width, height);
 
+            // Read rate properties, restoring defaults for invalid values.
+            tickRate = getBound(TICK_RATE, DEFAULT_TICK_RATE, props);
+            if (tickRate < 1 || tickRate > MAX_RATE) {
+                tickRate = DEFAULT_TICK_RATE;
+            }
+            renderRate = getBound(RENDER_RATE, DEFAULT_RENDER_RATE, props);
+            if (renderRate < 1 || renderRate > MAX_RATE) {
+                renderRate = DEFAULT_RENDER_RATE;
+            }
+            tileSize = getBound(TILE_SIZE, DEFAULT_TILE_SIZE, props);
+            if (tileSize < 0 || tileSize > MAX_ANIMATION_WIDTH) {
+                tileSize = DEFAULT_TILE_SIZE;
+            }
+            String active = props.getProperty(ACTIVE_RENDERING);
+            activeRendering = active == null ? DEFAULT_ACTIVE_RENDERING : Boolean.parseBoolean(active.trim());
+
             // Set shapes property.
             String shapeTypes = props.getProperty(SHAPES);
             if (shapeTypes == null) {
@@ -118,6 +147,43 @@ public class BounceConfig {
         return bounds;
     }
 
+    /**
+     * Returns the number of simulation steps (ShapeModel clock() calls) to be
+     * performed per second. Values outside of the range 1 .. MAX_RATE in the
+     * properties file are ignored and DEFAULT_TICK_RATE is returned.
+     */
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * Returns the number of frames per second at which the animation should
+     * be painted. Values outside of the range 1 .. MAX_RATE in the properties
+     * file are ignored and DEFAULT_RENDER_RATE is returned.
+     */
+    public int getRenderRate() {
+        return renderRate;
+    }
+
+    /**
+     * Returns the side, in pixels, of the tiles the animation is rendered in
+     * off the event dispatch thread, or 0 if it is painted on the event
+     * dispatch thread. Values outside of the range 0 .. MAX_ANIMATION_WIDTH
+     * in the properties file are ignored and DEFAULT_TILE_SIZE is returned.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns true if the animation should be rendered actively, on a thread
+     * of its own, rather than repainted through Swing. Active rendering is
+     * only used where the display supports it.
+     */
+    public boolean isActiveRendering() {
+        return activeRendering;
+    }
+
     /**
      * Returns an array of strings containing names of shape classes. If no
      * shape classes are named in the properties file, this method returns an
@@ -196,6 +262,9 @@ public class BounceConfig {
         System.out.println("Animation bounds ...");
         System.out.println("  " + config.getAnimationBounds());
 
+        System.out.println("Tick and render rates ...");
+        System.out.println("  " + config.getTickRate() + " ticks/s, " + config.getRenderRate() + " frames/s");
+
         System.out.println("Shape class names ... ");
         for (String className : config.getShapeClassNames()) {
             System.out.println("  " + className);
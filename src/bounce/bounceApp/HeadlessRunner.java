@@ -0,0 +1,354 @@
+package bounce.bounceApp;
+
+import java.awt.Dimension;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import bounce.ArrayMoveEngine;
+import bounce.MoveEngine;
+import bounce.NestingShape;
+import bounce.OffHeapNestingShape;
+import bounce.PagedNestingShape;
+import bounce.ParallelMoveEngine;
+import bounce.SceneFile;
+import bounce.SequentialMoveEngine;
+import bounce.Shape;
+import bounce.ShapeModel;
+import bounce.ShapeModelRecorder;
+import bounce.ShapeModelReplayer;
+
+/**
+ * Headless batch runner that progresses a ShapeModel as fast as possible,
+ * without Swing, and reports its throughput. The model is populated from a
+ * scene description (see SceneBuilder), a scene file (see SceneFile) or from
+ * a generator, then clock() is called for a number of ticks or seconds after
+ * a warm-up period. The run can be recorded, and a recorded run replayed
+ * (see ShapeModelRecorder).
+ *
+ * Usage:
+ *
+ * <pre>
+ *   java bounce.bounceApp.HeadlessRunner [options]
+ *
+ *   -scene file      read the composition from a scene description
+ *   -load file       load the composition from a scene file
+ *   -lazy            leave nested shapes in the scene file until needed
+ *   -save file       save the composition to a scene file before running
+ *   -shapes n        generate n shapes (default 100000)
+ *   -depth n         nest generated shapes n levels deep (default 2)
+ *   -seed n          seed for the generator (default 718)
+ *   -offheap         hold generated leaf shapes off the heap
+ *   -size w h        world bounds (default 1000 1000)
+ *   -engine name     sequential, array or parallel (default sequential)
+ *   -collisions      detect collisions in every NestingShape
+ *   -warmup n        untimed ticks before measuring (default 200)
+ *   -ticks n         ticks to measure (default 1000)
+ *   -seconds t       measure for t seconds instead of a number of ticks
+ *   -record file     record the run, warm-up included, to a log file
+ *   -replay file     replay a recorded log instead, measuring all of it
+ * </pre>
+ */
+public class HeadlessRunner {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private String scene = null;
+    private String load = null;
+    private String save = null;
+    private boolean lazy = false;
+    private int shapes = 100000;
+    private int depth = 2;
+    private long seed = 718;
+    private boolean offHeap = false;
+    private Dimension bounds = new Dimension(1000, 1000);
+    private String engine = "sequential";
+    private boolean collisions = false;
+    private int warmup = 200;
+    private int ticks = 1000;
+    private double seconds = 0;
+    private String record = null;
+    private String replay = null;
+
+    public static void main(String[] args) throws IOException {
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        runner.run();
+    }
+
+    /**
+     * Returns the MoveEngine with the specified name.
+     *
+     * @throws IllegalArgumentException if there is no such engine.
+     */
+    public static MoveEngine engineFor(String name) {
+        switch (name) {
+            case "sequential":
+                return new SequentialMoveEngine();
+            case "array":
+                return new ArrayMoveEngine();
+            case "parallel":
+                return new ParallelMoveEngine();
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+
+    /*
+     * Builds the model, runs it and prints a report.
+     */
+    void run() throws IOException {
+        if (replay != null) {
+            runReplay();
+            return;
+        }
+
+        ShapeModel model = new ShapeModel(bounds);
+        if (scene != null) {
+            try (Reader reader = new FileReader(scene)) {
+                SceneBuilder.read(reader, model);
+            }
+        } else if (load != null) {
+            long start = System.nanoTime();
+            int loaded = lazy ? SceneFile.loadLazily(Paths.get(load), model)
+                    : SceneFile.load(Paths.get(load), model);
+            System.out.println("Loaded:      " + loaded + " shapes in "
+                    + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms");
+        } else {
+            SceneBuilder.generate(model, shapes, depth, seed, offHeap);
+        }
+        model.setMoveEngine(engineFor(engine));
+        if (collisions) {
+            enableCollisions(model.root());
+        }
+        if (save != null) {
+            SceneFile.save(model, Paths.get(save));
+        }
+        ShapeModelRecorder recorder = null;
+        if (record != null) {
+            recorder = ShapeModelRecorder.create(Paths.get(record));
+            model.setRecorder(recorder);
+        }
+
+        int shapeCount = count(model.root());
+        System.out.println("Shapes:      " + shapeCount);
+        System.out.println("Engine:      " + engine + (collisions ? " with collisions" : ""));
+
+        for (int i = 0; i < warmup; i++) {
+            model.clock();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+        long deadline = start + (long) (seconds * NANOS_PER_SECOND);
+
+        long completed = 0;
+        while (seconds > 0 ? System.nanoTime() - deadline < 0 : completed < ticks) {
+            model.clock();
+            completed++;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedSince(threads, allocatedBefore);
+        if (recorder != null) {
+            recorder.close();
+        }
+        report(completed, elapsed, allocated, shapeCount);
+    }
+
+    /*
+     * Replays a recorded log, timing all of it, and prints a report.
+     */
+    private void runReplay() throws IOException {
+        try (ShapeModelReplayer replayer = ShapeModelReplayer.open(Paths.get(replay))) {
+            ShapeModel model = replayer.model();
+            model.setMoveEngine(engineFor(engine));
+
+            System.out.println("Replaying:   " + replay);
+            System.out.println("Engine:      " + engine);
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            Map<Long, Long> allocatedBefore = allocatedBytes(threads);
+            long start = System.nanoTime();
+            long completed = replayer.replay();
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedSince(threads, allocatedBefore);
+
+            int shapeCount = count(model.root());
+            System.out.println("Shapes:      " + shapeCount + " at end");
+            report(completed, elapsed, allocated, shapeCount);
+        }
+    }
+
+    private static void report(long completed, long elapsed, long allocated, int shapeCount) {
+        double elapsedSeconds = (double) elapsed / NANOS_PER_SECOND;
+        System.out.println("Ticks:       " + completed + " in " + String.format("%.3f", elapsedSeconds) + " s");
+        if (completed == 0) {
+            // There is nothing to divide the time taken by.
+            return;
+        }
+        System.out.println("Throughput:  " + String.format("%.1f", completed / elapsedSeconds) + " ticks/s");
+        System.out.println("Shape move:  " + String.format("%.2f", (double) elapsed / completed / shapeCount) + " ns");
+        if (allocated >= 0) {
+            System.out.println("Allocation:  " + String.format("%.1f", allocated / elapsedSeconds / (1 << 20)) + " MB/s, "
+                    + String.format("%.1f", (double) allocated / completed) + " bytes/tick");
+        } else {
+            System.out.println("Allocation:  not supported by this JVM");
+        }
+    }
+
+    /*
+     * Reads command line options.
+     */
+    void parse(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-scene":
+                        scene = args[++i];
+                        break;
+                    case "-load":
+                        load = args[++i];
+                        break;
+                    case "-save":
+                        save = args[++i];
+                        break;
+                    case "-lazy":
+                        lazy = true;
+                        break;
+                    case "-shapes":
+                        shapes = Integer.parseInt(args[++i]);
+                        break;
+                    case "-depth":
+                        depth = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "-offheap":
+                        offHeap = true;
+                        break;
+                    case "-size":
+                        bounds = new Dimension(Integer.parseInt(args[++i]), Integer.parseInt(args[++i]));
+                        break;
+                    case "-engine":
+                        engine = args[++i];
+                        engineFor(engine);
+                        break;
+                    case "-collisions":
+                        collisions = true;
+                        break;
+                    case "-warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "-ticks":
+                        ticks = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seconds":
+                        seconds = Double.parseDouble(args[++i]);
+                        break;
+                    case "-record":
+                        record = args[++i];
+                        break;
+                    case "-replay":
+                        replay = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Missing value for option " + args[args.length - 1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Returns the number of bytes allocated so far by each live thread,
+     * keyed by thread ID, or null if the JVM cannot measure allocation.
+     */
+    private static Map<Long, Long> allocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = sunThreads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> bytes = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            // Threads that have stopped since their IDs were read report -1.
+            if (allocated[i] >= 0) {
+                bytes.put(ids[i], allocated[i]);
+            }
+        }
+        return bytes;
+    }
+
+    /*
+     * Returns the number of bytes allocated by the live threads since before
+     * was taken by allocatedBytes(), or -1 if before is null. Each thread is
+     * measured against its own count, so threads started since, such as
+     * ForkJoinPool workers, count from nothing. What threads that have
+     * stopped since allocated is lost.
+     */
+    private static long allocatedSince(ThreadMXBean threads, Map<Long, Long> before) {
+        Map<Long, Long> after = allocatedBytes(threads);
+        if (before == null || after == null) {
+            return -1;
+        }
+
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : after.entrySet()) {
+            Long start = before.get(entry.getKey());
+            total += entry.getValue() - (start == null ? 0 : start);
+        }
+        return total;
+    }
+
+    /*
+     * Counts the shapes in memory, including those held off the heap, leaving
+     * paged out shapes where they are.
+     */
+    private static int count(Shape shape) {
+        int count = 1;
+        if (shape instanceof OffHeapNestingShape) {
+            count += ((OffHeapNestingShape) shape).storedCount();
+        }
+        if (shape instanceof PagedNestingShape && !((PagedNestingShape) shape).isLoaded()) {
+            return count;
+        }
+        if (shape instanceof NestingShape) {
+            NestingShape nest = (NestingShape) shape;
+            for (int i = 0; i < nest.shapeCount(); i++) {
+                count += count(nest.shapeAt(i));
+            }
+        }
+        return count;
+    }
+
+    private static void enableCollisions(Shape shape) {
+        if (shape instanceof NestingShape) {
+            NestingShape nest = (NestingShape) shape;
+            nest.setCollisionsEnabled(true);
+            for (int i = 0; i < nest.shapeCount(); i++) {
+                enableCollisions(nest.shapeAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package bounce.bounceApp;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import bounce.DynamicRectangleShape;
+import bounce.GemShape;
+import bounce.NestingShape;
+import bounce.OffHeapNestingShape;
+import bounce.OvalShape;
+import bounce.RectangleShape;
+import bounce.Shape;
+import bounce.ShapeModel;
+
+/**
+ * Utility class that populates a ShapeModel, either from a textual scene
+ * description or from a generator that builds compositions of a requested
+ * size and depth.
+ *
+ * A scene description has one shape per line:
+ *
+ * <pre>
+ *   ClassName x y deltaX deltaY width height [text]
+ * </pre>
+ *
+ * ClassName is a fully qualified Shape subclass with a constructor taking
+ * six ints (or six ints and a String when text is given). Each line is nested
+ * within the closest preceding NestingShape line that is indented less, and
+ * must be indented the same as the other shapes nested within it. Blank lines
+ * and lines starting with '#' are ignored.
+ */
+public class SceneBuilder {
+
+    /**
+     * Reads a scene description and adds the shapes it describes to model.
+     * Returns the number of shapes added.
+     *
+     * @throws IOException              if the description cannot be read.
+     * @throws IllegalArgumentException if the description is malformed or a
+     *                                  shape does not fit its parent.
+     */
+    public static int read(Reader description, ShapeModel model) throws IOException {
+        BufferedReader reader = new BufferedReader(description);
+
+        // Open NestingShapes with their indentation and that of the shapes
+        // nested within them, or -1 if there are none yet, outermost first.
+        List<NestingShape> nests = new ArrayList<>();
+        List<Integer> indents = new ArrayList<>();
+        List<Integer> childIndents = new ArrayList<>();
+        nests.add(model.root());
+        indents.add(-1);
+        childIndents.add(-1);
+
+        // Shapes nested in other shapes are assembled outside of the model,
+        // then the top level shapes are added in one go.
+        List<Shape> topLevel = new ArrayList<>();
+
+        int count = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            int indent = line.indexOf(trimmed);
+            while (indents.get(indents.size() - 1) >= indent) {
+                nests.remove(nests.size() - 1);
+                indents.remove(indents.size() - 1);
+                childIndents.remove(childIndents.size() - 1);
+            }
+            int childIndent = childIndents.get(childIndents.size() - 1);
+            if (childIndent == -1) {
+                childIndents.set(childIndents.size() - 1, indent);
+            } else if (indent != childIndent) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": inconsistent indentation");
+            }
+
+            Shape shape = parse(trimmed, lineNumber);
+            NestingShape parent = nests.get(nests.size() - 1);
+            if (shape.x() + shape.width() > parent.width() || shape.y() + shape.height() > parent.height()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": shape does not fit its parent");
+            }
+            if (parent == model.root()) {
+                topLevel.add(shape);
+            } else {
+                parent.add(shape);
+            }
+            count++;
+
+            if (shape instanceof NestingShape) {
+                nests.add((NestingShape) shape);
+                indents.add(indent);
+                childIndents.add(-1);
+            }
+        }
+        model.addAll(topLevel, model.root());
+        return count;
+    }
+
+    /**
+     * Adds a generated composition of shapeCount shapes to model. Shapes are
+     * spread over NestingShapes nested depth levels deep, each NestingShape
+     * holding up to four NestingShapes plus a share of the remaining shapes.
+     * The same seed always generates the same composition.
+     */
+    public static void generate(ShapeModel model, int shapeCount, int depth, long seed) {
+        generate(model, shapeCount, depth, seed, false);
+    }
+
+    /**
+     * Adds a generated composition to model as generate(ShapeModel, int,
+     * int, long) does, except that if offHeap is true the leaf shapes of each
+     * NestingShape are held off the heap, in a stationary
+     * OffHeapNestingShape covering it.
+     */
+    public static void generate(ShapeModel model, int shapeCount, int depth, long seed, boolean offHeap) {
+        NestingShape root = model.root();
+        populate(model, root, shapeCount, depth, new Random(seed), offHeap);
+    }
+
+    private static void populate(ShapeModel model, NestingShape nest, int shapeCount, int depth, Random random,
+                                 boolean offHeap) {
+        int nestCount = depth == 0 ? 0 : Math.min(4, shapeCount / 2);
+        int nestWidth = nest.width() / 2;
+        int nestHeight = nest.height() / 2;
+        if (nestWidth < 8 || nestHeight < 8) {
+            nestCount = 0;
+        }
+
+        // Leaf shapes get an equal share with each nested composition.
+        int leafCount = (shapeCount - nestCount) / (nestCount + 1);
+        addLeaves(model, nest, leafCount, random, offHeap);
+
+        int remaining = shapeCount - nestCount - leafCount;
+        for (int i = 0; i < nestCount; i++) {
+            NestingShape child = new NestingShape(random.nextInt(nest.width() - nestWidth),
+                    random.nextInt(nest.height() - nestHeight), speed(random), speed(random),
+                    nestWidth, nestHeight);
+            model.add(child, nest);
+
+            int share = remaining / (nestCount - i);
+            populate(model, child, share, depth - 1, random, offHeap);
+            remaining -= share;
+        }
+    }
+
+    private static void addLeaves(ShapeModel model, NestingShape nest, int count, Random random,
+                                  boolean offHeap) {
+        List<Shape> leaves = new ArrayList<>(count);
+        int maxSize = Math.max(2, Math.min(20, Math.min(nest.width(), nest.height()) / 4));
+
+        for (int i = 0; i < count; i++) {
+            int width = 1 + random.nextInt(maxSize);
+            int height = 1 + random.nextInt(maxSize);
+            int x = random.nextInt(nest.width() - width);
+            int y = random.nextInt(nest.height() - height);
+            int deltaX = speed(random);
+            int deltaY = speed(random);
+
+            Shape shape;
+            switch (i % 4) {
+                case 0:
+                    shape = new RectangleShape(x, y, deltaX, deltaY, width, height);
+                    break;
+                case 1:
+                    shape = new OvalShape(x, y, deltaX, deltaY, width, height);
+                    break;
+                case 2:
+                    shape = new GemShape(x, y, deltaX, deltaY, width, height);
+                    break;
+                default:
+                    shape = new DynamicRectangleShape(x, y, deltaX, deltaY, width, height, Color.ORANGE);
+                    break;
+            }
+            leaves.add(shape);
+        }
+
+        if (offHeap && count > 0) {
+            OffHeapNestingShape layer = new OffHeapNestingShape(0, 0, 0, 0, nest.width(), nest.height());
+            for (Shape shape : leaves) {
+                layer.addStored(shape);
+            }
+            model.add(layer, nest);
+        } else {
+            model.addAll(leaves, nest);
+        }
+    }
+
+    private static int speed(Random random) {
+        return random.nextInt(13) - 6;
+    }
+
+    /*
+     * Creates the Shape described by one line of a scene description.
+     */
+    private static Shape parse(String line, int lineNumber) {
+        String[] fields = line.split("\\s+", 8);
+        if (fields.length < 7) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": expected a class name and six numbers");
+        }
+
+        try {
+            Class<?> cls = Class.forName(fields[0]);
+            Object[] arguments = new Object[fields.length == 8 ? 7 : 6];
+            Class<?>[] types = new Class<?>[arguments.length];
+            for (int i = 0; i < 6; i++) {
+                arguments[i] = Integer.parseInt(fields[i + 1]);
+                types[i] = int.class;
+            }
+            if (fields.length == 8) {
+                arguments[6] = fields[7];
+                types[6] = String.class;
+            }
+
+            Constructor<?> constructor = cls.getConstructor(types);
+            return (Shape) constructor.newInstance(arguments);
+        } catch (ReflectiveOperationException | ClassCastException | NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e, e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package bounce.bounceApp;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Fixed-timestep simulation loop that progresses a ShapeModel on a dedicated
+ * thread, independently of the Swing event dispatch thread. Steps are
+ * scheduled against absolute deadlines, so a late step does not push later
+ * steps back: the loop performs a few extra steps to catch up, and only when
+ * it falls too far behind does it drop the missed steps.
+ *
+ * While running, the loop asks its ShapeModel to record the previous position
+ * of each Shape, and tells it when each step was due. Renderers use
+ * interpolation() with the snapshot they paint to paint between the last two
+ * steps recorded in it, so the animation stays smooth whatever rate it is
+ * painted at.
+ */
+public class SimulationLoop implements Runnable {
+    // Maximum number of steps performed back-to-back when catching up.
+    static final int MAX_CATCH_UP_STEPS = 5;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    // Model to progress.
+    private final ShapeModel model;
+
+    // Duration of one step in nanoseconds.
+    private final long period;
+
+    // Source of the current time, in System.nanoTime() terms.
+    private final LongSupplier time;
+
+    // Thread running the loop, null when stopped.
+    private Thread thread;
+
+    private volatile boolean running;
+
+    // Time at which the next step is due.
+    private long next;
+
+    /**
+     * Creates a SimulationLoop that calls clock() on model tickRate times per
+     * second.
+     */
+    public SimulationLoop(ShapeModel model, int tickRate) {
+        this(model, tickRate, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return System.nanoTime();
+            }
+        });
+    }
+
+    /*
+     * Creates a SimulationLoop that reads the current time from time.
+     */
+    SimulationLoop(ShapeModel model, int tickRate, LongSupplier time) {
+        this.model = model;
+        this.time = time;
+        period = NANOS_PER_SECOND / tickRate;
+    }
+
+    /**
+     * Starts the simulation thread. Has no effect if already started.
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            reset();
+            running = true;
+
+            thread = new Thread(this, "Bounce simulation");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the simulation thread, waiting for any step in progress to
+     * complete.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (thread != null) {
+            running = false;
+            thread.interrupt();
+            thread.join();
+            thread = null;
+        }
+    }
+
+    /**
+     * Returns how far the current time lies between the last two steps
+     * recorded in snapshot, from 0.0 (the previous step) to 1.0 (the most
+     * recent step).
+     */
+    public double interpolation(ShapeModelSnapshot snapshot) {
+        double interpolation = (double) (time.getAsLong() - snapshot.stepTime()) / period;
+        return Math.max(0.0, Math.min(1.0, interpolation));
+    }
+
+    /**
+     * Runs the loop until stop() is called.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            long now = time.getAsLong();
+            if (now - next < 0) {
+                LockSupport.parkNanos(next - now);
+            } else {
+                step(now);
+            }
+        }
+    }
+
+    /*
+     * Has the model record positions for interpolation, and schedules the
+     * first step one period from now.
+     */
+    void reset() {
+        model.setInterpolated(true);
+        next = time.getAsLong() + period;
+    }
+
+    /*
+     * Performs the steps due by now, at most MAX_CATCH_UP_STEPS of them,
+     * dropping any that remain. Returns the number of steps performed.
+     */
+    int step(long now) {
+        int steps = 0;
+        while (now - next >= 0 && steps < MAX_CATCH_UP_STEPS) {
+            model.clock(next);
+            next += period;
+            steps++;
+        }
+
+        if (now - next >= 0) {
+            // Too far behind to catch up; drop the missed steps.
+            next = now + period;
+        }
+        return steps;
+    }
+}
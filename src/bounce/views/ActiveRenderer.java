@@ -0,0 +1,247 @@
+package bounce.views;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToDoubleFunction;
+
+import bounce.GraphicsPainter;
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Renders frames of a ShapeModel into a Canvas on a thread of its own, at a
+ * fixed rate, rather than waiting for Swing to schedule and coalesce
+ * repaints. Each frame is painted into a back buffer of the Canvas's
+ * BufferStrategy, held in video memory as a VolatileImage, and then shown by
+ * flipping pages or, where page flipping is unavailable, by blitting the back
+ * buffer. A frame whose buffers lose their contents while it is painted, for
+ * instance because the display mode changed, is painted again.
+ *
+ * Active rendering needs a display and accelerated buffers; start() returns
+ * false when they are unavailable, so that the caller can fall back to
+ * painting through Swing.
+ */
+public class ActiveRenderer implements Runnable {
+    // Number of buffers, including the one being shown.
+    private static final int BUFFERS = 2;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final ImageCapabilities ACCELERATED = new ImageCapabilities(true);
+
+    private final Canvas canvas;
+
+    // Duration of one frame in nanoseconds.
+    private final long period;
+
+    // Model being rendered, null if none.
+    private volatile ShapeModel model;
+
+    // Interpolation value at which to render each snapshot, null when
+    // rendering the current step.
+    private volatile ToDoubleFunction<ShapeModelSnapshot> interpolation;
+
+    // Level of detail flags (see Painter.levelOfDetail()).
+    private volatile int levelOfDetail;
+
+    // Renderer painting frames in parallel tiles, null to paint directly
+    // into the back buffer.
+    private volatile TileRenderer tiles;
+
+    private BufferStrategy strategy;
+
+    // Thread running the loop, null when stopped.
+    private Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * Creates an ActiveRenderer that renders into canvas frameRate times per
+     * second.
+     */
+    public ActiveRenderer(Canvas canvas, int frameRate) {
+        this.canvas = canvas;
+        period = NANOS_PER_SECOND / frameRate;
+    }
+
+    /**
+     * Returns true if the JVM has a display on which images can be
+     * accelerated using gc, as active rendering requires.
+     */
+    public static boolean isSupported(GraphicsConfiguration gc) {
+        return !GraphicsEnvironment.isHeadless() && gc != null && gc.getImageCapabilities().isAccelerated();
+    }
+
+    /**
+     * Sets the model to render, or null to render an empty frame.
+     */
+    public void setModel(ShapeModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Sets the function giving the interpolation value (see
+     * Painter.interpolation()) at which each snapshot is rendered, or null
+     * to render the current step.
+     */
+    public void setInterpolation(ToDoubleFunction<ShapeModelSnapshot> interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    /**
+     * Sets the level of detail shapes are rendered at (see
+     * Painter.levelOfDetail()).
+     */
+    public void setLevelOfDetail(int levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+    }
+
+    /**
+     * Sets a TileRenderer to render each frame in parallel tiles, which is
+     * then drawn into the back buffer, or null to paint into the back buffer
+     * directly.
+     */
+    public void setTileRenderer(TileRenderer tiles) {
+        this.tiles = tiles;
+    }
+
+    /**
+     * Creates the Canvas's BufferStrategy and starts the rendering thread.
+     * Returns false, leaving the Canvas as it was, if the Canvas is not
+     * displayable or accelerated buffers cannot be created for it. Has no
+     * effect if already started.
+     */
+    public synchronized boolean start() {
+        if (thread == null) {
+            if (!canvas.isDisplayable() || !isSupported(canvas.getGraphicsConfiguration())) {
+                return false;
+            }
+            try {
+                canvas.createBufferStrategy(BUFFERS, new BufferCapabilities(ACCELERATED, ACCELERATED,
+                        BufferCapabilities.FlipContents.UNDEFINED));
+            } catch (AWTException e) {
+                // Page flipping is unavailable; blit an accelerated back buffer.
+                try {
+                    canvas.createBufferStrategy(BUFFERS, new BufferCapabilities(ACCELERATED, ACCELERATED, null));
+                } catch (AWTException notAccelerated) {
+                    return false;
+                }
+            }
+            strategy = canvas.getBufferStrategy();
+            running = true;
+
+            thread = new Thread(this, "Bounce rendering");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    /**
+     * Stops the rendering thread, waiting for any frame in progress to be
+     * shown, and releases the Canvas's buffers.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (thread != null) {
+            running = false;
+            thread.interrupt();
+            thread.join();
+            thread = null;
+            strategy.dispose();
+            strategy = null;
+        }
+    }
+
+    /**
+     * Runs the loop until stop() is called. Frames that are due while a
+     * frame is still being rendered are dropped.
+     */
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+
+        while (running) {
+            long now = System.nanoTime();
+            if (now - next < 0) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+
+            try {
+                renderFrame();
+            } catch (IllegalStateException e) {
+                // The Canvas is no longer displayable.
+                running = false;
+            }
+
+            next += period;
+            if (now - next >= 0) {
+                next = now + period;
+            }
+        }
+    }
+
+    /*
+     * Renders a frame of the latest snapshot of the model and shows it,
+     * painting it again for as long as the buffers lose their contents.
+     */
+    private void renderFrame() {
+        ShapeModel model = this.model;
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        ShapeModelSnapshot snapshot = model == null ? null : model.acquireSnapshot();
+        try {
+            do {
+                do {
+                    Graphics g = strategy.getDrawGraphics();
+                    try {
+                        paint(g, snapshot, width, height);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+        } finally {
+            if (snapshot != null) {
+                snapshot.release();
+            }
+        }
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /*
+     * Paints a frame width by height pixels in size of snapshot, which may
+     * be null, using g.
+     */
+    void paint(Graphics g, ShapeModelSnapshot snapshot, int width, int height) {
+        ToDoubleFunction<ShapeModelSnapshot> source = this.interpolation;
+        double interpolation = source == null || snapshot == null ? 1.0 : source.applyAsDouble(snapshot);
+        TileRenderer tiles = this.tiles;
+
+        if (snapshot != null && tiles != null) {
+            g.drawImage(tiles.render(snapshot, width, height, canvas.getBackground(), canvas.getForeground(),
+                    interpolation, levelOfDetail), 0, 0, null);
+            return;
+        }
+
+        g.setColor(canvas.getBackground());
+        g.fillRect(0, 0, width, height);
+        if (snapshot != null) {
+            g.setColor(canvas.getForeground());
+            snapshot.paint(new GraphicsPainter(g, interpolation, levelOfDetail));
+        }
+    }
+}
@@ -1,9 +1,22 @@
 package bounce.views;
 
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.LayoutManager;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import bounce.*;
 
@@ -15,21 +28,278 @@ import bounce.*;
  * animation, removing a deleted shape from the animation, or updating the
  * positions of shapes that have moved.
  *
+ * Rather than repainting the whole view on every change, an AnimationView
+ * remembers the area painted at each node of the last ShapeModelSnapshot it
+ * saw, and on each step compares the model's new snapshot with it, node by
+ * node, repainting only the areas that shapes have left or entered. Changed
+ * areas are tracked as events arrive, so every step is accounted for even
+ * when the event dispatch thread falls behind.
+ *
+ * Alternatively, an AnimationView can render itself actively (see
+ * startActiveRendering()), in which case a Canvas filling the view is
+ * rendered on a thread of its own and Swing no longer paints the shapes.
+ *
  * @author Ian Warren
  */
 public class AnimationView extends JPanel implements ShapeModelListener {
 
-    // Reference to root NestingShape.
-    private NestingShape root;
+    // Damaged areas above which they are merged into a single area.
+    private static final int MAX_DAMAGED_AREAS = 64;
+
+    // Model being displayed.
+    private volatile ShapeModel model;
+
+    // Interpolation value at which to paint each snapshot, null when
+    // painting the current step.
+    private volatile ToDoubleFunction<ShapeModelSnapshot> interpolation;
+
+    // Level of detail flags (see Painter.levelOfDetail()).
+    private volatile int levelOfDetail;
+
+    // Renderer painting frames off the event dispatch thread, null when
+    // painting on it.
+    private volatile TileRenderer renderer;
+
+    // Renderer rendering frames into a Canvas filling this view, null when
+    // the view is painted through Swing.
+    private volatile ActiveRenderer activeRenderer;
+
+    // Canvas rendered into by activeRenderer, and the layout it replaced.
+    private Canvas canvas;
+    private LayoutManager passiveLayout;
+
+    // World-space area painted at each node of the snapshot last tracked.
+    // Guards itself and the damaged areas below.
+    private final PaintedAreas painted;
+
+    // Areas changed by the steps since repaintChanges() was last called.
+    private List<Rectangle> damage;
+
+    // Areas repainted by the last call to repaintChanges(), which are
+    // repainted again by the next since shapes are painted up to a step
+    // behind when interpolating.
+    private List<Rectangle> repainted;
 
     /**
      * Creates an AnimationView object with specified bounds.
      */
     public AnimationView(Dimension bounds) {
-        root = null;
+        model = null;
+        interpolation = null;
+        levelOfDetail = Painter.REDUCED_DETAIL;
+        painted = new PaintedAreas();
+        damage = new ArrayList<>();
+        repainted = new ArrayList<>();
         setSize(bounds.width, bounds.height);
     }
 
+    /**
+     * Sets the function giving the interpolation value (see
+     * Painter.interpolation()) at which each snapshot is painted, such as
+     * SimulationLoop.interpolation(ShapeModelSnapshot). Once set, the
+     * view is assumed to be repainted at a fixed rate through
+     * repaintChanges(), and no longer repaints itself in response to
+     * ShapeMoved events.
+     */
+    public void setInterpolation(ToDoubleFunction<ShapeModelSnapshot> interpolation) {
+        this.interpolation = interpolation;
+        ActiveRenderer activeRenderer = this.activeRenderer;
+        if (activeRenderer != null) {
+            activeRenderer.setInterpolation(interpolation);
+        }
+    }
+
+    /**
+     * Sets the level of detail shapes are painted at, as a combination of
+     * the flags defined by Painter. By default tiny shapes, small text and
+     * crowds of shapes are painted in reduced detail; 0 paints everything
+     * in full.
+     */
+    public void setLevelOfDetail(int levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+        ActiveRenderer activeRenderer = this.activeRenderer;
+        if (activeRenderer != null) {
+            activeRenderer.setLevelOfDetail(levelOfDetail);
+        }
+        repaint();
+    }
+
+    /**
+     * Sets a TileRenderer to render frames with, off the event dispatch
+     * thread, or null to paint shapes on it. While rendering off the event
+     * dispatch thread, whole frames are rendered rather than the areas
+     * changed by each step, and painting the view draws the most recently
+     * rendered frame.
+     */
+    public void setTileRenderer(TileRenderer renderer) {
+        this.renderer = renderer;
+        ActiveRenderer activeRenderer = this.activeRenderer;
+        if (activeRenderer != null) {
+            activeRenderer.setTileRenderer(renderer);
+        } else if (renderer != null) {
+            renderFrame();
+        } else {
+            // Track changed areas afresh from the next event.
+            synchronized (painted) {
+                painted.clear();
+            }
+            repaint();
+        }
+    }
+
+    /**
+     * Repaints the areas changed by the steps since this was last called.
+     * When interpolating, shapes are painted between their previous and
+     * current positions, so this should be called for each frame.
+     */
+    public void repaintChanges() {
+        if (activeRenderer != null) {
+            // Frames are rendered at the active renderer's own rate.
+            return;
+        }
+        if (renderer != null) {
+            renderFrame();
+            return;
+        }
+
+        // Catch up with shapes added or removed since, so that the next step
+        // is not taken for a change to every node that has been renumbered.
+        // The snapshot is acquired first, as acquiring it may lock the model.
+        ShapeModel model = this.model;
+        ShapeModelSnapshot snapshot = null;
+        if (model != null && painted.structureChanged) {
+            snapshot = model.acquireSnapshot();
+        }
+        try {
+            synchronized (painted) {
+                if (snapshot != null && painted.structureChanged && snapshot.version() > painted.version) {
+                    // The areas of the shapes added and removed have been
+                    // damaged already.
+                    track(snapshot, damage, false);
+                }
+                repaint(repainted);
+                repaint(damage);
+                List<Rectangle> areas = repainted;
+                areas.clear();
+                repainted = damage;
+                damage = areas;
+            }
+        } finally {
+            if (snapshot != null) {
+                snapshot.release();
+            }
+        }
+    }
+
+    /**
+     * Starts rendering this view actively, frameRate times per second, into
+     * a Canvas filling the view (see ActiveRenderer). Frames are then shown
+     * as soon as they are rendered, rather than when Swing gets round to
+     * repainting the view, and repaintChanges() has no effect. Mouse events
+     * on the Canvas are delivered as events on this view.
+     *
+     * Returns false, leaving the view painted through Swing, if the JVM is
+     * headless, the view is not displayable, or accelerated buffers are
+     * unavailable. Should be called on the event dispatch thread once the
+     * view has been displayed.
+     */
+    public boolean startActiveRendering(int frameRate) {
+        if (activeRenderer != null) {
+            return true;
+        }
+        if (!isDisplayable() || !ActiveRenderer.isSupported(getGraphicsConfiguration())) {
+            return false;
+        }
+
+        canvas = new Canvas();
+        canvas.setBackground(getBackground());
+        canvas.setForeground(getForeground());
+        canvas.setIgnoreRepaint(true);
+        MouseAdapter forwarder = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                forward(e);
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                forward(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                forward(e);
+            }
+        };
+        canvas.addMouseListener(forwarder);
+        passiveLayout = getLayout();
+        setLayout(new BorderLayout());
+        add(canvas, BorderLayout.CENTER);
+        validate();
+
+        ActiveRenderer activeRenderer = new ActiveRenderer(canvas, frameRate);
+        activeRenderer.setModel(model);
+        activeRenderer.setInterpolation(interpolation);
+        activeRenderer.setLevelOfDetail(levelOfDetail);
+        activeRenderer.setTileRenderer(renderer);
+        if (!activeRenderer.start()) {
+            removeCanvas();
+            return false;
+        }
+        this.activeRenderer = activeRenderer;
+        return true;
+    }
+
+    /**
+     * Stops rendering this view actively, waiting for the frame in progress
+     * to be shown, and has Swing paint it again. Has no effect if the view
+     * is not being rendered actively.
+     */
+    public void stopActiveRendering() throws InterruptedException {
+        ActiveRenderer activeRenderer = this.activeRenderer;
+        if (activeRenderer == null) {
+            return;
+        }
+        activeRenderer.stop();
+        this.activeRenderer = null;
+        removeCanvas();
+        setTileRenderer(renderer);
+    }
+
+    private void removeCanvas() {
+        remove(canvas);
+        setLayout(passiveLayout);
+        canvas = null;
+        passiveLayout = null;
+        revalidate();
+        repaint();
+    }
+
+    /*
+     * Delivers a mouse event on the Canvas as an event on this view.
+     */
+    private void forward(MouseEvent e) {
+        dispatchEvent(SwingUtilities.convertMouseEvent(canvas, e, this));
+    }
+
+    /*
+     * Has the TileRenderer, if any, render a frame of the model and then
+     * repaint this view.
+     */
+    private void renderFrame() {
+        TileRenderer renderer = this.renderer;
+        ShapeModel model = this.model;
+        if (renderer != null && model != null) {
+            renderer.renderLater(model, getWidth(), getHeight(), getBackground(), getForeground(),
+                    interpolation, levelOfDetail, new Runnable() {
+                        @Override
+                        public void run() {
+                            repaint();
+                        }
+                    });
+        }
+    }
+
     /**
      * Implements custom painting to display the animation.
      */
@@ -37,15 +307,30 @@ public class AnimationView extends JPanel implements ShapeModelListener {
         // Call inherited implementation to handle background painting.
         super.paintComponent(g);
 
-        // Create a GraphicsPainter to paint the Swing component.
-        Painter painter = new GraphicsPainter(g);
+        ShapeModel model = this.model;
+        ToDoubleFunction<ShapeModelSnapshot> interpolation = this.interpolation;
+
+        TileRenderer renderer = this.renderer;
+        if (renderer != null) {
+            renderer.drawFrame(g);
+            return;
+        }
 
         /*
          * Paint the shapes, starting with the root and recursively work
-         * through the composition structure.
+         * through the composition structure. Paint from a snapshot so that
+         * a simulation thread can move shapes on mid-paint.
          */
-        if (root != null) {
-            root.paint(painter);
+        if (model != null) {
+            ShapeModelSnapshot snapshot = model.acquireSnapshot();
+            try {
+                // Create a GraphicsPainter to paint the Swing component.
+                Painter painter = new GraphicsPainter(g,
+                        interpolation == null ? 1.0 : interpolation.applyAsDouble(snapshot), levelOfDetail);
+                snapshot.paint(painter);
+            } finally {
+                snapshot.release();
+            }
         }
     }
 
@@ -54,8 +339,318 @@ public class AnimationView extends JPanel implements ShapeModelListener {
      * that made the update() call.
      */
     public void update(ShapeModelEvent event) {
-        root = event.source().root();
-        repaint();
+        ShapeModel source = event.source();
+
+        ActiveRenderer activeRenderer = this.activeRenderer;
+        if (activeRenderer != null) {
+            // The active renderer renders whole frames of its own accord.
+            model = source;
+            synchronized (painted) {
+                painted.clear();
+            }
+            activeRenderer.setModel(source);
+            return;
+        }
+
+        if (renderer != null) {
+            // Whole frames are rendered, so changed areas are not tracked.
+            model = source;
+            synchronized (painted) {
+                painted.clear();
+            }
+            if (interpolation == null || event.eventType() != ShapeModelEvent.EventType.ShapeMoved) {
+                renderFrame();
+            }
+            return;
+        }
+
+        // Steps are tracked from the snapshot published by each one. It is
+        // acquired before locking painted, as acquiring it may lock the model.
+        ShapeModelSnapshot snapshot = null;
+        if (event.eventType() == ShapeModelEvent.EventType.ShapeMoved || source != model) {
+            snapshot = source.acquireSnapshot();
+        }
+        try {
+            synchronized (painted) {
+                if (source != model || painted.size == 0) {
+                    // Start afresh, with a new model or after whole frames
+                    // were rendered.
+                    model = source;
+                    painted.clear();
+                    if (snapshot != null) {
+                        track(snapshot, null, false);
+                    }
+                    repaint();
+                    return;
+                }
+
+                List<Rectangle> changes = new ArrayList<>();
+                switch (event.eventType()) {
+                    case ShapeAdded:
+                    case ShapesAdded:
+                    case ShapeRemoved:
+                    case ShapesRemoved:
+                        Point offset = offsetOf(event.parent());
+                        for (Shape shape : event.operands()) {
+                            damageAreas(shape, offset.x, offset.y, changes);
+                        }
+                        painted.structureChanged = true;
+                        repaint(changes);
+                        if (interpolation != null) {
+                            damage(damage, changes);
+                        }
+                        break;
+                    case ShapeMoved:
+                        if (snapshot.version() <= painted.version) {
+                            // Already tracked, from a later event's snapshot.
+                            break;
+                        }
+                        if (interpolation == null) {
+                            track(snapshot, changes, true);
+                            repaint(changes);
+                        } else {
+                            // Repainted for the next frame.
+                            track(snapshot, damage, true);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            if (snapshot != null) {
+                snapshot.release();
+            }
+        }
+    }
+
+    /*
+     * Adds a copy of area to areas, or once there are MAX_DAMAGED_AREAS of
+     * them, adds area to the last so as to repaint their union. Returns the
+     * Rectangle area was added to.
+     */
+    private static Rectangle damage(List<Rectangle> areas, Rectangle area) {
+        if (areas.size() < MAX_DAMAGED_AREAS) {
+            Rectangle copy = new Rectangle(area);
+            areas.add(copy);
+            return copy;
+        }
+        Rectangle union = areas.get(areas.size() - 1);
+        union.add(area);
+        return union;
+    }
+
+    private static void damage(List<Rectangle> areas, List<Rectangle> changes) {
+        for (Rectangle area : changes) {
+            damage(areas, area);
+        }
+    }
+
+    private void repaint(List<Rectangle> areas) {
+        for (Rectangle area : areas) {
+            repaint(area);
+        }
+    }
+
+    /*
+     * Records the area painted at each node of snapshot, adding the old and
+     * new areas of each node whose area has changed since the snapshot last
+     * tracked to changes, unless changes is null. Nodes at which another
+     * shape is now painted, and nodes no longer in the snapshot, count as
+     * changed only if renumbered is true, since the shapes added or removed
+     * since may have renumbered every node after them. Must be called with
+     * painted locked.
+     */
+    private void track(ShapeModelSnapshot snapshot, List<Rectangle> changes, boolean renumbered) {
+        PaintedAreas areas = painted;
+        int size = snapshot.size();
+        areas.ensureCapacity(size);
+        Rectangle area = areas.area;
+
+        for (int node = 0; node < size; node++) {
+            Shape shape = snapshot.shape(node);
+            int x = areas.offsetX[node] + snapshot.x(node);
+            int y = areas.offsetY[node] + snapshot.y(node);
+            int width = snapshot.width(node);
+
+            if (node < areas.size && areas.shapes[node] == shape) {
+                // The margin for any text is fixed when the shape is first
+                // tracked at a node.
+                int margin = (areas.width[node] - width - 1) / 2;
+                if (areas.x[node] != x - margin || areas.y[node] != y - margin) {
+                    areas.get(node, area);
+                    Rectangle change = changes == null ? null : damage(changes, area);
+                    areas.x[node] = x - margin;
+                    areas.y[node] = y - margin;
+                    if (change != null) {
+                        areas.get(node, area);
+                        change.add(area);
+                    }
+                }
+            } else {
+                if (node < areas.size && changes != null && renumbered) {
+                    areas.get(node, area);
+                    damage(changes, area);
+                }
+                int margin = margin(shape);
+                areas.shapes[node] = shape;
+                areas.x[node] = x - margin;
+                areas.y[node] = y - margin;
+                areas.width[node] = width + 2 * margin + 1;
+                areas.height[node] = snapshot.height(node) + 2 * margin + 1;
+                if (changes != null && renumbered) {
+                    areas.get(node, area);
+                    damage(changes, area);
+                }
+            }
+
+            int childCount = snapshot.childCount(node);
+            if (childCount > 0) {
+                int first = snapshot.child(node, 0);
+                for (int child = first; child < first + childCount; child++) {
+                    areas.offsetX[child] = x;
+                    areas.offsetY[child] = y;
+                }
+            } else if (shape instanceof OffHeapNestingShape && changes != null) {
+                // Shapes held off the heap move without being tracked.
+                area.setBounds(x, y, width, snapshot.height(node));
+                damage(changes, area);
+            }
+        }
+
+        // Areas of nodes the snapshot no longer has are painted over.
+        for (int node = size; node < areas.size; node++) {
+            if (changes != null && renumbered) {
+                areas.get(node, area);
+                damage(changes, area);
+            }
+            areas.shapes[node] = null;
+        }
+        areas.size = size;
+        areas.version = snapshot.version();
+        areas.structureChanged = false;
+    }
+
+    /*
+     * Adds the areas painted by shape, and any shapes nested within it, to
+     * changes. Parameters offsetX and offsetY give the world-space position
+     * of shape's parent.
+     */
+    private void damageAreas(Shape shape, int offsetX, int offsetY, List<Rectangle> changes) {
+        int x = offsetX + shape.x();
+        int y = offsetY + shape.y();
+        damage(changes, areaOf(shape, x, y));
+
+        if (shape instanceof NestingShape && !isPagedOut(shape)) {
+            NestingShape nest = (NestingShape) shape;
+            for (int i = 0; i < nest.shapeCount(); i++) {
+                damageAreas(nest.shapeAt(i), x, y, changes);
+            }
+        }
+    }
+
+    /*
+     * Returns true if shape is a PagedNestingShape whose children are not
+     * loaded, and so are not walked.
+     */
+    private static boolean isPagedOut(Shape shape) {
+        return shape instanceof PagedNestingShape && !((PagedNestingShape) shape).isLoaded();
     }
 
+    /*
+     * Returns the area painted by shape at world-space position (x, y),
+     * including its outline and any text, which may overhang the shape.
+     */
+    private Rectangle areaOf(Shape shape, int x, int y) {
+        int margin = margin(shape);
+        return new Rectangle(x - margin, y - margin, shape.width() + 2 * margin + 1,
+                shape.height() + 2 * margin + 1);
+    }
+
+    private int margin(Shape shape) {
+        String text = shape.text();
+        if (text == null) {
+            return 0;
+        }
+        FontMetrics metrics = getFontMetrics(getFont());
+        int textWidth = metrics.stringWidth(text);
+        int textHeight = metrics.getHeight();
+        return Math.max(0, Math.max(textWidth - shape.width(), textHeight - shape.height()) / 2 + 1);
+    }
+
+    /*
+     * Returns the world-space position of nest.
+     */
+    private static Point offsetOf(NestingShape nest) {
+        Point offset = new Point(0, 0);
+        for (Shape shape = nest; shape != null; shape = shape.parent()) {
+            offset.translate(shape.x(), shape.y());
+        }
+        return offset;
+    }
+
+    /*
+     * World-space areas painted at the nodes of the ShapeModelSnapshot last
+     * tracked, and the shapes painted there.
+     */
+    private static final class PaintedAreas {
+        Shape[] shapes = new Shape[0];
+
+        int[] x = new int[0];
+
+        int[] y = new int[0];
+
+        int[] width = new int[0];
+
+        int[] height = new int[0];
+
+        // World-space position of each node's parent, worked out as nodes
+        // are tracked.
+        int[] offsetX = new int[0];
+
+        int[] offsetY = new int[0];
+
+        // Number of nodes tracked, 0 when changes are not being tracked.
+        int size;
+
+        // Version of the snapshot tracked.
+        long version = -1;
+
+        // Whether shapes have been added or removed since the snapshot
+        // tracked, so that nodes may have been renumbered.
+        volatile boolean structureChanged;
+
+        // Area to reuse while tracking.
+        final Rectangle area = new Rectangle();
+
+        /*
+         * Stops tracking, letting go of the shapes tracked.
+         */
+        void clear() {
+            Arrays.fill(shapes, 0, size, null);
+            size = 0;
+            version = -1;
+            structureChanged = false;
+        }
+
+        /*
+         * Copies the area painted at the specified node into area.
+         */
+        void get(int node, Rectangle area) {
+            area.setBounds(x[node], y[node], width[node], height[node]);
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > shapes.length) {
+                capacity = Math.max(capacity, shapes.length * 2);
+                shapes = Arrays.copyOf(shapes, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                width = Arrays.copyOf(width, capacity);
+                height = Arrays.copyOf(height, capacity);
+                offsetX = Arrays.copyOf(offsetX, capacity);
+                offsetY = Arrays.copyOf(offsetY, capacity);
+            }
+        }
+    }
 }
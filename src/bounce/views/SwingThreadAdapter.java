@@ -0,0 +1,62 @@
+package bounce.views;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import bounce.ShapeModelEvent;
+import bounce.ShapeModelListener;
+
+/**
+ * Adapter that delivers ShapeModelEvents to a ShapeModelListener on the Swing
+ * event dispatch thread. Swing models such as Task2 and TableModelAdapter must
+ * only notify their views on the event dispatch thread, whereas a ShapeModel
+ * notifies its listeners on whichever thread changed it.
+ *
+ * Events fired on the event dispatch thread are delivered immediately; other
+ * events are queued in order. ShapeMoved events that arrive while an earlier
+ * ShapeMoved event is still waiting to be delivered are coalesced, so a slow
+ * event dispatch thread is never flooded with movement updates.
+ */
+public class SwingThreadAdapter implements ShapeModelListener {
+
+    // Listener to deliver events to.
+    private final ShapeModelListener listener;
+
+    // Most recent ShapeMoved event not yet delivered, if any.
+    private final AtomicReference<ShapeModelEvent> pendingMove;
+
+    /**
+     * Creates a SwingThreadAdapter that delivers events to listener.
+     */
+    public SwingThreadAdapter(ShapeModelListener listener) {
+        this.listener = listener;
+        pendingMove = new AtomicReference<>();
+    }
+
+    /**
+     * see bounce.ShapeModelListener.update
+     */
+    @Override
+    public void update(final ShapeModelEvent event) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            listener.update(event);
+        } else if (event.eventType() == ShapeModelEvent.EventType.ShapeMoved) {
+            if (pendingMove.getAndSet(event) == null) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.update(pendingMove.getAndSet(null));
+                    }
+                });
+            }
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    listener.update(event);
+                }
+            });
+        }
+    }
+}
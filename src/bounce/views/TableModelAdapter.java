@@ -1,11 +1,14 @@
 package bounce.views;
 
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 import bounce.NestingShape;
 import bounce.Shape;
+import bounce.ShapeModel;
 import bounce.ShapeModelEvent;
 import bounce.ShapeModelListener;
+import bounce.ShapeModelSnapshot;
 
 /**
  * Adapter class that adapts Shape/NestingShape to the TableModel target
@@ -14,6 +17,13 @@ import bounce.ShapeModelListener;
  * TableModel interface from scratch this class extends AbstractTableModel and
  * simply overrides selected methods as necessary.
  *
+ * When created with the ShapeModel holding the adaptee, a TableModelAdapter
+ * reads positions from the model's snapshots, so a JTable can display shapes
+ * that are being moved by another thread. All the cells read while the event
+ * dispatch thread handles one event, such as a paint, are read from the same
+ * snapshot, so such an adapter should only be read on the event dispatch
+ * thread.
+ *
  * @author Ian Warren
  */
 @SuppressWarnings("serial")
@@ -24,6 +34,18 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
      */
     private Shape adaptee;
 
+    // ShapeModel whose snapshots are read, if any.
+    private final ShapeModel model;
+
+    // Snapshot read while the event dispatch thread handles the current
+    // event, null if none has been acquired.
+    private ShapeModelSnapshot snapshot;
+
+    // Node of the adaptee within the snapshot with version snapshotVersion.
+    private long snapshotVersion = -1;
+
+    private int adapteeNode;
+
     // Column names for table.
     private static final String[] COLUMN_NAMES = {"Type", "X-pos", "Y-pos", "X-delta", "Y-delta", "Width", "Height", "Text"};
 
@@ -32,7 +54,16 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
      * represented by this TableModelAdapter.
      */
     public TableModelAdapter(Shape shape) {
+        this(shape, null);
+    }
+
+    /**
+     * Creates a TableModelAdapter that represents a Shape/NestingShape held
+     * in the specified ShapeModel, reading it from the model's snapshots.
+     */
+    public TableModelAdapter(Shape shape, ShapeModel model) {
         adaptee = shape;
+        this.model = model;
     }
 
     /**
@@ -65,6 +96,14 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
     public int getRowCount() {
         int rowCount = 1;
 
+        if (adaptee instanceof NestingShape && model != null) {
+            ShapeModelSnapshot snapshot = snapshot();
+            int node = adapteeNode(snapshot);
+            if (node >= 0) {
+                return snapshot.childCount(node);
+            }
+        }
+
         if (adaptee instanceof NestingShape) {
             NestingShape nestingShape = (NestingShape) adaptee;
             rowCount = nestingShape.shapeCount();
@@ -78,6 +117,17 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
      */
     @Override
     public Object getValueAt(int row, int col) {
+        if (model != null) {
+            ShapeModelSnapshot snapshot = snapshot();
+            int node = adapteeNode(snapshot);
+            if (node >= 0) {
+                if (adaptee instanceof NestingShape) {
+                    node = snapshot.child(node, row);
+                }
+                return getValueAt(snapshot, node, col);
+            }
+        }
+
         Shape targetShape = adaptee;
         Object result = null;
 
@@ -115,12 +165,84 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
         return result;
     }
 
+    /*
+     * Returns the value of a column for the shape at the specified node of
+     * snapshot.
+     */
+    private static Object getValueAt(ShapeModelSnapshot snapshot, int node, int col) {
+        Object result = null;
+
+        switch (col) {
+            case 0: // Type
+                result = snapshot.shape(node).toString();
+                break;
+            case 1: // X-Pos
+                result = snapshot.x(node);
+                break;
+            case 2: // Y-Pos.
+                result = snapshot.y(node);
+                break;
+            case 3: // X-delta.
+                result = snapshot.deltaX(node);
+                break;
+            case 4: // Y-delta.
+                result = snapshot.deltaY(node);
+                break;
+            case 5: // Width.
+                result = snapshot.width(node);
+                break;
+            case 6: // Height.
+                result = snapshot.height(node);
+                break;
+            case 7: // Text.
+                result = snapshot.shape(node).text();
+                break;
+        }
+        return result;
+    }
+
+    /*
+     * Returns the snapshot to read cells from, acquiring one if none has been
+     * since the current event began or since the model last changed. The
+     * snapshot is released once the current event has been handled.
+     */
+    private ShapeModelSnapshot snapshot() {
+        if (snapshot == null) {
+            final ShapeModelSnapshot acquired = model.acquireSnapshot();
+            snapshot = acquired;
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (snapshot == acquired) {
+                        snapshot = null;
+                    }
+                    acquired.release();
+                }
+            });
+        }
+        return snapshot;
+    }
+
+    /*
+     * Returns the node of the adaptee within snapshot, or -1 if it is not
+     * part of the snapshot. The node is remembered until a new snapshot is
+     * recorded.
+     */
+    private int adapteeNode(ShapeModelSnapshot snapshot) {
+        if (snapshot.version() != snapshotVersion) {
+            adapteeNode = snapshot.indexOf(adaptee);
+            snapshotVersion = snapshot.version();
+        }
+        return adapteeNode;
+    }
+
     /**
      * Sets the adaptee Shape/NestingShape object that should be represented by
      * this TableModelAdapter instance.
      */
     public void setAdaptee(Shape shape) {
         adaptee = shape;
+        snapshotVersion = -1;
 
         /*
          * Cause any TableModelListeners (e.g. a JTable component) to be
@@ -141,6 +263,9 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
         ShapeModelEvent.EventType eventType = event.eventType();
         Shape shape = event.operand();
 
+        // Read the change from a newer snapshot.
+        snapshot = null;
+
         if (eventType == ShapeModelEvent.EventType.ShapeAdded) {
             NestingShape parent = shape.parent();
             if (parent == adaptee) {
@@ -148,16 +273,22 @@ public class TableModelAdapter extends AbstractTableModel implements ShapeModelL
                 // so the view will need to be updated to show the new shape.
                 fireTableRowsInserted(parent.shapeCount() - 1, parent.shapeCount() - 1);
             }
-        } else if (eventType == ShapeModelEvent.EventType.ShapeRemoved) {
+        } else if (eventType == ShapeModelEvent.EventType.ShapesAdded) {
+            if (event.parent() == adaptee) {
+                // The new shapes were appended as one range of rows.
+                int first = event.index();
+                fireTableRowsInserted(first, first + event.operands().size() - 1);
+            }
+        } else if (eventType == ShapeModelEvent.EventType.ShapeRemoved
+                || eventType == ShapeModelEvent.EventType.ShapesRemoved) {
             NestingShape parent = event.parent();
             if (parent == adaptee) {
                 // The removed shape's former parent is represented by this
                 // TableModel. Notify the view so that it will no longer show
-                // removed shape.
+                // removed shapes.
                 fireTableDataChanged();
             }
-        } else {
-            // Processing a ShapeMoved event.
+        } else if (eventType == ShapeModelEvent.EventType.ShapeMoved) {
             fireTableDataChanged();
         }
     }
@@ -8,7 +8,13 @@ import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /*
  * TODO Complete this class to display a ShapeModel's shape composition on the JTree
@@ -18,9 +24,13 @@ public class Task1 implements TreeModel {
 
     protected List<TreeModelListener> _treeModelListenerList;
 
+    // TreePaths handed out by treePath(), by the Shape they lead to.
+    private Map<Shape, TreePath> _treePaths;
+
     public Task1(ShapeModel shapeModel) {
         this._adaptee = shapeModel;
         _treeModelListenerList = new ArrayList<>();
+        _treePaths = new IdentityHashMap<>();
 
     }
 
@@ -75,6 +85,73 @@ public class Task1 implements TreeModel {
         return -1;
     }
 
+    /**
+     * Returns the TreePath from the root to the specified shape. TreePaths
+     * are cached and extend their parent's TreePath, so a TreePath is only
+     * built again, in constant time, once the shape or one of its ancestors
+     * has been given a new parent.
+     *
+     * @param shape a node in the tree
+     * @return the path to shape
+     */
+    public TreePath treePath(Shape shape) {
+        NestingShape parent = shape.parent();
+        TreePath parentPath = parent == null ? null : treePath(parent);
+
+        TreePath path = _treePaths.get(shape);
+        if (path == null || path.getParentPath() != parentPath) {
+            path = parentPath == null ? new TreePath(shape) : parentPath.pathByAddingChild(shape);
+            _treePaths.put(shape, path);
+        }
+        return path;
+    }
+
+    /**
+     * Discards the cached TreePaths of a shape that has left the tree and of
+     * its descendants.
+     *
+     * @param shape the removed node
+     */
+    protected void forgetTreePath(Shape shape) {
+        forgetTreePaths(Collections.singletonList(shape));
+    }
+
+    /**
+     * Discards the cached TreePaths of shapes that have left the tree and of
+     * their descendants, in one pass over the cache.
+     *
+     * @param shapes the removed nodes
+     */
+    protected void forgetTreePaths(Collection<? extends Shape> shapes) {
+        // Descendants' paths are only cached along with the shape's own.
+        Set<Shape> forgotten = Collections.newSetFromMap(new IdentityHashMap<Shape, Boolean>());
+        for (Shape shape : shapes) {
+            if (_treePaths.remove(shape) != null) {
+                forgotten.add(shape);
+            }
+        }
+        if (forgotten.isEmpty()) {
+            return;
+        }
+
+        Iterator<TreePath> paths = _treePaths.values().iterator();
+        while (paths.hasNext()) {
+            for (TreePath path = paths.next().getParentPath(); path != null; path = path.getParentPath()) {
+                if (forgotten.contains(path.getLastPathComponent())) {
+                    paths.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the number of TreePaths cached.
+     */
+    int treePathCount() {
+        return _treePaths.size();
+    }
+
     /**
      * Adds a listener for the TreeModelEvent posted after the tree changes.
      *
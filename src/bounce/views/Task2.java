@@ -14,32 +14,40 @@ public class Task2 extends Task1 implements ShapeModelListener {
     }
 
     /**
-     * ShapeModelEvent:ShapeAdded, ShapeRemoved
-     * Task2 class need only generate TreeModel events that describe a single addition or removal of
-     * a Shape at a time.
-     * Hence, the childIndices and children arrays that form part of the state of a TreeModelEvent
-     * should always have a length of 1.
+     * ShapeModelEvent:ShapeAdded, ShapeRemoved, ShapesAdded, ShapesRemoved
+     * A single addition or removal is described by a TreeModel event whose childIndices and
+     * children arrays have a length of 1. A bulk addition or removal is described by one
+     * TreeModel event carrying every child that was added or removed, in index order.
      *
      * @param event describes the way in which a particular ShapeModel object
      *              has changed.
      */
     @Override
     public void update(ShapeModelEvent event) {
-        int[] childIndices = new int[1];
-        Object[] children = new Object[1];
-        childIndices[0] = event.index();
-        children[0] = event.operand();
+        ShapeModelEvent.EventType eventType = event.eventType();
+        boolean added = eventType == ShapeModelEvent.EventType.ShapeAdded
+                || eventType == ShapeModelEvent.EventType.ShapesAdded;
+        boolean removed = eventType == ShapeModelEvent.EventType.ShapeRemoved
+                || eventType == ShapeModelEvent.EventType.ShapesRemoved;
+        if (!added && !removed) {
+            return;
+        }
+
+        int[] childIndices = event.indices();
+        Object[] children = event.operands().toArray();
         ShapeModel shapeModel = event.source();
 
-        if (event.eventType() == ShapeModelEvent.EventType.ShapeAdded) {
+        if (added) {
             TreeModelEvent treeModelEvent = new TreeModelEvent(shapeModel,
-                    event.parent().path().toArray(), childIndices, children);
+                    treePath(event.parent()), childIndices, children);
             for (TreeModelListener l : this._treeModelListenerList)
                 l.treeNodesInserted(treeModelEvent);
 
-        } else if (event.eventType() == ShapeModelEvent.EventType.ShapeRemoved) {
+        } else {
+            forgetTreePaths(event.operands());
+
             TreeModelEvent treeModelEvent = new TreeModelEvent(shapeModel,
-                    event.parent() == null ? null : event.parent().path().toArray(), childIndices, children);
+                    event.parent() == null ? null : treePath(event.parent()), childIndices, children);
             for (TreeModelListener l : this._treeModelListenerList)
                 l.treeNodesRemoved(treeModelEvent);
 
@@ -0,0 +1,216 @@
+package bounce.views;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToDoubleFunction;
+
+import bounce.GraphicsPainter;
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Renders frames of a ShapeModel off the Swing event dispatch thread. The
+ * frame is split into square tiles that are painted in parallel, each into
+ * its own region of the frame image through its own GraphicsPainter. Each
+ * tile's clip keeps shapes outside of it from being painted, so the work
+ * spreads over the available cores. A finished frame is then drawn with a
+ * single drawImage() call.
+ *
+ * Two frame images are used in turn, so that one can be drawn while the
+ * next is being rendered.
+ */
+public class TileRenderer {
+    /**
+     * Default side of a tile, in pixels.
+     */
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    private final int tileSize;
+
+    private final ForkJoinPool pool;
+
+    // Frame images, used in turn.
+    private final BufferedImage[] frames = new BufferedImage[2];
+
+    // Most recently finished frame, null if none.
+    private volatile BufferedImage latest;
+
+    // Whether a frame is being rendered by renderLater().
+    private final AtomicBoolean rendering = new AtomicBoolean();
+
+    /**
+     * Creates a TileRenderer that renders tiles of DEFAULT_TILE_SIZE in the
+     * common ForkJoinPool.
+     */
+    public TileRenderer() {
+        this(DEFAULT_TILE_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a TileRenderer that renders tiles tileSize pixels square in
+     * pool.
+     *
+     * @throws IllegalArgumentException if tileSize is less than 1.
+     */
+    public TileRenderer(int tileSize, ForkJoinPool pool) throws IllegalArgumentException {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.tileSize = tileSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Renders snapshot into a frame width by height pixels in size, filled
+     * with background, and returns the frame. The frame is overwritten by the
+     * next call but one.
+     *
+     * @param background    colour to fill the frame with.
+     * @param foreground    colour to paint shapes in.
+     * @param interpolation 0.0 (previous position) .. 1.0 (current position).
+     * @param levelOfDetail level of detail flags (see bounce.Painter).
+     */
+    public BufferedImage render(ShapeModelSnapshot snapshot, int width, int height, Color background,
+                                Color foreground, double interpolation, int levelOfDetail) {
+        BufferedImage frame = nextFrame(width, height);
+        synchronized (frame) {
+            int columns = (width + tileSize - 1) / tileSize;
+            int rows = (height + tileSize - 1) / tileSize;
+            pool.invoke(new TileTask(frame, snapshot, background, foreground, interpolation, levelOfDetail,
+                    tileSize, columns, 0, columns * rows));
+        }
+        latest = frame;
+        return frame;
+    }
+
+    /**
+     * Renders the latest snapshot of model in the background as render()
+     * does, at the interpolation value interpolation gives for the
+     * snapshot, or 1.0 if interpolation is null, unless a frame is already
+     * being rendered. Runs done once the frame is finished. Returns false if
+     * the frame was skipped.
+     */
+    public boolean renderLater(final ShapeModel model, final int width, final int height, final Color background,
+                               final Color foreground, final ToDoubleFunction<ShapeModelSnapshot> interpolation,
+                               final int levelOfDetail, final Runnable done) {
+        if (width <= 0 || height <= 0 || !rendering.compareAndSet(false, true)) {
+            return false;
+        }
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ShapeModelSnapshot snapshot = model.acquireSnapshot();
+                    try {
+                        render(snapshot, width, height, background, foreground,
+                                interpolation == null ? 1.0 : interpolation.applyAsDouble(snapshot), levelOfDetail);
+                    } finally {
+                        snapshot.release();
+                    }
+                } finally {
+                    rendering.set(false);
+                }
+                done.run();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Draws the most recently finished frame at 0, 0 using g. Does nothing if
+     * no frame has been finished.
+     */
+    public void drawFrame(Graphics g) {
+        BufferedImage frame = latest;
+        if (frame != null) {
+            synchronized (frame) {
+                g.drawImage(frame, 0, 0, null);
+            }
+        }
+    }
+
+    /*
+     * Returns the frame image to render next, creating it if it does not
+     * exist or is the wrong size.
+     */
+    private synchronized BufferedImage nextFrame(int width, int height) {
+        int index = frames[0] == latest ? 1 : 0;
+        BufferedImage frame = frames[index];
+        if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+            frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            frames[index] = frame;
+        }
+        return frame;
+    }
+
+    /*
+     * Task that renders a range of tiles, numbered row by row. Ranges of
+     * more than one tile are split in two.
+     */
+    private static class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage frame;
+        private final ShapeModelSnapshot snapshot;
+        private final Color background;
+        private final Color foreground;
+        private final double interpolation;
+        private final int levelOfDetail;
+        private final int tileSize;
+        private final int columns;
+        private final int from;
+        private final int to;
+
+        TileTask(BufferedImage frame, ShapeModelSnapshot snapshot, Color background, Color foreground,
+                 double interpolation, int levelOfDetail, int tileSize, int columns, int from, int to) {
+            this.frame = frame;
+            this.snapshot = snapshot;
+            this.background = background;
+            this.foreground = foreground;
+            this.interpolation = interpolation;
+            this.levelOfDetail = levelOfDetail;
+            this.tileSize = tileSize;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(frame, snapshot, background, foreground, interpolation, levelOfDetail,
+                                tileSize, columns, from, middle),
+                        new TileTask(frame, snapshot, background, foreground, interpolation, levelOfDetail,
+                                tileSize, columns, middle, to));
+            } else if (to > from) {
+                paintTile(from % columns * tileSize, from / columns * tileSize);
+            }
+        }
+
+        /*
+         * Paints the tile whose top left corner is at x, y into its region
+         * of the frame.
+         */
+        private void paintTile(int x, int y) {
+            int width = Math.min(tileSize, frame.getWidth() - x);
+            int height = Math.min(tileSize, frame.getHeight() - y);
+
+            Graphics2D g = frame.getSubimage(x, y, width, height).createGraphics();
+            try {
+                g.setColor(background);
+                g.fillRect(0, 0, width, height);
+                g.setColor(foreground);
+                g.translate(-x, -y);
+                snapshot.paint(new GraphicsPainter(g, interpolation, levelOfDetail));
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+}
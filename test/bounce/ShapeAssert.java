@@ -0,0 +1,79 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+
+/**
+ * Fixtures and assertions shared by the test classes.
+ */
+public final class ShapeAssert {
+
+    /**
+     * Bounds of the ShapeModels that tests of loading and moving shapes
+     * compare.
+     */
+    public static final Dimension BOUNDS = new Dimension(500, 400);
+
+    private ShapeAssert() {
+    }
+
+    /**
+     * Clocks model the specified number of times.
+     */
+    public static void tick(ShapeModel model, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            model.clock();
+        }
+    }
+
+    /**
+     * Asserts that actual and the shapes nested within it have the same
+     * classes and state as expected and the shapes nested within it.
+     * PagedNestingShapes are taken for the NestingShapes they stand for, and
+     * are loaded by the comparison.
+     */
+    public static void assertSameState(Shape expected, Shape actual) {
+        assertSame(standIn(expected), standIn(actual));
+        assertEquals(expected.x(), actual.x());
+        assertEquals(expected.y(), actual.y());
+        assertEquals(expected.deltaX(), actual.deltaX());
+        assertEquals(expected.deltaY(), actual.deltaY());
+        assertEquals(expected.width(), actual.width());
+        assertEquals(expected.height(), actual.height());
+        assertEquals(expected.text(), actual.text());
+
+        if (expected instanceof DynamicRectangleShape) {
+            assertEquals(((DynamicRectangleShape) expected).filled, ((DynamicRectangleShape) actual).filled);
+            assertEquals(((DynamicRectangleShape) expected).color, ((DynamicRectangleShape) actual).color);
+        }
+        if (expected instanceof NestingShape) {
+            NestingShape expectedNest = (NestingShape) expected;
+            NestingShape actualNest = (NestingShape) actual;
+            assertEquals(expectedNest.collisionsEnabled(), actualNest.collisionsEnabled());
+            assertEquals(expectedNest.shapeCount(), actualNest.shapeCount());
+            for (int i = 0; i < expectedNest.shapeCount(); i++) {
+                assertSameState(expectedNest.shapeAt(i), actualNest.shapeAt(i));
+            }
+        }
+    }
+
+    /**
+     * Asserts that two images are the same size and have the same pixels.
+     */
+    public static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("Pixel " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    private static Class<?> standIn(Shape shape) {
+        return shape instanceof PagedNestingShape ? NestingShape.class : shape.getClass();
+    }
+}
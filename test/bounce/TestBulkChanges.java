@@ -0,0 +1,173 @@
+package bounce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test adding and removing several shapes with one ShapeModel
+ * call.
+ */
+public class TestBulkChanges {
+
+    private ShapeModel model;
+    private NestingShape nest;
+    private Shape first;
+    private List<ShapeModelEvent> events;
+
+    /**
+     * Creates a ShapeModel holding a NestingShape that holds one shape, and
+     * records the events the model fires.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(500, 500));
+        nest = new NestingShape(0, 0, 0, 0, 200, 200);
+        first = new RectangleShape(0, 0, 1, 1, 10, 10);
+        model.add(nest, model.root());
+        model.add(first, nest);
+
+        events = new ArrayList<>();
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                events.add(event);
+            }
+        });
+    }
+
+    /**
+     * Checks that addAll() appends the shapes in order and fires a single
+     * ShapesAdded event identifying their index range.
+     */
+    @Test
+    public void testAddAll() {
+        Shape a = new OvalShape(20, 20, 1, 1, 10, 10);
+        Shape b = new GemShape(40, 40, 1, 1, 10, 10);
+        Shape c = new NestingShape(60, 60, 1, 1, 50, 50);
+
+        assertTrue(model.addAll(Arrays.asList(a, b, c), nest));
+
+        assertEquals(4, nest.shapeCount());
+        assertSame(b, nest.shapeAt(2));
+        assertSame(nest, c.parent());
+        assertEquals(1, events.size());
+
+        ShapeModelEvent event = events.get(0);
+        assertEquals(ShapeModelEvent.EventType.ShapesAdded, event.eventType());
+        assertSame(nest, event.parent());
+        assertEquals(Arrays.asList(a, b, c), event.operands());
+        assertArrayEquals(new int[]{1, 2, 3}, event.indices());
+        assertEquals(1, event.index());
+    }
+
+    /**
+     * Checks that addAll() adds nothing and fires no event when one of the
+     * shapes does not fit, already has a parent or is given twice.
+     */
+    @Test
+    public void testAddAllIsAllOrNothing() {
+        Shape a = new RectangleShape(20, 20, 1, 1, 10, 10);
+        Shape tooBig = new RectangleShape(150, 150, 1, 1, 100, 100);
+        assertFalse(model.addAll(Arrays.asList(a, tooBig), nest));
+        assertFalse(model.addAll(Arrays.asList(a, first), nest));
+        assertFalse(model.addAll(Arrays.asList(a, a), nest));
+
+        assertEquals(1, nest.shapeCount());
+        assertNull(a.parent());
+        assertTrue(events.isEmpty());
+
+        assertTrue(model.addAll(new ArrayList<Shape>(), nest));
+        assertTrue(events.isEmpty());
+    }
+
+    /**
+     * Checks that removeAll() removes only children of the given
+     * NestingShape and fires a single ShapesRemoved event identifying their
+     * former positions.
+     */
+    @Test
+    public void testRemoveAll() {
+        Shape a = new RectangleShape(20, 20, 1, 1, 10, 10);
+        Shape b = new RectangleShape(40, 40, 1, 1, 10, 10);
+        Shape c = new RectangleShape(60, 60, 1, 1, 10, 10);
+        Shape elsewhere = new RectangleShape(300, 300, 1, 1, 10, 10);
+        model.addAll(Arrays.asList(a, b, c), nest);
+        model.add(elsewhere, model.root());
+        events.clear();
+
+        model.removeAll(Arrays.asList(c, elsewhere, first), nest);
+
+        assertEquals(Arrays.asList(a, b), Arrays.asList(nest.shapeAt(0), nest.shapeAt(1)));
+        assertEquals(2, nest.shapeCount());
+        assertNull(first.parent());
+        assertSame(model.root(), elsewhere.parent());
+        assertEquals(1, events.size());
+
+        ShapeModelEvent event = events.get(0);
+        assertEquals(ShapeModelEvent.EventType.ShapesRemoved, event.eventType());
+        assertSame(nest, event.parent());
+        assertEquals(Arrays.asList(first, c), event.operands());
+        assertArrayEquals(new int[]{0, 3}, event.indices());
+
+        events.clear();
+        model.removeAll(Arrays.asList(first), nest);
+        assertTrue(events.isEmpty());
+    }
+
+    /**
+     * Checks that a NestingShape only notes that it has changed when
+     * removeAll() removes something, even if the list removed shapes are
+     * appended to is not empty to begin with.
+     */
+    @Test
+    public void testRemoveAllOfNothingLeavesNestUnchanged() {
+        model.acquireSnapshot().release();
+        assertFalse(nest.changedSinceSnapshot);
+
+        List<Shape> removed = new ArrayList<>();
+        removed.add(new RectangleShape(0, 0, 1, 1, 10, 10));
+        nest.removeAll(Arrays.asList(new RectangleShape(300, 300, 1, 1, 10, 10)), removed);
+        assertEquals(1, removed.size());
+        assertFalse(nest.changedSinceSnapshot);
+
+        nest.removeAll(Arrays.asList(first), removed);
+        assertEquals(2, removed.size());
+        assertTrue(nest.changedSinceSnapshot);
+    }
+
+    /**
+     * Checks that the spatial index and collision detection stay consistent
+     * with bulk changes.
+     */
+    @Test
+    public void testIndexAndCollisions() {
+        assertSame(first, model.shapeAt(new Point(5, 5)));
+
+        NestingShape colliding = new NestingShape(100, 100, 0, 0, 50, 50);
+        colliding.setCollisionsEnabled(true);
+        Shape inner = new RectangleShape(10, 10, 0, 0, 10, 10);
+        colliding.add(inner);
+        model.addAll(Arrays.asList(colliding), nest);
+
+        assertTrue(model.root().detectsCollisions());
+        assertSame(inner, model.shapeAt(new Point(115, 115)));
+
+        model.removeAll(Arrays.asList(colliding, first), nest);
+        assertFalse(model.root().detectsCollisions());
+        assertSame(nest, model.shapeAt(new Point(115, 115)));
+        assertSame(nest, model.shapeAt(new Point(5, 5)));
+    }
+}
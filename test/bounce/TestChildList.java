@@ -0,0 +1,107 @@
+package bounce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Class to test that ChildList behaves as an ArrayList of a NestingShape's
+ * children would, whatever mix of additions and removals it sees.
+ */
+public class TestChildList {
+
+    /**
+     * Checks indexOf(), contains(), get() and iteration against an
+     * ArrayList after each of many random additions and removals.
+     */
+    @Test
+    public void testAgainstArrayList() {
+        Random random = new Random(718);
+        ChildList children = new ChildList();
+        List<Shape> expected = new ArrayList<>();
+        List<Shape> outside = new ArrayList<>();
+
+        for (int step = 0; step < 5000; step++) {
+            int choice = random.nextInt(10);
+            if (choice < 5 || expected.isEmpty()) {
+                Shape shape = new RectangleShape();
+                children.add(shape);
+                expected.add(shape);
+            } else if (choice < 8) {
+                Shape shape = expected.remove(random.nextInt(expected.size()));
+                assertTrue(children.remove(shape));
+                outside.add(shape);
+            } else if (choice < 9) {
+                int index = random.nextInt(expected.size());
+                assertSame(expected.remove(index), children.remove(index));
+            } else {
+                children.compact();
+            }
+
+            assertEquals(expected.size(), children.size());
+            if (step % 50 == 0) {
+                assertEquals(expected, new ArrayList<>(children));
+                for (int i = 0; i < expected.size(); i++) {
+                    assertSame(expected.get(i), children.get(i));
+                    assertEquals(i, children.indexOf(expected.get(i)));
+                }
+                for (Shape shape : outside) {
+                    assertEquals(-1, children.indexOf(shape));
+                    assertFalse(children.contains(shape));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that removeAll() reports the removed shapes in list order with
+     * the indices they were held at, ignoring shapes given twice or not held.
+     */
+    @Test
+    public void testRemoveAll() {
+        ChildList children = new ChildList();
+        Shape[] shapes = new Shape[6];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = new RectangleShape();
+            children.add(shapes[i]);
+        }
+        children.remove(shapes[1]);
+
+        List<Shape> removed = new ArrayList<>();
+        int[] indices = children.removeAll(
+                Arrays.asList(shapes[5], shapes[2], shapes[1], shapes[5], new RectangleShape()), removed);
+
+        assertArrayEquals(new int[]{1, 4}, indices);
+        assertEquals(Arrays.asList(shapes[2], shapes[5]), removed);
+        assertEquals(Arrays.asList(shapes[0], shapes[3], shapes[4]), new ArrayList<>(children));
+    }
+
+    /**
+     * Checks that a shape moved between NestingShapes is only reported by
+     * its current parent.
+     */
+    @Test
+    public void testShapeMovedBetweenNests() {
+        NestingShape a = new NestingShape(0, 0, 0, 0, 100, 100);
+        NestingShape b = new NestingShape(0, 0, 0, 0, 100, 100);
+        Shape shape = new RectangleShape();
+        a.add(new RectangleShape());
+        a.add(shape);
+        a.remove(shape);
+        b.add(shape);
+
+        assertFalse(a.contains(shape));
+        assertEquals(-1, a.indexOf(shape));
+        assertTrue(b.contains(shape));
+        assertEquals(0, b.indexOf(shape));
+    }
+}
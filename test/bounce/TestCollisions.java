@@ -0,0 +1,109 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test collision detection between the children of a NestingShape.
+ */
+public class TestCollisions {
+
+    private ShapeModel model;
+    private NestingShape nest;
+    private List<ShapeModelEvent> events;
+
+    /**
+     * Creates a ShapeModel holding a single NestingShape that detects
+     * collisions, and records the events the model fires.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(500, 500));
+        nest = new NestingShape(0, 0, 0, 0, 400, 400);
+        nest.setCollisionsEnabled(true);
+        model.add(nest, model.root());
+
+        events = new ArrayList<>();
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                events.add(event);
+            }
+        });
+    }
+
+    /**
+     * Checks that two shapes moving towards each other exchange their
+     * horizontal speeds when they meet, and that the collision is reported.
+     */
+    @Test
+    public void testHeadOnCollision() {
+        Shape left = new RectangleShape(100, 100, 5, 0, 20, 20);
+        Shape right = new RectangleShape(124, 104, -3, 0, 20, 20);
+        model.add(left, nest);
+        model.add(right, nest);
+        events.clear();
+
+        model.clock();
+
+        assertEquals(-3, left.deltaX());
+        assertEquals(5, right.deltaX());
+        assertEquals(2, events.size());
+        assertEquals(ShapeModelEvent.EventType.ShapeMoved, events.get(0).eventType());
+        assertEquals(ShapeModelEvent.EventType.ShapesCollided, events.get(1).eventType());
+        assertEquals(1, events.get(1).collisions());
+    }
+
+    /**
+     * Checks that no ShapesCollided events are fired once collision
+     * detection is disabled throughout the model.
+     */
+    @Test
+    public void testDisablingCollisions() {
+        assertTrue(model.root().detectsCollisions());
+        nest.setCollisionsEnabled(false);
+        assertFalse(model.root().detectsCollisions());
+
+        events.clear();
+        model.clock();
+        assertEquals(1, events.size());
+    }
+
+    /**
+     * Checks that the grid finds exactly the overlapping pairs that a
+     * pairwise check finds, for shapes of varied sizes.
+     */
+    @Test
+    public void testGridMatchesPairwiseCheck() {
+        Random random = new Random(718);
+        for (int i = 0; i < 600; i++) {
+            int width = 2 + random.nextInt(i % 10 == 0 ? 120 : 15);
+            int height = 2 + random.nextInt(15);
+            model.add(new RectangleShape(random.nextInt(400 - width), random.nextInt(400 - height),
+                    0, 0, width, height), nest);
+        }
+
+        int pairs = 0;
+        for (int i = 0; i < nest.shapeCount(); i++) {
+            for (int j = i + 1; j < nest.shapeCount(); j++) {
+                Shape a = nest.shapeAt(i);
+                Shape b = nest.shapeAt(j);
+                if (a.x() < b.x() + b.width() && b.x() < a.x() + a.width()
+                        && a.y() < b.y() + b.height() && b.y() < a.y() + a.height()) {
+                    pairs++;
+                }
+            }
+        }
+
+        assertEquals(pairs, nest.resolveCollisions());
+    }
+}
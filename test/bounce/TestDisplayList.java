@@ -0,0 +1,135 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Dimension;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test the display lists NestingShapes replay for children that
+ * have not changed since the previous snapshot.
+ */
+public class TestDisplayList {
+
+    private ShapeModel model;
+    private NestingShape still;
+    private CountingShape resting;
+    private CountingShape moving;
+
+    /**
+     * Creates a ShapeModel holding a NestingShape whose children do not
+     * move, and a shape that does.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(500, 500));
+        still = new NestingShape(10, 10, 0, 0, 200, 200, "still");
+        resting = new CountingShape(20, 30, 0, 0);
+        moving = new CountingShape(300, 300, 4, -3);
+        model.add(still, model.root());
+        model.add(resting, still);
+        model.add(new OvalShape(40, 50, 0, 0, 30, 30, "oval"), still);
+        model.add(moving, model.root());
+    }
+
+    /**
+     * Checks that children at rest are painted from a display list, and
+     * that replaying it paints what painting the shapes themselves does.
+     */
+    @Test
+    public void testChildrenAtRestAreReplayed() {
+        for (int i = 0; i < 3; i++) {
+            model.clock();
+            assertPaintsAsShapes();
+        }
+        int paints = resting.paints;
+
+        for (int i = 0; i < 5; i++) {
+            model.clock();
+            assertPaintsAsShapes();
+        }
+        // Painted only by assertPaintsAsShapes(), not from snapshots.
+        assertEquals(paints + 5, resting.paints);
+        assertEquals(2 * 8, moving.paints);
+    }
+
+    /**
+     * Checks that moving, adding and removing children stops their display
+     * list being replayed.
+     */
+    @Test
+    public void testChangesInvalidate() {
+        for (int i = 0; i < 3; i++) {
+            model.clock();
+            assertPaintsAsShapes();
+        }
+
+        resting.setDelta(5, 5);
+        model.clock();
+        assertPaintsAsShapes();
+
+        resting.setDelta(0, 0);
+        model.clock();
+        assertPaintsAsShapes();
+        model.add(new GemShape(100, 100, 0, 0, 40, 20), still);
+        assertPaintsAsShapes();
+        model.clock();
+        assertPaintsAsShapes();
+        model.remove(resting);
+        assertPaintsAsShapes();
+    }
+
+    /**
+     * Checks that display lists are invalidated by each MoveEngine.
+     */
+    @Test
+    public void testEnginesInvalidate() {
+        MoveEngine[] engines = {new SequentialMoveEngine(), new ArrayMoveEngine(), new ParallelMoveEngine()};
+        for (MoveEngine engine : engines) {
+            model.setMoveEngine(engine);
+            resting.setDelta(0, 0);
+            for (int i = 0; i < 3; i++) {
+                model.clock();
+                assertPaintsAsShapes();
+            }
+            resting.setDelta(3, 1);
+            for (int i = 0; i < 3; i++) {
+                model.clock();
+                assertPaintsAsShapes();
+            }
+        }
+    }
+
+    private void assertPaintsAsShapes() {
+        MockPainter expected = new MockPainter();
+        model.root().paint(expected);
+
+        MockPainter actual = new MockPainter();
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            snapshot.paint(actual);
+        } finally {
+            snapshot.release();
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /*
+     * RectangleShape that counts how often it is painted.
+     */
+    private static class CountingShape extends RectangleShape {
+        int paints;
+
+        CountingShape(int x, int y, int deltaX, int deltaY) {
+            super(x, y, deltaX, deltaY, 20, 10);
+        }
+
+        @Override
+        protected void doPaint(Painter painter, int x, int y) {
+            paints++;
+            super.doPaint(painter, x, y);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package bounce;
+
+import static bounce.ShapeAssert.assertSamePixels;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+/**
+ * Class to test the caching done by GraphicsPainter, which must not change
+ * what is drawn.
+ */
+public class TestGraphicsPainter {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 60;
+
+    /**
+     * Checks that text drawn from the text cache, both when it is first
+     * laid out and when it is found in the cache, is drawn where
+     * drawString() would draw it centred.
+     */
+    @Test
+    public void testCachedTextMatchesDrawString() {
+        String[] texts = {"I change color when I bounce", "gem", "Qy"};
+        for (String text : texts) {
+            BufferedImage expected = newImage();
+            Graphics2D g = expected.createGraphics();
+            g.setColor(Color.BLACK);
+            FontMetrics fm = g.getFontMetrics();
+            int ascent = fm.getAscent();
+            int descent = fm.getDescent();
+            g.drawString(text, 100 - fm.stringWidth(text) / 2,
+                    30 + (ascent > descent ? (ascent - descent) / 2 : -((descent - ascent) / 2)));
+            g.dispose();
+
+            for (int i = 0; i < 2; i++) {
+                BufferedImage actual = newImage();
+                g = actual.createGraphics();
+                g.setColor(Color.BLACK);
+                new GraphicsPainter(g).drawCenteredText(text, 100, 30);
+                g.dispose();
+                assertSamePixels(expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Checks that gems drawn from cached outlines, in sizes that share
+     * cache slots, are drawn as they were before being cached, both plainly
+     * and antialiased at a reduced scale.
+     */
+    @Test
+    public void testCachedOutlinesMatchGraphics() {
+        // 43 by 21 shares a slot with 10 by 20.
+        int[][] sizes = {{10, 20}, {40, 15}, {75, 50}, {43, 21}, {3, 2}, {43, 50}, {10, 20}, {75, 50}};
+        for (boolean transformed : new boolean[]{false, true}) {
+            BufferedImage expected = newImage();
+            BufferedImage actual = newImage();
+            Graphics2D expectedGraphics = createGraphics(expected, transformed);
+            Graphics2D actualGraphics = createGraphics(actual, transformed);
+            GraphicsPainter painter = new GraphicsPainter(actualGraphics);
+
+            int x = 2;
+            for (int[] size : sizes) {
+                expectedGraphics.drawPolygon(gem(x, 3, size[0], size[1]));
+                painter.drawGemShape(x, 3, size[0], size[1]);
+                x += 11;
+            }
+            expectedGraphics.dispose();
+            actualGraphics.dispose();
+            assertSamePixels(expected, actual);
+        }
+    }
+
+    /**
+     * Checks that an LruCache evicts the least recently used entry once it
+     * is full.
+     */
+    @Test
+    public void testLruCacheEvictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+    }
+
+    private static Graphics2D createGraphics(BufferedImage image, boolean transformed) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        if (transformed) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.scale(0.5, 0.5);
+        }
+        return g;
+    }
+
+    /*
+     * Returns the polygon GraphicsPainter used to build for each gem.
+     */
+    private static Polygon gem(int x, int y, int width, int height) {
+        Polygon gem = new Polygon();
+        if (width < 40) {
+            gem.addPoint(x, y + height / 2);
+            gem.addPoint(x + width / 2, y);
+            gem.addPoint(x + width, y + height / 2);
+            gem.addPoint(x + width / 2, y + height);
+        } else {
+            gem.addPoint(x, y + height / 2);
+            gem.addPoint(x + 20, y);
+            gem.addPoint(x + width - 20, y);
+            gem.addPoint(x + width, y + height / 2);
+            gem.addPoint(x + width - 20, y + height);
+            gem.addPoint(x + 20, y + height);
+        }
+        return gem;
+    }
+
+    private static BufferedImage newImage() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+        return image;
+    }
+}
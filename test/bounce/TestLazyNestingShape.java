@@ -0,0 +1,210 @@
+package bounce;
+
+import static bounce.ShapeAssert.BOUNDS;
+import static bounce.ShapeAssert.assertSameState;
+import static bounce.ShapeAssert.tick;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test LazyNestingShapes, which leave their children in a scene
+ * file until they are needed.
+ */
+public class TestLazyNestingShape {
+
+    private Path file;
+
+    /**
+     * Saves a composition with NestingShapes nested two deep, and one that
+     * detects collisions, to a scene file.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("bounce", ".scene");
+        ShapeModel model = new ShapeModel(BOUNDS);
+
+        NestingShape outer = new NestingShape(10, 20, 3, -2, 300, 250, "outer");
+        NestingShape inner = new NestingShape(5, 5, 1, 1, 100, 100);
+        inner.add(new GemShape(50, 60, 2, 7, 25, 25));
+        inner.add(new RectangleShape(0, 0, -3, 0, 100, 10));
+        outer.add(inner);
+        outer.add(new DynamicRectangleShape(200, 20, -6, 5, 40, 30, "dynamic", Color.BLUE));
+        outer.add(new OvalShape(5, 5, 13, -4, 20, 30));
+
+        NestingShape colliding = new NestingShape(300, 250, -2, 1, 150, 100);
+        colliding.setCollisionsEnabled(true);
+        colliding.add(new RectangleShape(10, 10, 4, 2, 20, 20));
+        colliding.add(new RectangleShape(60, 40, -3, 5, 20, 20));
+
+        model.add(outer, model.root());
+        model.add(colliding, model.root());
+        model.add(new RectangleShape(440, 0, 10, 10, 4, 2), model.root());
+        SceneFile.save(model, file);
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Checks that advancing shapes gives the same state as moving them step
+     * by step, including shapes that start out of bounds, do not move or do
+     * not fit their bounds.
+     */
+    @Test
+    public void testAdvanceMatchesStepping() {
+        Random random = new Random(718);
+        for (int i = 0; i < 2000; i++) {
+            int width = 1 + random.nextInt(60);
+            int height = 1 + random.nextInt(60);
+            int x = random.nextInt(80) - 10;
+            int y = random.nextInt(80) - 10;
+            int deltaX = random.nextInt(31) - 15;
+            int deltaY = random.nextInt(31) - 15;
+            int boundsWidth = 1 + random.nextInt(70);
+            int boundsHeight = 1 + random.nextInt(70);
+            int ticks = random.nextInt(300);
+
+            DynamicRectangleShape stepped = new DynamicRectangleShape(x, y, deltaX, deltaY, width, height,
+                    Color.RED);
+            DynamicRectangleShape advanced = new DynamicRectangleShape(x, y, deltaX, deltaY, width, height,
+                    Color.RED);
+            for (int t = 0; t < ticks; t++) {
+                stepped.move(0, 0, boundsWidth, boundsHeight);
+            }
+            advanced.advance(ticks, boundsWidth, boundsHeight);
+            assertSameState(stepped, advanced);
+        }
+    }
+
+    /**
+     * Checks that NestingShapes are loaded lazily, and that children loaded
+     * after the model has been clocked are where they would have been had
+     * they been loaded all along, with each MoveEngine.
+     */
+    @Test
+    public void testChildrenLoadWhereTheyWouldBe() throws IOException {
+        MoveEngine[] engines = {new SequentialMoveEngine(), new ArrayMoveEngine(), new ParallelMoveEngine()};
+        for (MoveEngine engine : engines) {
+            ShapeModel expected = new ShapeModel(BOUNDS);
+            SceneFile.load(file, expected);
+            ShapeModel lazy = new ShapeModel(BOUNDS);
+            assertEquals(5, SceneFile.loadLazily(file, lazy));
+            lazy.setMoveEngine(engine);
+
+            LazyNestingShape outer = (LazyNestingShape) lazy.root().children().get(0);
+            assertFalse(outer.isLoaded());
+            // Collisions are worked out as the shapes move.
+            assertSame(NestingShape.class, lazy.root().children().get(1).getClass());
+
+            tick(expected, 137);
+            tick(lazy, 137);
+            assertEquals(3, outer.shapeCount());
+            assertTrue(outer.isLoaded());
+            assertFalse(((LazyNestingShape) outer.shapeAt(0)).isLoaded());
+
+            tick(expected, 250);
+            tick(lazy, 250);
+            assertSameState(expected.root(), lazy.root());
+        }
+    }
+
+    /**
+     * Checks that children paged out while the model moves on are loaded
+     * again where they would have been.
+     */
+    @Test
+    public void testPagedOutChildrenLoadWhereTheyWouldBe() throws IOException {
+        ShapeModel expected = new ShapeModel(BOUNDS);
+        SceneFile.load(file, expected);
+        ShapeModel lazy = new ShapeModel(BOUNDS);
+        SceneFile.loadLazily(file, lazy);
+        LazyNestingShape outer = (LazyNestingShape) lazy.root().shapeAt(0);
+        LazyNestingShape inner = (LazyNestingShape) outer.shapeAt(0);
+        inner.shapeCount();
+
+        tick(expected, 40);
+        tick(lazy, 40);
+
+        // As if the garbage collector had found the children unused.
+        outer.residency.enqueue();
+        lazy.clock();
+        expected.clock();
+        assertFalse(outer.isLoaded());
+        assertEquals(0, outer.children().size());
+
+        tick(expected, 99);
+        tick(lazy, 99);
+        assertSameState(expected.root(), lazy.root());
+    }
+
+    /**
+     * Checks that a LazyNestingShape whose children have been changed keeps
+     * them, along with the LazyNestingShapes holding it.
+     */
+    @Test
+    public void testChangedChildrenStay() throws IOException {
+        ShapeModel lazy = new ShapeModel(BOUNDS);
+        SceneFile.loadLazily(file, lazy);
+        LazyNestingShape outer = (LazyNestingShape) lazy.root().shapeAt(0);
+        LazyNestingShape inner = (LazyNestingShape) outer.shapeAt(0);
+        PagedNestingShape.Residency residency = outer.residency;
+
+        lazy.add(new OvalShape(1, 1, 1, 1, 5, 5), inner);
+        assertNull(outer.residency);
+        assertNull(inner.residency);
+
+        residency.enqueue();
+        lazy.clock();
+        assertTrue(outer.isLoaded());
+        assertEquals(3, inner.shapeCount());
+    }
+
+    /**
+     * Checks that a model holding LazyNestingShapes is saved as NestingShapes,
+     * so that the saved file can be loaded again, both eagerly and lazily.
+     */
+    @Test
+    public void testSaveAfterLoadingLazily() throws IOException {
+        ShapeModel expected = new ShapeModel(BOUNDS);
+        SceneFile.load(file, expected);
+        ShapeModel lazy = new ShapeModel(BOUNDS);
+        SceneFile.loadLazily(file, lazy);
+        tick(expected, 60);
+        tick(lazy, 60);
+
+        Path saved = Files.createTempFile("bounce", ".scene");
+        try {
+            SceneFile.save(lazy, saved);
+
+            ShapeModel loaded = new ShapeModel(BOUNDS);
+            SceneFile.load(saved, loaded);
+            assertSame(NestingShape.class, loaded.root().shapeAt(0).getClass());
+            assertSame(NestingShape.class, ((NestingShape) loaded.root().shapeAt(0)).shapeAt(0).getClass());
+            assertSameState(expected.root(), loaded.root());
+
+            ShapeModel reloaded = new ShapeModel(BOUNDS);
+            SceneFile.loadLazily(saved, reloaded);
+            assertTrue(reloaded.root().shapeAt(0) instanceof LazyNestingShape);
+            tick(expected, 45);
+            tick(reloaded, 45);
+            assertSameState(expected.root(), reloaded.root());
+        } finally {
+            Files.deleteIfExists(saved);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Class to test painting shapes at reduced levels of detail.
+ */
+public class TestLevelOfDetail {
+
+    /**
+     * Checks that text is skipped on shapes too small to hold it, and kept
+     * on larger ones.
+     */
+    @Test
+    public void testSkipSmallText() {
+        MockPainter painter = painter(Painter.SKIP_SMALL_TEXT, 1.0);
+        new RectangleShape(10, 20, 1, 1, 4, 5, "tiny").paint(painter);
+        new RectangleShape(10, 20, 1, 1, 40, 5, "wide").paint(painter);
+        assertEquals("(rectangle 10,20,4,5)(rectangle 10,20,40,5)(centered-text wide,30,22)", painter.toString());
+
+        // The same shape covers fewer pixels when scaled down.
+        painter = painter(Painter.SKIP_SMALL_TEXT, 0.1);
+        new RectangleShape(10, 20, 1, 1, 40, 5, "wide").paint(painter);
+        assertEquals("(rectangle 10,20,40,5)", painter.toString());
+    }
+
+    /**
+     * Checks that shapes smaller than a pixel are plotted as a point, with
+     * neither their text nor any shapes nested within them.
+     */
+    @Test
+    public void testPlotTinyShapes() {
+        NestingShape nest = new NestingShape(30, 40, 1, 1, 8, 8, "nest");
+        nest.add(new OvalShape(1, 1, 1, 1, 3, 3));
+
+        MockPainter painter = painter(Painter.PLOT_TINY_SHAPES, 0.1);
+        nest.paint(painter);
+        new OvalShape(50, 60, 1, 1, 30, 20).paint(painter);
+        assertEquals("(line 30,40,30,40)(oval 50,60,30,20)", painter.toString());
+    }
+
+    /**
+     * Checks that the children of a crowded NestingShape are painted as
+     * shaded blocks, from the shapes themselves and from a snapshot.
+     */
+    @Test
+    public void testAggregateCrowds() {
+        ShapeModel model = new ShapeModel(new java.awt.Dimension(500, 500));
+        NestingShape nest = new NestingShape(0, 0, 0, 0, 40, 40);
+        Random random = new Random(718);
+        for (int i = 0; i < 200; i++) {
+            nest.add(new RectangleShape(random.nextInt(36), random.nextInt(36), 1, 1, 4, 4));
+        }
+        model.add(nest, model.root());
+
+        MockPainter painter = painter(Painter.AGGREGATE_CROWDS, 1.0);
+        nest.paint(painter);
+        String blocks = painter.toString();
+        assertFalse(blocks.contains("(rectangle 0,0,4,4)"));
+        assertTrue(blocks.contains("filled-rectangle"));
+        // At most one run of blocks per shade and row of 10 blocks.
+        assertTrue(blocks.split("filled-rectangle").length <= 1 + 8 * 10);
+
+        MockPainter fromSnapshot = painter(Painter.AGGREGATE_CROWDS, 1.0);
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            snapshot.paint(fromSnapshot);
+        } finally {
+            snapshot.release();
+        }
+        assertTrue(fromSnapshot.toString().contains(blocks));
+
+        // The same shapes are not crowded when scaled up.
+        MockPainter scaled = painter(Painter.AGGREGATE_CROWDS, 4.0);
+        nest.paint(scaled);
+        assertFalse(scaled.toString().contains("filled-rectangle"));
+    }
+
+    /**
+     * Checks that Painters paint in full detail unless they say otherwise.
+     */
+    @Test
+    public void testFullDetailByDefault() {
+        MockPainter painter = new MockPainter();
+        new RectangleShape(10, 20, 1, 1, 0, 0, "tiny").paint(painter);
+        assertEquals("(rectangle 10,20,0,0)(centered-text tiny,10,20)", painter.toString());
+    }
+
+    private static MockPainter painter(final int levelOfDetail, final double scale) {
+        return new MockPainter() {
+            @Override
+            public int levelOfDetail() {
+                return levelOfDetail;
+            }
+
+            @Override
+            public double scale() {
+                return scale;
+            }
+
+            @Override
+            public Color getColor() {
+                return Color.BLACK;
+            }
+        };
+    }
+}
@@ -0,0 +1,340 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test how a ShapeModel delivers events to its listeners, both on
+ * the thread that changes the model and asynchronously.
+ */
+public class TestListenerDispatch {
+
+    private static final long TIMEOUT = 5;
+
+    private ShapeModel model;
+
+    /**
+     * Creates a ShapeModel holding a single shape.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(500, 500));
+        model.add(new RectangleShape(0, 0, 2, 2, 10, 10), model.root());
+    }
+
+    /**
+     * Checks that listeners can be removed and registered while an event is
+     * being fired, and that the event still reaches the other listeners
+     * registered when it was fired.
+     */
+    @Test
+    public void testChangingListenersDuringDispatch() {
+        final List<String> calls = new ArrayList<>();
+        final ShapeModelListener late = new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                calls.add("late");
+            }
+        };
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                calls.add("once");
+                model.removeShapeModelListener(this);
+                model.addShapeModelListener(late);
+            }
+        });
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                calls.add("always");
+            }
+        });
+
+        model.clock();
+        model.clock();
+
+        assertEquals(List.of("once", "always", "always", "late"), calls);
+    }
+
+    /**
+     * Checks that an asynchronous listener receives every event when the
+     * model waits for room in its queue.
+     */
+    @Test
+    public void testBlockDeliversEveryEvent() throws InterruptedException {
+        final CountDownLatch delivered = new CountDownLatch(20);
+        final List<ShapeModelEvent> events = Collections.synchronizedList(new ArrayList<ShapeModelEvent>());
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                events.add(event);
+                delivered.countDown();
+            }
+        }, 1, ShapeModel.Overflow.BLOCK);
+
+        for (int i = 0; i < 20; i++) {
+            model.clock();
+        }
+
+        assertTrue(delivered.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(20, events.size());
+    }
+
+    /**
+     * Checks that an asynchronous listener may lock the model while the
+     * thread changing it waits for room in the listener's queue, with each
+     * overflow policy that waits.
+     */
+    @Test
+    public void testWaitingForRoomDoesNotHoldModelLock() throws InterruptedException {
+        for (ShapeModel.Overflow overflow : new ShapeModel.Overflow[]{ShapeModel.Overflow.BLOCK,
+                ShapeModel.Overflow.COALESCE}) {
+            setUpModel();
+            final CountDownLatch delivered = new CountDownLatch(21);
+            model.addShapeModelListener(new ShapeModelListener() {
+                @Override
+                public void update(ShapeModelEvent event) {
+                    model.shapeAt(new Point(5, 5));
+                    delivered.countDown();
+                }
+            }, 1, overflow);
+
+            Thread changer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20; i++) {
+                        model.add(new RectangleShape(i, i, 1, 1, 10, 10), model.root());
+                    }
+                    model.clock();
+                }
+            });
+            changer.start();
+            changer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+
+            assertFalse("Deadlocked with " + overflow, changer.isAlive());
+            assertTrue(delivered.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Checks that events are delivered in the order they were fired when
+     * some of them have to wait for room in the queue.
+     */
+    @Test
+    public void testEventsWaitingForRoomStayInOrder() throws InterruptedException {
+        SlowListener slow = new SlowListener();
+        model.addShapeModelListener(slow, 1, ShapeModel.Overflow.COALESCE);
+
+        model.clock();
+        assertTrue(slow.started.await(TIMEOUT, TimeUnit.SECONDS));
+        model.clock();
+
+        // The queue is full, so the addition waits for room, and later
+        // movement must not be merged into the ShapeMoved event ahead of it.
+        Thread changer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                model.add(new OvalShape(50, 50, 1, 1, 10, 10), model.root());
+                model.clock();
+            }
+        });
+        changer.start();
+        Thread.sleep(100);
+        slow.release.countDown();
+        changer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+
+        assertTrue(slow.delivered(4));
+        assertEquals(4, slow.events.size());
+        assertEquals(ShapeModelEvent.EventType.ShapeMoved, slow.events.get(1).eventType());
+        assertEquals(ShapeModelEvent.EventType.ShapeAdded, slow.events.get(2).eventType());
+        assertEquals(ShapeModelEvent.EventType.ShapeMoved, slow.events.get(3).eventType());
+    }
+
+    /**
+     * Checks that a slow asynchronous listener does not hold up clock(),
+     * and that events arriving while its queue is full are dropped.
+     */
+    @Test
+    public void testDropDiscardsEventsWhenFull() throws InterruptedException {
+        SlowListener slow = new SlowListener();
+        model.addShapeModelListener(slow, 2, ShapeModel.Overflow.DROP);
+
+        model.clock();
+        assertTrue(slow.started.await(TIMEOUT, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            model.clock();
+        }
+        slow.release.countDown();
+
+        // The event being handled and two queued ones are delivered.
+        assertTrue(slow.delivered(3));
+        assertEquals(3, slow.events.size());
+    }
+
+    /**
+     * Checks that ShapeMoved events arriving while the queue is full are
+     * merged with a waiting ShapeMoved event, and that structural events
+     * are still delivered.
+     */
+    @Test
+    public void testCoalesceMergesMovement() throws InterruptedException {
+        SlowListener slow = new SlowListener();
+        model.addShapeModelListener(slow, 1, ShapeModel.Overflow.COALESCE);
+
+        model.clock();
+        assertTrue(slow.started.await(TIMEOUT, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            model.clock();
+        }
+        slow.release.countDown();
+        model.add(new OvalShape(50, 50, 1, 1, 10, 10), model.root());
+
+        assertTrue(slow.delivered(3));
+        assertEquals(ShapeModelEvent.EventType.ShapeMoved, slow.events.get(0).eventType());
+        assertEquals(ShapeModelEvent.EventType.ShapeMoved, slow.events.get(1).eventType());
+        assertEquals(ShapeModelEvent.EventType.ShapeAdded, slow.events.get(2).eventType());
+    }
+
+    /**
+     * Checks that removing an asynchronous listener stops delivery to it.
+     */
+    @Test
+    public void testRemovingAsynchronousListener() throws InterruptedException {
+        SlowListener slow = new SlowListener();
+        model.addShapeModelListener(slow, 4, ShapeModel.Overflow.DROP);
+
+        model.clock();
+        assertTrue(slow.started.await(TIMEOUT, TimeUnit.SECONDS));
+        model.clock();
+        model.removeShapeModelListener(slow);
+        model.clock();
+        slow.release.countDown();
+
+        Thread.sleep(100);
+        assertEquals(1, slow.events.size());
+    }
+
+    /**
+     * Checks that a thread changing the model many times while holding its
+     * lock waits once the backlog is as full as the queue, and that every
+     * event is then delivered in order.
+     */
+    @Test
+    public void testBacklogIsBoundedByCapacity() throws InterruptedException {
+        final SlowListener slow = new SlowListener();
+        model.addShapeModelListener(slow, 1, ShapeModel.Overflow.BLOCK);
+        model.clock();
+        assertTrue(slow.started.await(TIMEOUT, TimeUnit.SECONDS));
+
+        Thread changer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (model) {
+                    for (int i = 0; i < 4; i++) {
+                        model.add(new OvalShape(50 + 10 * i, 50, 1, 1, 5, 5), model.root());
+                    }
+                }
+            }
+        });
+        changer.start();
+
+        // One event is queued and one is in the backlog.
+        changer.join(200);
+        assertTrue(changer.isAlive());
+        assertEquals(Thread.State.WAITING, changer.getState());
+
+        slow.release.countDown();
+        changer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(changer.isAlive());
+        assertTrue(slow.delivered(5));
+        for (int i = 1; i < 5; i++) {
+            assertEquals(50 + 10 * (i - 1), slow.events.get(i).operand().x());
+        }
+    }
+
+    /**
+     * Checks that shutting down a model's listeners stops the delivery
+     * threads of asynchronous listeners, and leaves other listeners
+     * registered.
+     */
+    @Test
+    public void testShutdownListeners() throws InterruptedException {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch delivered = new CountDownLatch(2);
+        ShapeModelListener async = new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                threads.add(Thread.currentThread());
+                delivered.countDown();
+            }
+        };
+        model.addShapeModelListener(async, 4, ShapeModel.Overflow.DROP);
+        model.addShapeModelListener(async, 4, ShapeModel.Overflow.BLOCK);
+        final List<ShapeModelEvent> events = new ArrayList<>();
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                events.add(event);
+            }
+        });
+
+        model.clock();
+        assertTrue(delivered.await(TIMEOUT, TimeUnit.SECONDS));
+        model.shutdownListeners();
+        for (Thread thread : threads) {
+            assertFalse(thread.isAlive());
+        }
+
+        model.clock();
+        assertEquals(2, threads.size());
+        assertEquals(2, events.size());
+    }
+
+    /*
+     * Listener that blocks on its first event until released.
+     */
+    private static class SlowListener implements ShapeModelListener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<ShapeModelEvent> events = Collections.synchronizedList(new ArrayList<ShapeModelEvent>());
+
+        @Override
+        public void update(ShapeModelEvent event) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (events) {
+                events.add(event);
+                events.notifyAll();
+            }
+        }
+
+        boolean delivered(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+            synchronized (events) {
+                while (events.size() < count && System.currentTimeMillis() < deadline) {
+                    events.wait(100);
+                }
+                // Allow time for any unexpected extra events to arrive.
+                events.wait(50);
+                return events.size() >= count;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test that the MoveEngine implementations move a ShapeModel in
+ * exactly the same way as the default SequentialMoveEngine.
+ */
+public class TestMoveEngine {
+
+    private ShapeModel expected;
+    private ShapeModel actual;
+
+    /**
+     * Creates two identical ShapeModels; one is moved by the default engine
+     * and serves as the reference for the other.
+     */
+    @Before
+    public void setUpModels() {
+        expected = createModel();
+        actual = createModel();
+    }
+
+    /**
+     * Checks that ArrayMoveEngine produces the same positions, speeds and
+     * bounce-dependent state as the sequential engine.
+     */
+    @Test
+    public void testArrayMoveEngine() {
+        actual.setMoveEngine(new ArrayMoveEngine());
+        assertSameMovement(500);
+    }
+
+    /**
+     * Checks that ArrayMoveEngine produces the same results as the
+     * sequential engine for a crowd of shapes, including shapes that bounce
+     * off several walls and shapes that have stopped.
+     */
+    @Test
+    public void testArrayMoveEngineWithBounces() {
+        for (ShapeModel model : new ShapeModel[]{expected, actual}) {
+            NestingShape crowd = new NestingShape(0, 0, 1, 1, 120, 90);
+            for (int i = 0; i < 300; i++) {
+                int width = 1 + i % 40;
+                int height = 1 + i % 30;
+                model.add(new RectangleShape(i % (120 - width), i % (90 - height),
+                        i % 13 - 6, i % 11 - 5, width, height), crowd);
+                if (i % 10 == 0) {
+                    model.add(new DynamicRectangleShape(i % 50, i % 40, i % 7 - 3, 9 - i % 19, 20, 20), crowd);
+                }
+            }
+            model.add(new RectangleShape(0, 0, 0, 0, 120, 90), crowd);
+            model.add(crowd, model.root());
+        }
+
+        actual.setMoveEngine(new ArrayMoveEngine());
+        assertSameMovement(500);
+    }
+
+    /**
+     * Checks that ArrayMoveEngine copes with the composition changing between
+     * clock() calls.
+     */
+    @Test
+    public void testArrayMoveEngineWithStructuralChanges() {
+        actual.setMoveEngine(new ArrayMoveEngine());
+        assertSameMovement(37);
+
+        for (ShapeModel model : new ShapeModel[]{expected, actual}) {
+            NestingShape root = model.root();
+            model.remove(root.shapeAt(1));
+            model.add(new OvalShape(3, 4, -7, 2, 30, 30), (NestingShape) root.shapeAt(2));
+        }
+        assertSameMovement(200);
+    }
+
+    /**
+     * Checks that switching engines restores packed state to the shapes.
+     */
+    @Test
+    public void testSwitchingEngineUnpacksShapes() {
+        actual.setMoveEngine(new ArrayMoveEngine());
+        assertSameMovement(10);
+
+        actual.setMoveEngine(new SequentialMoveEngine());
+        assertNull(actual.root().shapeAt(0).packed);
+        assertSameMovement(10);
+    }
+
+    /**
+     * Checks that ParallelMoveEngine produces the same results as the
+     * sequential engine, both below and above its sequential threshold, and
+     * with children removed from the middle of the child lists.
+     */
+    @Test
+    public void testParallelMoveEngine() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ShapeModel model : new ShapeModel[]{expected, actual}) {
+                NestingShape crowd = new NestingShape(0, 0, 1, 1, 300, 300);
+                for (int i = 0; i < 400; i++) {
+                    NestingShape nest = new NestingShape(i % 200, i % 150, i % 3, 2, 100, 100);
+                    model.add(new RectangleShape(i % 50, i % 70, 1 + i % 7, 3 - i % 5, 10, 10), nest);
+                    model.add(new DynamicRectangleShape(0, 0, 5, 2, 20, 20), nest);
+                    model.add(nest, crowd);
+                }
+                model.add(crowd, model.root());
+
+                // Leave empty slots behind in the crowd's child list.
+                List<Shape> removed = new ArrayList<>();
+                for (int i = 0; i < crowd.shapeCount(); i += 3) {
+                    removed.add(crowd.shapeAt(i));
+                }
+                for (Shape shape : removed) {
+                    model.remove(shape);
+                }
+            }
+
+            actual.setMoveEngine(new ParallelMoveEngine(pool, 100, 16));
+            assertSameMovement(200);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks that ParallelMoveEngine flags as changed the NestingShapes
+     * within which something moved, and only those, as the sequential
+     * engine does, when the nests are moved on several threads.
+     */
+    @Test
+    public void testParallelMoveEngineFlagsChanges() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ShapeModel model : new ShapeModel[]{expected, actual}) {
+                NestingShape crowd = new NestingShape(0, 0, 0, 0, 300, 300);
+                for (int i = 0; i < 200; i++) {
+                    NestingShape nest = new NestingShape(i % 200, i % 150, i % 4 == 0 ? 1 : 0, 0, 100, 100);
+                    NestingShape inner = new NestingShape(10, 10, 0, 0, 50, 50);
+                    model.add(new RectangleShape(i % 40, 5, i % 3 == 0 ? 1 : 0, 0, 10, 10), inner);
+                    model.add(inner, nest);
+                    model.add(nest, crowd);
+                }
+                model.add(crowd, model.root());
+
+                // Have each clock() record a snapshot, clearing the flags.
+                model.acquireSnapshot().release();
+            }
+
+            actual.setMoveEngine(new ParallelMoveEngine(pool, 0, 8));
+            assertSameMovement(100);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertSameMovement(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            expected.clock();
+            actual.clock();
+            assertEquals(describe(expected.root()), describe(actual.root()));
+        }
+    }
+
+    private static String describe(Shape shape) {
+        StringBuilder state = new StringBuilder();
+        describe(shape, state);
+        return state.toString();
+    }
+
+    private static void describe(Shape shape, StringBuilder state) {
+        state.append("(").append(shape.x()).append(",").append(shape.y())
+                .append(",").append(shape.deltaX()).append(",").append(shape.deltaY());
+        if (shape instanceof DynamicRectangleShape) {
+            state.append(",").append(((DynamicRectangleShape) shape).filled);
+        }
+        state.append(")");
+
+        if (shape instanceof NestingShape) {
+            NestingShape nest = (NestingShape) shape;
+            state.append("r").append(nest.revision).append(nest.changedSinceSnapshot ? "*" : "");
+            for (int i = 0; i < nest.shapeCount(); i++) {
+                describe(nest.shapeAt(i), state);
+            }
+        }
+    }
+
+    private static ShapeModel createModel() {
+        ShapeModel model = new ShapeModel(new Dimension(500, 500));
+        NestingShape root = model.root();
+
+        model.add(new RectangleShape(440, 0, 10, 10, 4, 2), root);
+        model.add(new RectangleShape(0, 0, 5, 7), root);
+        model.add(new DynamicRectangleShape(0, 0, 2, 3, 180, 130, "I change color when I bounce", Color.CYAN), root);
+
+        NestingShape outer = new NestingShape(10, 10, 3, -2, 200, 150);
+        NestingShape inner = new NestingShape(5, 5, -1, 4, 90, 70, "inner");
+        model.add(new DynamicRectangleShape(0, 0, 7, 3, 20, 30, Color.RED), inner);
+        model.add(new GemShape(10, 10, 4, 9, 45, 30), inner);
+        model.add(inner, outer);
+        model.add(new OvalShape(20, 0, -6, 5, 30, 20, "oval"), outer);
+        model.add(outer, root);
+        model.add(new GemShape(0, 0, 0, 11), root);
+        return model;
+    }
+}
@@ -209,4 +209,30 @@ public class TestNestingShape {
         assertEquals(1, path.size());
         assertSame(topLevelNest, path.get(0));
     }
+
+    /**
+     * Check that Shape's path method returns the same unmodifiable list until
+     * the Shape or one of its ancestors is given a new parent.
+     */
+    @Test
+    public void testPathIsCachedUntilAncestorMoves() {
+        List<Shape> path = simpleShape.path();
+        assertSame(path, simpleShape.path());
+        try {
+            path.add(topLevelNest);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // Expected.
+        }
+
+        NestingShape newTop = new NestingShape(0, 0, 2, 2, 200, 200);
+        topLevelNest.remove(midLevelNest);
+        newTop.add(midLevelNest);
+
+        List<Shape> newPath = simpleShape.path();
+        assertEquals(3, newPath.size());
+        assertSame(newTop, newPath.get(0));
+        assertSame(simpleShape, newPath.get(2));
+        assertSame(topLevelNest, path.get(0));
+    }
 }
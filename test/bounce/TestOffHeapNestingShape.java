@@ -0,0 +1,289 @@
+package bounce;
+
+import static bounce.ShapeAssert.BOUNDS;
+import static bounce.ShapeAssert.assertSameState;
+import static bounce.ShapeAssert.tick;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Class to test OffHeapNestingShapes, which hold their children outside the
+ * Java heap until they are needed.
+ */
+public class TestOffHeapNestingShape {
+
+    /**
+     * Checks that shapes held off the heap move as Shape objects would, with
+     * each MoveEngine, and are loaded where Shape objects would be.
+     */
+    @Test
+    public void testStoredShapesMoveAsObjects() {
+        MoveEngine[] engines = {new SequentialMoveEngine(), new ArrayMoveEngine(), new ParallelMoveEngine()};
+        for (MoveEngine engine : engines) {
+            ShapeModel expected = new ShapeModel(BOUNDS);
+            NestingShape objects = new NestingShape(20, 30, 3, -4, 200, 150);
+            objects.addAll(shapes(718));
+            expected.add(objects, expected.root());
+
+            ShapeModel offHeap = new ShapeModel(BOUNDS);
+            OffHeapNestingShape stored = new OffHeapNestingShape(20, 30, 3, -4, 200, 150);
+            for (Shape shape : shapes(718)) {
+                stored.addStored(shape);
+            }
+            offHeap.add(stored, offHeap.root());
+            offHeap.setMoveEngine(engine);
+
+            tick(expected, 321);
+            tick(offHeap, 321);
+            assertFalse(stored.isLoaded());
+            assertEquals(objects.children().size(), stored.storedCount());
+
+            assertSameState(objects, stored);
+            assertTrue(stored.isLoaded());
+            assertEquals(0, stored.storedCount());
+        }
+    }
+
+    /**
+     * Checks that loaded children paged out while the model moves on are
+     * held off the heap again, and load where they would have been.
+     */
+    @Test
+    public void testPagedOutChildrenMoveOn() {
+        ShapeModel expected = new ShapeModel(BOUNDS);
+        NestingShape objects = new NestingShape(100, 50, -2, 5, 300, 250);
+        objects.addAll(shapes(17));
+        expected.add(objects, expected.root());
+
+        ShapeModel offHeap = new ShapeModel(BOUNDS);
+        OffHeapNestingShape stored = new OffHeapNestingShape(100, 50, -2, 5, 300, 250);
+        for (Shape shape : shapes(17)) {
+            stored.addStored(shape);
+        }
+        offHeap.add(stored, offHeap.root());
+
+        tick(expected, 50);
+        tick(offHeap, 50);
+        assertEquals(objects.shapeCount(), stored.shapeCount());
+
+        // As if the garbage collector had found the children unused.
+        stored.residency.enqueue();
+        expected.clock();
+        offHeap.clock();
+        assertFalse(stored.isLoaded());
+        assertEquals(objects.shapeCount(), stored.storedCount());
+
+        tick(expected, 77);
+        tick(offHeap, 77);
+        assertSameState(objects, stored);
+    }
+
+    /**
+     * Checks that shapes held off the heap are painted just as Shape objects in
+     * the same places would be.
+     */
+    @Test
+    public void testPaintStoredShapes() {
+        NestingShape objects = new NestingShape(5, 5, 0, 0, 200, 150);
+        objects.addAll(shapes(2023));
+        OffHeapNestingShape stored = new OffHeapNestingShape(5, 5, 0, 0, 200, 150);
+        for (Shape shape : shapes(2023)) {
+            stored.addStored(shape);
+        }
+
+        MockPainter expected = painter();
+        objects.paint(expected);
+        MockPainter actual = painter();
+        stored.paint(actual);
+        assertFalse(stored.isLoaded());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Checks that shapes held off the heap are painted as Shape objects in
+     * the same places would be at a reduced level of detail, with tiny
+     * shapes plotted and small text skipped.
+     */
+    @Test
+    public void testPaintStoredShapesWithLessDetail() {
+        NestingShape objects = new NestingShape(5, 5, 0, 0, 200, 150);
+        objects.addAll(shapes(2024));
+        OffHeapNestingShape stored = new OffHeapNestingShape(5, 5, 0, 0, 200, 150);
+        for (Shape shape : shapes(2024)) {
+            stored.addStored(shape);
+        }
+
+        MockPainter expected = zoomedOutPainter();
+        objects.paint(expected);
+        MockPainter actual = zoomedOutPainter();
+        stored.paint(actual);
+        assertFalse(stored.isLoaded());
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Checks that advancing shapes held off the heap leaves them as
+     * advancing Shape objects does.
+     */
+    @Test
+    public void testAdvanceStoredShapes() {
+        for (long ticks : new long[]{1, 2, 3, 17, 250, 1000003}) {
+            NestingShape objects = new NestingShape(20, 30, 3, -4, 200, 150);
+            objects.addAll(shapes(ticks));
+            OffHeapNestingShape stored = new OffHeapNestingShape(20, 30, 3, -4, 200, 150);
+            for (Shape shape : shapes(ticks)) {
+                stored.addStored(shape);
+            }
+
+            objects.advance(ticks, BOUNDS.width, BOUNDS.height);
+            stored.advance(ticks, BOUNDS.width, BOUNDS.height);
+            assertFalse(stored.isLoaded());
+            assertSameState(objects, stored);
+        }
+    }
+
+    /**
+     * Checks that saving a model leaves shapes held off the heap where they
+     * are, and that they are saved as they would be as Shape objects.
+     */
+    @Test
+    public void testSaveLeavesShapesStored() throws IOException {
+        ShapeModel expected = new ShapeModel(BOUNDS);
+        NestingShape objects = new NestingShape(20, 30, 3, -4, 200, 150);
+        objects.addAll(shapes(99));
+        expected.add(objects, expected.root());
+
+        ShapeModel offHeap = new ShapeModel(BOUNDS);
+        OffHeapNestingShape stored = new OffHeapNestingShape(20, 30, 3, -4, 200, 150);
+        for (Shape shape : shapes(99)) {
+            stored.addStored(shape);
+        }
+        offHeap.add(stored, offHeap.root());
+        tick(expected, 40);
+        tick(offHeap, 40);
+
+        Path file = Files.createTempFile("bounce", ".scene");
+        try {
+            SceneFile.save(offHeap, file);
+            assertFalse(stored.isLoaded());
+            assertEquals(200, stored.storedCount());
+
+            ShapeModel loaded = new ShapeModel(BOUNDS);
+            SceneFile.load(file, loaded);
+            assertSameState(objects, loaded.root().shapeAt(0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Checks that shapes that cannot be held off the heap are rejected.
+     */
+    @Test
+    public void testAddStoredRejectsUnsuitableShapes() {
+        OffHeapNestingShape stored = new OffHeapNestingShape(0, 0, 0, 0, 100, 100);
+        try {
+            stored.addStored(new NestingShape(0, 0, 1, 1, 10, 10));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            stored.addStored(new RectangleShape(95, 0, 1, 1, 10, 10));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        stored.shapeCount();
+        try {
+            stored.addStored(new RectangleShape(0, 0, 1, 1, 10, 10));
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    /*
+     * Returns a mix of the shapes an OffHeapNestingShape can hold, some with
+     * text, that fit within 200 by 150.
+     */
+    private static List<Shape> shapes(long seed) {
+        Random random = new Random(seed);
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int width = 1 + random.nextInt(30);
+            int height = 1 + random.nextInt(30);
+            int x = random.nextInt(200 - width);
+            int y = random.nextInt(150 - height);
+            int deltaX = random.nextInt(15) - 7;
+            int deltaY = random.nextInt(15) - 7;
+            String text = i % 7 == 0 ? "shape " + i : null;
+
+            switch (i % 4) {
+                case 0:
+                    shapes.add(new RectangleShape(x, y, deltaX, deltaY, width, height, text));
+                    break;
+                case 1:
+                    shapes.add(new OvalShape(x, y, deltaX, deltaY, width, height, text));
+                    break;
+                case 2:
+                    shapes.add(new GemShape(x, y, deltaX, deltaY, width, height, text));
+                    break;
+                default:
+                    shapes.add(new DynamicRectangleShape(x, y, deltaX, deltaY, width, height, text,
+                            i % 8 == 3 ? Color.BLUE : Color.GREEN));
+                    break;
+            }
+        }
+        return shapes;
+    }
+
+    /*
+     * Returns a MockPainter with a colour to restore after filling
+     * DynamicRectangleShapes.
+     */
+    private static MockPainter painter() {
+        return new MockPainter() {
+            @Override
+            public Color getColor() {
+                return Color.BLACK;
+            }
+        };
+    }
+
+    /*
+     * Returns a MockPainter, as painter() does, that paints at a tenth of
+     * full size with tiny shapes plotted and small text skipped.
+     */
+    private static MockPainter zoomedOutPainter() {
+        return new MockPainter() {
+            @Override
+            public Color getColor() {
+                return Color.BLACK;
+            }
+
+            @Override
+            public int levelOfDetail() {
+                return Painter.PLOT_TINY_SHAPES | Painter.SKIP_SMALL_TEXT;
+            }
+
+            @Override
+            public double scale() {
+                return 0.1;
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package bounce;
+
+import static bounce.ShapeAssert.assertSameState;
+import static bounce.ShapeAssert.tick;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test recording a ShapeModel session with a ShapeModelRecorder
+ * and replaying it with a ShapeModelReplayer.
+ */
+public class TestRecordReplay {
+
+    private Path log;
+    private ShapeModel model;
+    private NestingShape nest;
+
+    /**
+     * Creates a ShapeModel holding a NestingShape with collisions enabled
+     * and a few shapes of different kinds, and a file to record it to.
+     */
+    @Before
+    public void setUp() throws IOException {
+        log = Files.createTempFile("bounce", ".log");
+        model = new ShapeModel(new Dimension(500, 400));
+        nest = new NestingShape(10, 20, 3, -2, 200, 150, "nest");
+        nest.setCollisionsEnabled(true);
+        nest.add(new OvalShape(5, 5, -4, 3, 20, 30, "oval"));
+        nest.add(new GemShape(50, 60, 2, 7, 25, 25));
+        model.add(nest, model.root());
+        model.add(new DynamicRectangleShape(300, 200, -6, 5, 40, 30, "dynamic", Color.BLUE), model.root());
+    }
+
+    @After
+    public void deleteLog() throws IOException {
+        Files.deleteIfExists(log);
+    }
+
+    /**
+     * Checks that replaying a session rebuilds the composition the model
+     * ended up with, and the state of every shape in it.
+     */
+    @Test
+    public void testReplayMatchesSession() throws IOException {
+        try (ShapeModelRecorder recorder = ShapeModelRecorder.create(log)) {
+            model.setRecorder(recorder);
+            tick(model, 50);
+
+            Shape rectangle = new RectangleShape(100, 100, 5, 5, 10, 10);
+            model.add(rectangle, model.root());
+            model.add(new ImageRectangleShape(4, -4, new BufferedImage(16, 12, BufferedImage.TYPE_INT_RGB)), nest);
+            tick(model, 30);
+
+            Shape a = new OvalShape(1, 1, 1, 2, 5, 5);
+            Shape b = new GemShape(30, 30, -2, 1, 8, 8);
+            model.addAll(Arrays.asList(a, b), nest);
+            tick(model, 7);
+            model.cutAndPaste(nest.shapeAt(0), model.root());
+            model.remove(rectangle);
+            model.removeAll(Arrays.asList(a, b), nest);
+            tick(model, 100);
+        }
+
+        ShapeModel replayed;
+        try (ShapeModelReplayer replayer = ShapeModelReplayer.open(log)) {
+            replayed = replayer.model();
+            assertEquals(187, replayer.replay());
+            assertFalse(replayer.step());
+        }
+        assertSameState(model.root(), replayed.root());
+    }
+
+    /**
+     * Checks that shapes the model already holds are recorded when the
+     * recorder is attached, and that ticks cost a few bytes.
+     */
+    @Test
+    public void testTicksAreCompact() throws IOException {
+        ShapeModelRecorder recorder = ShapeModelRecorder.create(log);
+        model.setRecorder(recorder);
+        recorder.flush();
+        long header = Files.size(log);
+
+        tick(model, 10000);
+        recorder.close();
+        assertTrue(Files.size(log) - header <= 4);
+
+        try (ShapeModelReplayer replayer = ShapeModelReplayer.open(log)) {
+            assertEquals(10000, replayer.replay());
+            assertSameState(model.root(), replayer.model().root());
+        }
+    }
+
+    /**
+     * Checks that a log cut short part way through a record is reported.
+     */
+    @Test
+    public void testTruncatedLog() throws IOException {
+        try (ShapeModelRecorder recorder = ShapeModelRecorder.create(log)) {
+            model.setRecorder(recorder);
+            tick(model, 1);
+            model.add(new RectangleShape(100, 100, 5, 5, 10, 10, "a long piece of text"), model.root());
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (ShapeModelReplayer replayer = ShapeModelReplayer.open(log)) {
+            assertTrue(replayer.step());
+            replayer.step();
+            fail();
+        } catch (EOFException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+/**
+ * Class to test RecordingPainter, which records painting requests as a
+ * display list for replay.
+ */
+public class TestRecordingPainter {
+
+    /**
+     * Checks that replaying a recorded composition paints exactly what
+     * painting it directly does.
+     */
+    @Test
+    public void testReplayMatchesDirectPainting() {
+        NestingShape root = composition();
+
+        MockPainter expected = painter();
+        root.paint(expected);
+
+        RecordingPainter recorder = new RecordingPainter();
+        root.paint(recorder);
+        MockPainter actual = painter();
+        recorder.replay(actual);
+        assertEquals(expected.toString(), actual.toString());
+
+        // A display list can be replayed any number of times.
+        MockPainter again = painter();
+        recorder.replay(again);
+        assertEquals(expected.toString(), again.toString());
+    }
+
+    /**
+     * Checks that a reset RecordingPainter records afresh.
+     */
+    @Test
+    public void testReset() {
+        RecordingPainter recorder = new RecordingPainter();
+        composition().paint(recorder);
+        recorder.reset();
+        assertEquals(0, recorder.size());
+
+        // Grow well past the initial capacity.
+        for (int i = 0; i < 1000; i++) {
+            recorder.drawLine(i, 0, 0, i);
+        }
+        recorder.drawCenteredText("done", 1, 2);
+        assertEquals(1001, recorder.size());
+
+        MockPainter painter = new MockPainter();
+        recorder.replay(painter);
+        assertTrue(painter.toString().startsWith("(line 0,0,0,0)(line 1,0,0,1)"));
+        assertTrue(painter.toString().endsWith("(line 999,0,0,999)(centered-text done,1,2)"));
+    }
+
+    /**
+     * Checks that restoring the colour a shape found before anything was
+     * recorded restores the colour of the Painter replayed onto.
+     */
+    @Test
+    public void testRestoresTargetColor() {
+        RecordingPainter recorder = new RecordingPainter();
+        new DynamicRectangleShape(0, 0, 1, 1, 10, 10, Color.GREEN).paint(recorder);
+
+        final Color[] current = {Color.MAGENTA};
+        Painter target = new MockPainter() {
+            @Override
+            public Color getColor() {
+                return current[0];
+            }
+
+            @Override
+            public void setColor(Color color) {
+                current[0] = color;
+            }
+        };
+        recorder.replay(target);
+        assertEquals(Color.MAGENTA, current[0]);
+    }
+
+    private static NestingShape composition() {
+        NestingShape root = new NestingShape(0, 0, 0, 0, 400, 300);
+        NestingShape nest = new NestingShape(10, 20, 1, 1, 200, 150, "nest");
+        nest.add(new GemShape(5, 5, 1, 1, 60, 30));
+        nest.add(new DynamicRectangleShape(50, 60, 1, 1, 20, 10, "dynamic", Color.BLUE));
+        root.add(nest);
+        root.add(new OvalShape(300, 200, 1, 1, 40, 30));
+        root.add(new RectangleShape(250, 10, 1, 1, 40, 30, "text"));
+        return root;
+    }
+
+    private static MockPainter painter() {
+        return new MockPainter() {
+            @Override
+            public Color getColor() {
+                return Color.BLACK;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package bounce;
+
+import static bounce.ShapeAssert.assertSameState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test saving shape compositions to scene files and loading them.
+ */
+public class TestSceneFile {
+
+    private Path file;
+    private ShapeModel model;
+
+    /**
+     * Creates a ShapeModel holding a shape of each class listed in
+     * bounce.properties, some nested, and a file to save it to.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("bounce", ".scene");
+        model = new ShapeModel(new Dimension(500, 400));
+
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFF112233);
+        image.setRGB(2, 1, 0x80FFEEDD);
+
+        NestingShape outer = new NestingShape(10, 20, 3, -2, 300, 250, "outer");
+        NestingShape inner = new NestingShape(5, 5, 1, 1, 100, 100);
+        inner.setCollisionsEnabled(true);
+        inner.add(new OvalShape(5, 5, -4, 3, 20, 30, "oval é"));
+        inner.add(new ImageRectangleShape(4, -4, image));
+        outer.add(inner);
+        outer.add(new GemShape(150, 60, 2, 7, 25, 25));
+
+        DynamicRectangleShape dynamic = new DynamicRectangleShape(320, 200, -6, 5, 40, 30, "dynamic", Color.BLUE);
+        dynamic.filled = false;
+
+        model.add(new RectangleShape(440, 0, 10, 10, 4, 2), model.root());
+        model.add(outer, model.root());
+        model.add(dynamic, model.root());
+        model.root().setCollisionsEnabled(true);
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Checks that loading a saved composition recreates every shape with
+     * its state, nesting, text, colour and image.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (int i = 0; i < 25; i++) {
+            model.clock();
+        }
+        SceneFile.save(model, file);
+
+        ShapeModel loaded = new ShapeModel(new Dimension(500, 400));
+        assertEquals(7, SceneFile.load(file, loaded));
+        assertSameState(model.root(), loaded.root());
+
+        ImageRectangleShape image = (ImageRectangleShape) ((NestingShape) ((NestingShape) loaded.root()
+                .shapeAt(1)).shapeAt(0)).shapeAt(1);
+        BufferedImage pixels = (BufferedImage) image.image();
+        assertEquals(3, pixels.getWidth());
+        assertEquals(0xFF112233, pixels.getRGB(0, 0));
+        assertEquals(0x80FFEEDD, pixels.getRGB(2, 1));
+    }
+
+    /**
+     * Checks that a scene too large for the model is rejected without
+     * changing the model.
+     */
+    @Test
+    public void testSceneMustFit() throws IOException {
+        SceneFile.save(model, file);
+
+        ShapeModel small = new ShapeModel(new Dimension(200, 200));
+        try {
+            SceneFile.load(file, small);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, small.root().shapeCount());
+        }
+    }
+
+    /**
+     * Checks that files that are not scene files are rejected.
+     */
+    @Test
+    public void testCorruptFile() throws IOException {
+        SceneFile.save(model, file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertLoadFails();
+
+        // Make the first shape claim a parent that follows it.
+        int record = bytes[16] & 0xFF | (bytes[17] & 0xFF) << 8;
+        bytes[record + 40 + 28] = 5;
+        Files.write(file, bytes);
+        assertLoadFails();
+    }
+
+    private void assertLoadFails() {
+        ShapeModel loaded = new ShapeModel(new Dimension(500, 400));
+        try {
+            SceneFile.load(file, loaded);
+            fail();
+        } catch (IOException e) {
+            assertFalse(e.getMessage().isEmpty());
+        }
+        assertEquals(0, loaded.root().shapeCount());
+    }
+}
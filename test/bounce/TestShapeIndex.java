@@ -0,0 +1,127 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test the spatial queries offered by ShapeModel.
+ */
+public class TestShapeIndex {
+
+    private ShapeModel model;
+    private NestingShape nest;
+    private Shape inner;
+    private Random random;
+
+    /**
+     * Creates a ShapeModel with a NestingShape holding a small shape.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(500, 500));
+        nest = new NestingShape(100, 100, 0, 0, 200, 200);
+        inner = new RectangleShape(50, 50, 0, 0, 20, 20);
+        model.add(inner, nest);
+        model.add(nest, model.root());
+    }
+
+    /**
+     * Checks that shapeAt() accounts for NestingShape offsets and returns the
+     * topmost shape.
+     */
+    @Test
+    public void testShapeAt() {
+        assertSame(inner, model.shapeAt(new Point(155, 155)));
+        assertSame(nest, model.shapeAt(new Point(105, 105)));
+        assertSame(model.root(), model.shapeAt(new Point(10, 10)));
+        assertNull(model.shapeAt(new Point(600, 10)));
+
+        Shape cover = new RectangleShape(140, 140, 0, 0, 50, 50);
+        model.add(cover, model.root());
+        assertSame(cover, model.shapeAt(new Point(155, 155)));
+    }
+
+    /**
+     * Checks that shapes added to and removed from a NestingShape in the
+     * model directly, rather than through the ShapeModel, after the index has
+     * been built are picked up by the next clock() and queries.
+     */
+    @Test
+    public void testDirectChangesAfterIndexIsBuilt() {
+        assertSame(inner, model.shapeAt(new Point(155, 155)));
+
+        NestingShape added = new NestingShape(10, 120, 0, 0, 60, 60);
+        added.add(new RectangleShape(5, 5, 0, 0, 10, 10));
+        nest.add(added);
+        model.clock();
+        assertSame(added.shapeAt(0), model.shapeAt(new Point(117, 227)));
+
+        nest.remove(inner);
+        assertSame(nest, model.shapeAt(new Point(155, 155)));
+        model.clock();
+        assertSame(nest, model.shapeAt(new Point(155, 155)));
+
+        random = new Random(718);
+        assertQueries();
+    }
+
+    /**
+     * Checks that shapesIn() agrees with a full walk of the composition as
+     * a crowd of shapes move and the composition changes.
+     */
+    @Test
+    public void testShapesInAgreesWithWalk() {
+        random = new Random(718);
+        for (int i = 0; i < 300; i++) {
+            int size = 1 + random.nextInt(i % 25 == 0 ? 150 : 20);
+            model.add(new OvalShape(random.nextInt(500 - size), random.nextInt(500 - size),
+                    random.nextInt(15) - 7, random.nextInt(15) - 7, size, size), model.root());
+        }
+
+        assertQueries();
+        for (int i = 0; i < 50; i++) {
+            model.clock();
+            if (i % 10 == 0) {
+                model.remove(model.root().shapeAt(random.nextInt(model.root().shapeCount())));
+                model.cutAndPaste(model.root().shapeAt(model.root().shapeCount() - 1), nest);
+            }
+            assertQueries();
+        }
+    }
+
+    private void assertQueries() {
+        for (int i = 0; i < 20; i++) {
+            Rectangle area = new Rectangle(random.nextInt(500), random.nextInt(500),
+                    random.nextInt(100), random.nextInt(100));
+            List<Shape> expected = new ArrayList<Shape>();
+            walk(model.root(), 0, 0, area, expected);
+
+            assertEquals(new HashSet<Shape>(expected), new HashSet<Shape>(model.shapesIn(area)));
+        }
+    }
+
+    private static void walk(Shape shape, int offsetX, int offsetY, Rectangle area, List<Shape> result) {
+        Rectangle bounds = new Rectangle(offsetX + shape.x(), offsetY + shape.y(), shape.width(), shape.height());
+        if (bounds.intersects(area)) {
+            result.add(shape);
+        }
+        if (shape instanceof NestingShape) {
+            NestingShape nest = (NestingShape) shape;
+            for (int i = 0; i < nest.shapeCount(); i++) {
+                walk(nest.shapeAt(i), bounds.x, bounds.y, area, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package bounce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class to test the snapshots a ShapeModel publishes for views to read.
+ */
+public class TestShapeModelSnapshot {
+
+    private ShapeModel model;
+    private NestingShape nest;
+    private Shape rectangle;
+    private Shape oval;
+
+    /**
+     * Creates a ShapeModel holding a NestingShape with two children, plus a
+     * GemShape after the NestingShape.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(500, 500));
+        nest = new NestingShape(10, 10, 2, 3, 200, 200);
+        rectangle = new RectangleShape(0, 0, 5, 7, 20, 10);
+        oval = new OvalShape(50, 50, -4, 2, 30, 30, "oval");
+        model.add(nest, model.root());
+        model.add(new GemShape(100, 300, 1, 1, 40, 20), model.root());
+        model.add(rectangle, nest);
+        model.add(oval, nest);
+    }
+
+    /**
+     * Checks that a snapshot records the composition's structure, positions
+     * and sizes, with the children of each NestingShape on consecutive nodes.
+     */
+    @Test
+    public void testRecordsComposition() {
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            assertEquals(5, snapshot.size());
+            assertSame(model.root(), snapshot.shape(0));
+            assertEquals(2, snapshot.childCount(0));
+
+            int nestNode = snapshot.child(0, 0);
+            assertSame(nest, snapshot.shape(nestNode));
+            assertEquals(nestNode, snapshot.indexOf(nest));
+            assertEquals(2, snapshot.childCount(nestNode));
+
+            int ovalNode = snapshot.child(nestNode, 1);
+            assertSame(oval, snapshot.shape(ovalNode));
+            assertEquals(ovalNode, snapshot.indexOf(oval));
+            assertEquals(50, snapshot.x(ovalNode));
+            assertEquals(-4, snapshot.deltaX(ovalNode));
+            assertEquals(30, snapshot.height(ovalNode));
+            assertEquals(-1, snapshot.indexOf(new RectangleShape()));
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Checks that a snapshot being read is left unchanged by later clock()
+     * calls, which publish newer snapshots.
+     */
+    @Test
+    public void testSnapshotIsUnchangedWhileRead() {
+        ShapeModelSnapshot first = model.acquireSnapshot();
+        int node = first.indexOf(rectangle);
+        for (int i = 0; i < 5; i++) {
+            model.clock();
+        }
+
+        assertEquals(0, first.x(node));
+        assertEquals(0, first.y(node));
+
+        ShapeModelSnapshot latest = model.acquireSnapshot();
+        assertNotSame(first, latest);
+        assertEquals(rectangle.x(), latest.x(latest.indexOf(rectangle)));
+        assertEquals(rectangle.y(), latest.y(latest.indexOf(rectangle)));
+        first.release();
+        latest.release();
+    }
+
+    /**
+     * Checks that changes to the model's structure are reflected by the
+     * next snapshot acquired, even without a clock() call.
+     */
+    @Test
+    public void testStructuralChangesAreSeen() {
+        model.acquireSnapshot().release();
+        model.remove(rectangle);
+
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            assertEquals(4, snapshot.size());
+            assertEquals(-1, snapshot.indexOf(rectangle));
+            assertEquals(1, snapshot.childCount(snapshot.indexOf(nest)));
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Checks that painting a snapshot paints the same as painting the
+     * shapes themselves.
+     */
+    @Test
+    public void testPaintingMatchesShapes() {
+        model.clock();
+        model.clock();
+
+        MockPainter expected = new MockPainter();
+        model.root().paint(expected);
+
+        MockPainter actual = new MockPainter();
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            snapshot.paint(actual);
+        } finally {
+            snapshot.release();
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Checks that a Shape subclass overriding only doPaint(Painter) is
+     * painted at the position recorded in a snapshot, although its x and y
+     * fields are not kept up to date while an ArrayMoveEngine moves it.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testPaintingThroughDoPaintWithoutPosition() {
+        Shape legacy = new Shape(40, 60, 5, -3, 20, 10) {
+            @Override
+            protected void doPaint(Painter painter) {
+                painter.drawRect(x, y, width, height);
+            }
+        };
+        model.add(legacy, nest);
+        model.setMoveEngine(new ArrayMoveEngine());
+        for (int i = 0; i < 3; i++) {
+            model.clock();
+        }
+
+        final List<Rectangle> painted = new ArrayList<>();
+        MockPainter painter = new MockPainter() {
+            private int offsetX;
+            private int offsetY;
+
+            @Override
+            public void translate(int x, int y) {
+                offsetX += x;
+                offsetY += y;
+            }
+
+            @Override
+            public void drawRect(int x, int y, int width, int height) {
+                painted.add(new Rectangle(offsetX + x, offsetY + y, width, height));
+            }
+        };
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            snapshot.paint(painter);
+        } finally {
+            snapshot.release();
+        }
+
+        int nestX = nest.x();
+        int nestY = nest.y();
+        assertTrue(painted.contains(new Rectangle(nestX + 55, nestY + 51, 20, 10)));
+        assertEquals(55, legacy.x());
+    }
+}
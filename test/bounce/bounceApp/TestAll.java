@@ -13,8 +13,30 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({bounce.TestNestingShape.class,
+        bounce.TestChildList.class,
+        bounce.TestMoveEngine.class,
+        bounce.TestCollisions.class,
+        bounce.TestShapeIndex.class,
+        bounce.TestBulkChanges.class,
+        bounce.TestShapeModelSnapshot.class,
+        bounce.TestListenerDispatch.class,
+        bounce.TestRecordReplay.class,
+        bounce.TestSceneFile.class,
+        bounce.TestLazyNestingShape.class,
+        bounce.TestOffHeapNestingShape.class,
+        bounce.TestLevelOfDetail.class,
+        bounce.TestRecordingPainter.class,
+        bounce.TestDisplayList.class,
+        bounce.TestGraphicsPainter.class,
         bounce.views.TestTask1.class,
         bounce.views.TestTask2.class,
+        bounce.views.TestSwingThreadAdapter.class,
+        bounce.views.TestTileRenderer.class,
+        bounce.views.TestActiveRenderer.class,
+        bounce.views.TestAnimationView.class,
+        bounce.bounceApp.TestSimulationLoop.class,
+        bounce.bounceApp.TestSceneBuilder.class,
+        bounce.bounceApp.TestHeadlessRunner.class,
         bounce.forms.TestImageShapeFormHandler.class})
 public class TestAll {
 }
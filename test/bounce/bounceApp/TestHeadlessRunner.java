@@ -0,0 +1,120 @@
+package bounce.bounceApp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.ArrayMoveEngine;
+import bounce.ParallelMoveEngine;
+import bounce.SequentialMoveEngine;
+
+/**
+ * Class to test HeadlessRunner's handling of its command line and a short
+ * run of a scene description.
+ */
+public class TestHeadlessRunner {
+
+    private Path scene;
+
+    @Before
+    public void setUp() throws IOException {
+        scene = Files.createTempFile("bounce", ".txt");
+        Files.write(scene, ("bounce.NestingShape 10 10 3 2 200 200\n"
+                + "    bounce.RectangleShape 5 5 4 1 10 10\n"
+                + "bounce.OvalShape 300 300 -2 5 20 20\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void deleteScene() throws IOException {
+        Files.deleteIfExists(scene);
+    }
+
+    /**
+     * Checks that a scene description is run for the requested number of
+     * ticks and reported on.
+     */
+    @Test
+    public void testRunsScene() throws IOException {
+        String report = runAndReport("-scene", scene.toString(), "-engine", "array", "-collisions",
+                "-warmup", "2", "-ticks", "10");
+        assertTrue(report, report.contains("Shapes:      4\n"));
+        assertTrue(report, report.contains("Engine:      array with collisions\n"));
+        assertTrue(report, report.contains("Ticks:       10 in "));
+    }
+
+    /**
+     * Checks that a run in which no ticks complete is reported without
+     * rates derived from them.
+     */
+    @Test
+    public void testRunsNoTicks() throws IOException {
+        String report = runAndReport("-scene", scene.toString(), "-warmup", "0", "-ticks", "0");
+        assertTrue(report, report.contains("Ticks:       0 in "));
+        assertFalse(report, report.contains("Throughput:"));
+        assertFalse(report, report.contains("NaN"));
+        assertFalse(report, report.contains("Infinity"));
+    }
+
+    /**
+     * Checks that engines are found by name.
+     */
+    @Test
+    public void testEngineFor() {
+        assertTrue(HeadlessRunner.engineFor("sequential") instanceof SequentialMoveEngine);
+        assertTrue(HeadlessRunner.engineFor("array") instanceof ArrayMoveEngine);
+        assertTrue(HeadlessRunner.engineFor("parallel") instanceof ParallelMoveEngine);
+        assertRejected("-engine", "warp");
+    }
+
+    /**
+     * Checks that unknown options, missing values and bad numbers are
+     * rejected.
+     */
+    @Test
+    public void testBadOptions() {
+        assertRejected("-frobnicate");
+        assertRejected("-ticks");
+        assertRejected("-ticks", "ten");
+        assertRejected("-size", "100");
+        assertRejected("-seconds", "soon");
+    }
+
+    /*
+     * Runs a HeadlessRunner with the specified command line, returning what
+     * it printed.
+     */
+    private static String runAndReport(String... args) throws IOException {
+        HeadlessRunner runner = new HeadlessRunner();
+        runner.parse(args);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true, "UTF-8"));
+        try {
+            runner.run();
+        } finally {
+            System.setOut(out);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void assertRejected(String... args) {
+        try {
+            new HeadlessRunner().parse(args);
+            fail("Accepted: " + String.join(" ", args));
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
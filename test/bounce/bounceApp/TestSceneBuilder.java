@@ -0,0 +1,137 @@
+package bounce.bounceApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.GemShape;
+import bounce.NestingShape;
+import bounce.OvalShape;
+import bounce.RectangleShape;
+import bounce.Shape;
+import bounce.ShapeModel;
+
+/**
+ * Class to test reading scene descriptions with SceneBuilder.
+ */
+public class TestSceneBuilder {
+
+    private ShapeModel model;
+
+    @Before
+    public void setUp() {
+        model = new ShapeModel(new Dimension(500, 500));
+    }
+
+    /**
+     * Checks that each line is nested within the closest preceding
+     * NestingShape line indented less, and that text may contain spaces.
+     */
+    @Test
+    public void testNesting() throws IOException {
+        String scene = "# A nested scene\n"
+                + "bounce.NestingShape 10 10 1 1 200 200 outer\n"
+                + "    bounce.RectangleShape 5 5 1 1 10 10\n"
+                + "\n"
+                + "    bounce.NestingShape 20 20 2 2 100 100\n"
+                + "        bounce.OvalShape 1 2 3 4 20 20 an oval\n"
+                + "    bounce.GemShape 50 150 0 0 20 20\n"
+                + "bounce.RectangleShape 300 300 0 0 5 5\n";
+        assertEquals(6, SceneBuilder.read(new StringReader(scene), model));
+
+        NestingShape root = model.root();
+        assertEquals(2, root.shapeCount());
+        NestingShape outer = (NestingShape) root.shapeAt(0);
+        assertEquals("outer", outer.text());
+        assertEquals(200, outer.width());
+        assertTrue(root.shapeAt(1) instanceof RectangleShape);
+        assertEquals(300, root.shapeAt(1).x());
+
+        assertEquals(3, outer.shapeCount());
+        assertTrue(outer.shapeAt(0) instanceof RectangleShape);
+        assertTrue(outer.shapeAt(2) instanceof GemShape);
+        NestingShape inner = (NestingShape) outer.shapeAt(1);
+        assertEquals(1, inner.shapeCount());
+
+        Shape oval = inner.shapeAt(0);
+        assertTrue(oval instanceof OvalShape);
+        assertEquals("an oval", oval.text());
+        assertEquals(1, oval.x());
+        assertEquals(2, oval.y());
+        assertEquals(3, oval.deltaX());
+        assertEquals(4, oval.deltaY());
+        assertSame(inner, oval.parent());
+    }
+
+    /**
+     * Checks that a line indented under a shape that is not a NestingShape,
+     * or dedented to an indentation no enclosing NestingShape's shapes use,
+     * is rejected.
+     */
+    @Test
+    public void testMalformedIndentation() throws IOException {
+        assertRejected("bounce.NestingShape 0 0 0 0 100 100\n"
+                + "    bounce.RectangleShape 0 0 0 0 10 10\n"
+                + "        bounce.RectangleShape 0 0 0 0 10 10\n", 3);
+        assertRejected("bounce.NestingShape 0 0 0 0 100 100\n"
+                + "    bounce.RectangleShape 0 0 0 0 10 10\n"
+                + "  bounce.RectangleShape 0 0 0 0 10 10\n", 3);
+        assertRejected("  bounce.RectangleShape 0 0 0 0 10 10\n"
+                + "bounce.RectangleShape 0 0 0 0 10 10\n", 2);
+    }
+
+    /**
+     * Checks that lines naming an unknown class, a class that is not a
+     * Shape, or one without a suitable constructor are rejected.
+     */
+    @Test
+    public void testUnknownClasses() throws IOException {
+        assertRejected("bounce.NoSuchShape 0 0 0 0 10 10\n", 1);
+        assertRejected("RectangleShape 0 0 0 0 10 10\n", 1);
+        assertRejected("java.awt.Rectangle 0 0 0 0 10 10\n", 1);
+        assertRejected("bounce.ImageRectangleShape 0 0 0 0 10 10\n", 1);
+    }
+
+    /**
+     * Checks that lines with numbers that are not integers, or too few of
+     * them, are rejected.
+     */
+    @Test
+    public void testBadIntegers() throws IOException {
+        assertRejected("bounce.RectangleShape 0 0 0 0 10 ten\n", 1);
+        assertRejected("bounce.RectangleShape 0 0 1.5 0 10 10\n", 1);
+        assertRejected("bounce.RectangleShape 0 0 0 0 10 99999999999\n", 1);
+        assertRejected("bounce.RectangleShape 0 0 0 0 10\n", 1);
+    }
+
+    /**
+     * Checks that shapes that do not fit their parent are rejected.
+     */
+    @Test
+    public void testShapeMustFitParent() throws IOException {
+        assertRejected("bounce.NestingShape 0 0 0 0 100 100\n"
+                + "    bounce.RectangleShape 95 0 0 0 10 10\n", 2);
+    }
+
+    /*
+     * Asserts that reading scene fails, blaming the specified line, and that
+     * no shapes are added to the model.
+     */
+    private void assertRejected(String scene, int lineNumber) throws IOException {
+        try {
+            SceneBuilder.read(new StringReader(scene), model);
+            fail("Accepted: " + scene);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line " + lineNumber + ":"));
+        }
+        assertEquals(0, model.root().shapeCount());
+    }
+}
@@ -0,0 +1,127 @@
+package bounce.bounceApp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Dimension;
+import java.util.function.LongSupplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.RectangleShape;
+import bounce.ShapeModel;
+import bounce.ShapeModelEvent;
+import bounce.ShapeModelListener;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Class to test SimulationLoop's scheduling of steps, which is driven here by
+ * a clock the test controls rather than by a thread of its own.
+ */
+public class TestSimulationLoop {
+
+    // Step period at 100 ticks per second.
+    private static final long PERIOD = 10000000L;
+
+    private static final long START = 123456789L;
+
+    private ShapeModel model;
+
+    private SimulationLoop loop;
+
+    // Current time, as read by the loop.
+    private long now;
+
+    // Number of clock() calls made on the model.
+    private int steps;
+
+    @Before
+    public void setUp() {
+        model = new ShapeModel(new Dimension(500, 500));
+        model.add(new RectangleShape(0, 0, 4, 0), model.root());
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                if (event.eventType() == ShapeModelEvent.EventType.ShapeMoved) {
+                    steps++;
+                }
+            }
+        });
+
+        now = START;
+        loop = new SimulationLoop(model, 100, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return now;
+            }
+        });
+        loop.reset();
+    }
+
+    /**
+     * Checks that steps fall due a fixed period apart, and that late steps
+     * do not push later steps back.
+     */
+    @Test
+    public void testStepsFollowFixedDeadlines() {
+        assertEquals(0, loop.step(START + PERIOD / 2));
+        assertEquals(1, loop.step(START + PERIOD));
+        assertEquals(0, loop.step(START + PERIOD + PERIOD / 2));
+
+        // Late by most of a period; the next step is still due on time.
+        assertEquals(1, loop.step(START + 3 * PERIOD - 1));
+        assertEquals(1, loop.step(START + 3 * PERIOD));
+        assertEquals(3, steps);
+
+        // A couple of periods behind; the missed steps are made up.
+        assertEquals(3, loop.step(START + 6 * PERIOD));
+        assertEquals(6, steps);
+    }
+
+    /**
+     * Checks that a loop that falls far behind performs at most
+     * MAX_CATCH_UP_STEPS steps and then drops the rest, scheduling the next
+     * step a period on.
+     */
+    @Test
+    public void testCatchUpIsCapped() {
+        long late = START + 1000 * PERIOD;
+        assertEquals(SimulationLoop.MAX_CATCH_UP_STEPS, loop.step(late));
+        assertEquals(0, loop.step(late));
+        assertEquals(0, loop.step(late + PERIOD - 1));
+        assertEquals(1, loop.step(late + PERIOD));
+        assertEquals(SimulationLoop.MAX_CATCH_UP_STEPS + 1, steps);
+    }
+
+    /**
+     * Checks that the interpolation value for a snapshot is measured from
+     * the step recorded in that snapshot, even once a newer step has been
+     * taken.
+     */
+    @Test
+    public void testInterpolationFollowsSnapshot() {
+        loop.step(START + PERIOD);
+        ShapeModelSnapshot older = model.acquireSnapshot();
+        try {
+            assertEquals(START + PERIOD, older.stepTime());
+            now = START + PERIOD + PERIOD / 4;
+            assertEquals(0.25, loop.interpolation(older), 1e-9);
+
+            loop.step(START + 2 * PERIOD);
+            now = START + 2 * PERIOD + PERIOD / 4;
+            ShapeModelSnapshot newer = model.acquireSnapshot();
+            try {
+                assertEquals(START + 2 * PERIOD, newer.stepTime());
+                assertEquals(0.25, loop.interpolation(newer), 1e-9);
+                assertEquals(1.0, loop.interpolation(older), 1e-9);
+            } finally {
+                newer.release();
+            }
+
+            now = START;
+            assertEquals(0.0, loop.interpolation(older), 1e-9);
+        } finally {
+            older.release();
+        }
+    }
+}
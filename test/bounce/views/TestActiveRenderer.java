@@ -0,0 +1,106 @@
+package bounce.views;
+
+import static bounce.ShapeAssert.assertSamePixels;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.DynamicRectangleShape;
+import bounce.GemShape;
+import bounce.GraphicsPainter;
+import bounce.NestingShape;
+import bounce.Painter;
+import bounce.RectangleShape;
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Class to test ActiveRenderer, which renders frames into a Canvas on a
+ * thread of its own.
+ */
+public class TestActiveRenderer {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private ShapeModel model;
+
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        model = new ShapeModel(new Dimension(WIDTH, HEIGHT));
+        NestingShape nest = new NestingShape(30, 20, 2, 3, 150, 120, "nest");
+        model.add(nest, model.root());
+        model.add(new GemShape(10, 10, 1, 1, 60, 40, "gem"), nest);
+        model.add(new DynamicRectangleShape(70, 60, -3, 2, 50, 30, "dynamic", Color.BLUE), nest);
+        model.add(new RectangleShape(250, 5, -2, 2, 35, 20, "text"), model.root());
+        for (int i = 0; i < 7; i++) {
+            model.clock();
+        }
+
+        canvas = new Canvas();
+        canvas.setBackground(Color.WHITE);
+        canvas.setForeground(Color.BLACK);
+    }
+
+    /**
+     * Checks that, without a display, active rendering is not started and
+     * an AnimationView stays painted through Swing.
+     */
+    @Test
+    public void testFallsBackWhenHeadless() {
+        Assume.assumeTrue(GraphicsEnvironment.isHeadless());
+        assertFalse(ActiveRenderer.isSupported(null));
+        assertFalse(new ActiveRenderer(canvas, 60).start());
+
+        AnimationView view = new AnimationView(new Dimension(WIDTH, HEIGHT));
+        assertFalse(view.startActiveRendering(60));
+        assertEquals(0, view.getComponentCount());
+    }
+
+    /**
+     * Checks that a frame rendered actively matches the snapshot painted
+     * through a GraphicsPainter, whether it is painted directly or in tiles.
+     */
+    @Test
+    public void testFrameMatchesSwingPainting() {
+        ActiveRenderer renderer = new ActiveRenderer(canvas, 60);
+        renderer.setLevelOfDetail(Painter.REDUCED_DETAIL);
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = expected.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.setColor(Color.BLACK);
+            snapshot.paint(new GraphicsPainter(g, 1.0, Painter.REDUCED_DETAIL));
+            g.dispose();
+
+            assertSamePixels(expected, render(renderer, snapshot));
+            renderer.setTileRenderer(new TileRenderer(64, ForkJoinPool.commonPool()));
+            assertSamePixels(expected, render(renderer, snapshot));
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    private static BufferedImage render(ActiveRenderer renderer, ShapeModelSnapshot snapshot) {
+        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        renderer.paint(g, snapshot, WIDTH, HEIGHT);
+        g.dispose();
+        return frame;
+    }
+}
@@ -0,0 +1,220 @@
+package bounce.views;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.NestingShape;
+import bounce.RectangleShape;
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Class to test the tracking of changed areas by AnimationView, which must
+ * repaint every area a shape has been painted in or is now painted in.
+ */
+public class TestAnimationView {
+
+    private ShapeModel model;
+
+    private RecordingView view;
+
+    private RectangleShape moving;
+
+    /*
+     * AnimationView that records the areas it is asked to repaint.
+     */
+    private static class RecordingView extends AnimationView {
+        private static final long serialVersionUID = 1L;
+
+        final List<Rectangle> repaints = new ArrayList<>();
+
+        RecordingView() {
+            super(new Dimension(500, 500));
+        }
+
+        @Override
+        public void repaint(long tm, int x, int y, int width, int height) {
+            // Also called while JPanel is being constructed.
+            if (repaints != null) {
+                repaints.add(new Rectangle(x, y, width, height));
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        model = new ShapeModel(new Dimension(500, 500));
+        moving = new RectangleShape(100, 100, 5, 0, 20, 20);
+        model.add(moving, model.root());
+
+        view = new RecordingView();
+        view.setInterpolation(new ToDoubleFunction<ShapeModelSnapshot>() {
+            @Override
+            public double applyAsDouble(ShapeModelSnapshot snapshot) {
+                return 1.0;
+            }
+        });
+        model.addShapeModelListener(view);
+
+        // The first event has the view repaint itself in full.
+        model.add(new RectangleShape(400, 400, 0, 0, 10, 10), model.root());
+        view.repaints.clear();
+    }
+
+    /**
+     * Checks that a frame following a single step repaints the areas a
+     * moving shape left and entered, without repainting the whole view.
+     */
+    @Test
+    public void testSingleMove() {
+        model.clock();
+        view.repaintChanges();
+
+        assertRepainted(new Rectangle(100, 100, 21, 21));
+        assertRepainted(new Rectangle(105, 100, 21, 21));
+        assertNotRepainted(new Rectangle(400, 400, 11, 11));
+    }
+
+    /**
+     * Checks that a frame following several steps repaints every area the
+     * shape has moved through since the previous frame, not just the areas
+     * changed by the last step.
+     */
+    @Test
+    public void testSeveralStepsBetweenFrames() {
+        for (int i = 0; i < 3; i++) {
+            model.clock();
+        }
+        view.repaintChanges();
+
+        for (int x = 100; x <= 115; x += 5) {
+            assertRepainted(new Rectangle(x, 100, 21, 21));
+        }
+    }
+
+    /**
+     * Checks that a frame repaints the areas repainted by the previous frame
+     * again, since the previous frame may have painted shapes part way
+     * through the step, and that areas are not repainted once they have been
+     * repainted for two frames.
+     */
+    @Test
+    public void testPreviousFrameIsRepaintedAgain() {
+        model.clock();
+        view.repaintChanges();
+        view.repaints.clear();
+
+        view.repaintChanges();
+        assertRepainted(new Rectangle(100, 100, 26, 21));
+
+        view.repaints.clear();
+        view.repaintChanges();
+        assertTrue(view.repaints.isEmpty());
+    }
+
+    /**
+     * Checks that the areas of added and removed shapes are repainted, both
+     * as they are changed and in the next frame.
+     */
+    @Test
+    public void testAddAndRemove() {
+        RectangleShape added = new RectangleShape(300, 50, 0, 0, 30, 10);
+        model.add(added, model.root());
+        assertRepainted(new Rectangle(300, 50, 31, 11));
+        view.repaints.clear();
+        view.repaintChanges();
+        assertRepainted(new Rectangle(300, 50, 31, 11));
+        view.repaintChanges();
+
+        view.repaints.clear();
+        model.remove(moving);
+        assertRepainted(new Rectangle(100, 100, 21, 21));
+        view.repaints.clear();
+        view.repaintChanges();
+        assertRepainted(new Rectangle(100, 100, 21, 21));
+
+        // Removed shapes are no longer tracked.
+        view.repaintChanges();
+        view.repaints.clear();
+        model.clock();
+        view.repaintChanges();
+        assertNotRepainted(new Rectangle(100, 100, 21, 21));
+    }
+
+    /**
+     * Checks that a step taken after a shape is removed, before a frame is
+     * painted, repaints the areas of the shapes that follow it, although
+     * they have been renumbered in the model's snapshots.
+     */
+    @Test
+    public void testStepAfterRemovalBeforeFrame() {
+        RectangleShape other = new RectangleShape(200, 200, 5, 0, 20, 20);
+        model.add(other, model.root());
+        view.repaintChanges();
+        view.repaintChanges();
+
+        model.remove(moving);
+        view.repaints.clear();
+        model.clock();
+        view.repaintChanges();
+        assertRepainted(new Rectangle(200, 200, 26, 21));
+    }
+
+    /**
+     * Checks that shapes nested in a moving NestingShape have their world-
+     * space areas repainted, although they do not move within it.
+     */
+    @Test
+    public void testShapesNestedInMovingParent() {
+        NestingShape nest = new NestingShape(200, 200, 10, 0, 100, 100);
+        RectangleShape child = new RectangleShape(5, 5, 0, 0, 10, 10);
+        nest.add(child);
+        model.add(nest, model.root());
+        view.repaintChanges();
+        view.repaintChanges();
+
+        view.repaints.clear();
+        model.clock();
+        view.repaintChanges();
+        assertRepainted(new Rectangle(200, 200, 111, 101));
+        assertRepainted(new Rectangle(205, 205, 21, 11));
+    }
+
+    /*
+     * Asserts that area lies within the areas repainted.
+     */
+    private void assertRepainted(Rectangle area) {
+        for (int x = area.x; x < area.x + area.width; x++) {
+            for (int y = area.y; y < area.y + area.height; y++) {
+                assertTrue("Not repainted: " + x + "," + y, isRepainted(x, y));
+            }
+        }
+    }
+
+    /*
+     * Asserts that no part of area has been repainted.
+     */
+    private void assertNotRepainted(Rectangle area) {
+        for (Rectangle repaint : view.repaints) {
+            assertFalse("Repainted: " + area, repaint.intersects(area));
+        }
+    }
+
+    private boolean isRepainted(int x, int y) {
+        for (Rectangle repaint : view.repaints) {
+            if (repaint.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+package bounce.views;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.RectangleShape;
+import bounce.ShapeModel;
+import bounce.ShapeModelEvent;
+import bounce.ShapeModelListener;
+
+/**
+ * Class to test SwingThreadAdapter, which delivers ShapeModelEvents on the
+ * Swing event dispatch thread.
+ */
+public class TestSwingThreadAdapter {
+
+    private ShapeModel model;
+
+    // Events delivered through the adapter, and whether each was delivered
+    // on the event dispatch thread.
+    private List<ShapeModelEvent> delivered;
+    private List<Boolean> onDispatchThread;
+
+    @Before
+    public void setUp() {
+        model = new ShapeModel(new Dimension(500, 500));
+        delivered = new ArrayList<>();
+        onDispatchThread = new ArrayList<>();
+        model.addShapeModelListener(new SwingThreadAdapter(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                delivered.add(event);
+                onDispatchThread.add(SwingUtilities.isEventDispatchThread());
+            }
+        }));
+    }
+
+    /**
+     * Checks that events fired on another thread are delivered, in order,
+     * on the event dispatch thread.
+     */
+    @Test
+    public void testEventsAreDeliveredInOrderOnDispatchThread() throws Exception {
+        RectangleShape first = new RectangleShape(0, 0, 1, 1);
+        RectangleShape second = new RectangleShape(10, 10, 1, 1);
+        model.add(first, model.root());
+        model.add(second, model.root());
+        model.remove(first);
+        flush();
+
+        assertEquals(3, delivered.size());
+        assertSame(first, delivered.get(0).operand());
+        assertSame(second, delivered.get(1).operand());
+        assertEquals(ShapeModelEvent.EventType.ShapeRemoved, delivered.get(2).eventType());
+        for (boolean onThread : onDispatchThread) {
+            assertTrue(onThread);
+        }
+    }
+
+    /**
+     * Checks that ShapeMoved events fired while the event dispatch thread is
+     * busy are coalesced into the latest one.
+     */
+    @Test
+    public void testMovesAreCoalesced() throws Exception {
+        final List<ShapeModelEvent> fired = new ArrayList<>();
+        model.addShapeModelListener(new ShapeModelListener() {
+            @Override
+            public void update(ShapeModelEvent event) {
+                fired.add(event);
+            }
+        });
+
+        final CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            model.clock();
+        }
+        release.countDown();
+        flush();
+
+        assertEquals(1, delivered.size());
+        assertSame(fired.get(fired.size() - 1), delivered.get(0));
+    }
+
+    /**
+     * Checks that events fired on the event dispatch thread are delivered
+     * before the change returns.
+     */
+    @Test
+    public void testEventsOnDispatchThreadAreDeliveredAtOnce() throws Exception {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                model.add(new RectangleShape(0, 0, 1, 1), model.root());
+                assertEquals(1, delivered.size());
+            }
+        });
+        assertTrue(onDispatchThread.get(0));
+    }
+
+    /*
+     * Waits until the events queued for the event dispatch thread have been
+     * delivered.
+     */
+    private static void flush() throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+}
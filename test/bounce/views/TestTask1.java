@@ -9,6 +9,7 @@ import static org.junit.Assert.assertTrue;
 import java.awt.Dimension;
 
 import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
 
 import bounce.NestingShape;
 import bounce.RectangleShape;
@@ -29,6 +30,7 @@ public class TestTask1 {
     private NestingShape emptyNest;
     private Shape simpleShape;
     private TreeModel adapter;
+    private ShapeModel model;
 
     /**
      * Creates a simple Shape hierarchy as the common fixture for all test
@@ -36,7 +38,7 @@ public class TestTask1 {
      */
     @Before
     public void setUpShapeModel() {
-        ShapeModel model = new ShapeModel(new Dimension(500, 500));
+        model = new ShapeModel(new Dimension(500, 500));
         adapter = new Task1(model);
 
         root = model.root();
@@ -177,4 +179,20 @@ public class TestTask1 {
         assertEquals(-1, adapter.getIndexOfChild(simpleShape, root));
     }
 
+    /**
+     * Checks that treePath() returns the path from the root to a Shape, and
+     * reuses it until the Shape is moved to another parent.
+     */
+    @Test
+    public void test_treePath() {
+        Task1 task1 = (Task1) adapter;
+        TreePath path = task1.treePath(simpleShape);
+        assertEquals(new TreePath(new Object[]{root, simpleShape}), path);
+        assertSame(path, task1.treePath(simpleShape));
+
+        model.cutAndPaste(simpleShape, emptyNest);
+        TreePath newPath = task1.treePath(simpleShape);
+        assertEquals(new TreePath(new Object[]{root, emptyNest, simpleShape}), newPath);
+        assertSame(task1.treePath(emptyNest), newPath.getParentPath());
+    }
 }
@@ -1,16 +1,20 @@
 package bounce.views;
 
 import java.awt.Dimension;
+import java.util.Arrays;
 
 import javax.swing.event.TreeModelEvent;
 import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
 
 import bounce.NestingShape;
 import bounce.RectangleShape;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -183,4 +187,125 @@ public class TestTask2 {
         model.add(newShape, emptyNest);
         assertTrue(listenerMethodCalled);
     }
+
+    /**
+     * Checks that a bulk addition to a ShapeModel results in a single
+     * TreeModelEvent that carries every added Shape and its index position.
+     */
+    @Test
+    public void test_shapesAdded() {
+        final Shape another = new RectangleShape(10, 10, 1, 1, 20, 20);
+        model.add(new RectangleShape(0, 0, 1, 1, 5, 5), emptyNest);
+
+        adapter.addTreeModelListener(new TreeModelListener() {
+
+            public void treeNodesChanged(TreeModelEvent e) {
+                fail();
+            }
+
+            public void treeNodesInserted(TreeModelEvent e) {
+                // Only one event is expected.
+                assertFalse(listenerMethodCalled);
+                listenerMethodCalled = true;
+
+                assertArrayEquals(new int[]{1, 2}, e.getChildIndices());
+                assertArrayEquals(new Object[]{newShape, another}, e.getChildren());
+                assertArrayEquals(new Object[]{root, emptyNest}, e.getPath());
+            }
+
+            public void treeNodesRemoved(TreeModelEvent e) {
+                fail();
+            }
+
+            public void treeStructureChanged(TreeModelEvent e) {
+                fail();
+            }
+        });
+
+        assertTrue(model.addAll(Arrays.asList(newShape, another), emptyNest));
+        assertTrue(listenerMethodCalled);
+    }
+
+    /**
+     * Checks that a bulk removal from a ShapeModel results in a single
+     * TreeModelEvent that carries every removed Shape and the index position
+     * it held before removal, in ascending order.
+     */
+    @Test
+    public void test_shapesRemoved() {
+        model.add(newShape, root);
+
+        adapter.addTreeModelListener(new TreeModelListener() {
+
+            public void treeNodesChanged(TreeModelEvent e) {
+                fail();
+            }
+
+            public void treeNodesInserted(TreeModelEvent e) {
+                fail();
+            }
+
+            public void treeNodesRemoved(TreeModelEvent e) {
+                // Only one event is expected.
+                assertFalse(listenerMethodCalled);
+                listenerMethodCalled = true;
+
+                assertArrayEquals(new int[]{0, 2}, e.getChildIndices());
+                assertArrayEquals(new Object[]{emptyNest, newShape}, e.getChildren());
+                assertArrayEquals(new Object[]{root}, e.getPath());
+            }
+
+            public void treeStructureChanged(TreeModelEvent e) {
+                fail();
+            }
+        });
+
+        model.removeAll(Arrays.asList(newShape, emptyNest), root);
+        assertTrue(listenerMethodCalled);
+        assertEquals(1, root.shapeCount());
+        assertSame(simpleShape, root.shapeAt(0));
+    }
+
+    /**
+     * Checks that removing a NestingShape discards the cached TreePaths of
+     * the shapes nested within it, as well as its own.
+     */
+    @Test
+    public void test_TreePathsOfRemovedSubtreeAreDiscarded() {
+        NestingShape inner = new NestingShape(0, 0, 1, 1, 50, 50);
+        Shape leaf = new RectangleShape(0, 0, 1, 1, 10, 10);
+        model.add(inner, emptyNest);
+        model.add(leaf, inner);
+        adapter.treePath(leaf);
+        adapter.treePath(simpleShape);
+        assertEquals(5, adapter.treePathCount());
+
+        model.remove(emptyNest);
+        assertEquals(2, adapter.treePathCount());
+        assertEquals(new TreePath(new Object[]{root, simpleShape}), adapter.treePath(simpleShape));
+        assertEquals(2, adapter.treePathCount());
+    }
+
+    /**
+     * Checks that removing several shapes in one go discards the cached
+     * TreePaths of each of them and of the shapes nested within them, and
+     * keeps the rest.
+     */
+    @Test
+    public void test_TreePathsOfShapesRemovedTogetherAreDiscarded() {
+        NestingShape otherNest = new NestingShape(200, 200, 1, 1, 100, 100);
+        Shape leaf = new RectangleShape(0, 0, 1, 1, 10, 10);
+        Shape otherLeaf = new RectangleShape(0, 0, 1, 1, 10, 10);
+        model.add(otherNest, root);
+        model.add(leaf, emptyNest);
+        model.add(otherLeaf, otherNest);
+        adapter.treePath(leaf);
+        adapter.treePath(otherLeaf);
+        adapter.treePath(simpleShape);
+        assertEquals(6, adapter.treePathCount());
+
+        model.removeAll(Arrays.asList(emptyNest, otherNest), root);
+        assertEquals(2, adapter.treePathCount());
+        assertEquals(new TreePath(new Object[]{root, simpleShape}), adapter.treePath(simpleShape));
+    }
 }
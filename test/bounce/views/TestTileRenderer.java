@@ -0,0 +1,122 @@
+package bounce.views;
+
+import static bounce.ShapeAssert.assertSamePixels;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import bounce.DynamicRectangleShape;
+import bounce.GemShape;
+import bounce.GraphicsPainter;
+import bounce.NestingShape;
+import bounce.Painter;
+import bounce.RectangleShape;
+import bounce.ShapeModel;
+import bounce.ShapeModelSnapshot;
+
+/**
+ * Class to test TileRenderer, which renders frames in tiles painted in
+ * parallel.
+ */
+public class TestTileRenderer {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private ShapeModel model;
+
+    /**
+     * Creates a ShapeModel with shapes that straddle tiles, some with text,
+     * and a crowded NestingShape. OvalShapes are left out, as Java2D may
+     * draw the edge of an oval a pixel differently once it is clipped.
+     */
+    @Before
+    public void setUpModel() {
+        model = new ShapeModel(new Dimension(WIDTH, HEIGHT));
+        NestingShape nest = new NestingShape(30, 20, 2, 3, 150, 120, "nest");
+        model.add(nest, model.root());
+        model.add(new GemShape(10, 10, 1, 1, 60, 40, "gem"), nest);
+        model.add(new GemShape(80, 10, 1, -2, 50, 20), nest);
+        model.add(new DynamicRectangleShape(70, 60, -3, 2, 50, 30, "dynamic", Color.BLUE), nest);
+        model.add(new RectangleShape(250, 5, -2, 2, 35, 20, "text"), model.root());
+
+        NestingShape crowd = new NestingShape(190, 90, -1, 1, 60, 60);
+        model.add(crowd, model.root());
+        Random random = new Random(718);
+        for (int i = 0; i < 400; i++) {
+            model.add(new RectangleShape(random.nextInt(55), random.nextInt(55), random.nextInt(7) - 3,
+                    random.nextInt(7) - 3, 5, 5), crowd);
+        }
+        for (int i = 0; i < 7; i++) {
+            model.clock();
+        }
+    }
+
+    /**
+     * Checks that a frame rendered in tiles matches the snapshot painted in
+     * one go, in full and in reduced detail.
+     */
+    @Test
+    public void testTilesMatchSinglePainter() {
+        TileRenderer renderer = new TileRenderer(37, new ForkJoinPool(4));
+        for (int levelOfDetail : new int[]{0, Painter.REDUCED_DETAIL}) {
+            BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = expected.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.setColor(Color.BLACK);
+
+            ShapeModelSnapshot snapshot = model.acquireSnapshot();
+            try {
+                snapshot.paint(new GraphicsPainter(g, 1.0, levelOfDetail));
+                BufferedImage actual = renderer.render(snapshot, WIDTH, HEIGHT, Color.WHITE, Color.BLACK, 1.0,
+                        levelOfDetail);
+                assertSamePixels(expected, actual);
+            } finally {
+                snapshot.release();
+                g.dispose();
+            }
+        }
+    }
+
+    /**
+     * Checks that frames rendered in the background are drawn once finished.
+     */
+    @Test
+    public void testRenderLater() throws InterruptedException {
+        TileRenderer renderer = new TileRenderer();
+        final CountDownLatch done = new CountDownLatch(1);
+        assertTrue(renderer.renderLater(model, WIDTH, HEIGHT, Color.WHITE, Color.BLACK, null, 0, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        BufferedImage drawn = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = drawn.createGraphics();
+        renderer.drawFrame(g);
+        g.dispose();
+
+        ShapeModelSnapshot snapshot = model.acquireSnapshot();
+        try {
+            BufferedImage expected = new TileRenderer().render(snapshot, WIDTH, HEIGHT, Color.WHITE, Color.BLACK,
+                    1.0, 0);
+            assertSamePixels(expected, drawn);
+        } finally {
+            snapshot.release();
+        }
+    }
+}